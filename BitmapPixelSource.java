@@ -0,0 +1,28 @@
+package com.example.myapplication;
+
+import android.graphics.Bitmap;
+
+/** PixelSource backed by a decoded Bitmap. */
+public class BitmapPixelSource implements PixelSource {
+
+    private final Bitmap bitmap;
+
+    public BitmapPixelSource(Bitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    @Override
+    public int getWidth() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+        bitmap.getPixels(dst, offset, stride, x, y, w, h);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.myapplication;
+
+import android.graphics.Bitmap;
+
+/**
+ * BucketPool of mutable Bitmaps, sized by allocation bytes.
+ *
+ * acquire() reconfigures a pooled bitmap to the requested size and config (its
+ * allocation is at least as large), so one pool serves band bitmaps, full decodes
+ * and previews. The same bitmaps can be passed as BitmapFactory.Options.inBitmap.
+ * Evicted bitmaps are recycled, returning their native memory at once.
+ */
+public class BitmapPool extends BucketPool<Bitmap> {
+
+    private static final Adapter<Bitmap> BITMAPS = new Adapter<Bitmap>() {
+        @Override
+        public long sizeOf(Bitmap item) {
+            return item.getAllocationByteCount();
+        }
+
+        @Override
+        public void discard(Bitmap item) {
+            item.recycle();
+        }
+    };
+
+    public BitmapPool(String name, long maxBytes) {
+        super(name, maxBytes, BITMAPS);
+    }
+
+    public static long bytesFor(int width, int height, Bitmap.Config config) {
+        return (long) width * height * (config == Bitmap.Config.RGB_565 ? 2 : 4);
+    }
+
+    /** A mutable width x height bitmap, pooled if possible. Contents are undefined. */
+    public Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(bytesFor(width, height, config));
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, config);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /** Pooled bitmap to decode into via inBitmap, or null to let the decoder allocate. */
+    public Bitmap acquireForDecode(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(bytesFor(width, height, config));
+        if (bitmap != null) bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /** Returns a bitmap for reuse; immutable or recycled bitmaps are just dropped. */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        give(bitmap);
+    }
+}
@@ -0,0 +1,1310 @@
+package com.example.myapplication;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.media.ExifInterface;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The capture engine: MediaStore observation, the processing pipeline, the signature
+ * store and the upload outbox, scoped to the process rather than to an activity.
+ *
+ * MainActivity attaches a Listener for UI updates and detaches it in onDestroy;
+ * rotation, app switches and screen-off leave the engine running. Progress is
+ * tracked by a persisted high-water mark, so photos taken while the process was
+ * dead are picked up by the catch-up scan on the next start, in batches paced by
+ * CaptureThrottle according to battery and thermal state. Photos deferred to idle
+ * time are listed in DeferredIds, so the mark moves past them and they are
+ * resubmitted after a restart. CaptureService keeps the process in the foreground.
+ */
+public class CaptureEngine {
+
+    /** UI callbacks, always delivered on the main thread. */
+    public interface Listener {
+        void onStatus(String message);
+
+        /** preview is pooled: it stays valid until the next onPhotoProcessed, so don't hold on to it. */
+        void onPhotoProcessed(int photoNumber, String displayName, int displayWidth, int displayHeight, long fileSize,
+                              Bitmap preview);
+
+        void onCountsChanged();
+
+        void onSignaturesRegistered(int count);
+    }
+
+    private static final String TAG = "CaptureEngine";
+    private static CaptureEngine instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Listener listener;
+    private volatile String lastStatus;
+    private Runnable lastPhoto; // main thread only; replays the latest photo to a newly attached listener
+    private Bitmap shownPreview; // main thread only; the preview lastPhoto shows, back to the pool when replaced
+    private ContentObserver imageObserver;
+    private volatile long lastImageId = -1;
+    private volatile int photosCapturedCount = 0;
+    private boolean started;
+
+    // Pipeline: metadata -> extract (decode + single band walk) -> persist -> upload
+    private PipelineStage<Long, ExtractJob> metadataStage;
+    private PipelineStage<ExtractJob, ExtractedImage> extractStage;
+    private final List<PipelineStage<?, ?>> pipelineStages = new ArrayList<>();
+    private ParallelConstellationExtractor constellationEngine;
+    private SignatureExtractor signatureExtractor;
+    private ChangeCoalescer changeScheduler;
+    private final StrandFileWriter strandFileWriter = new StrandFileWriter(); // persist stage only
+    private UploadOutbox uploadOutbox;
+    private SignatureStore signatureStore;
+    private DuplicateIndex duplicateIndex; // persist stage only, built on first use from uploaded signatures
+    private HighWaterMark highWaterMark;
+    private String installId; // upload stage only; read from PhotoProvenance/install_id on first upload
+    private DeferredIds deferredIds; // deferred photos the mark has moved past, until they finish
+    private volatile boolean resubmitDeferred; // set on start; the next scan resubmits deferredIds
+    private final CaptureThrottle throttle = new CaptureThrottle();
+    private final ImageInfoCache imageInfoCache = new ImageInfoCache(METADATA_CACHE_SIZE); // shared by the scan and the stages
+    private MediaStoreResolver mediaStore;
+    private RollingLog masterLog; // PhotoProvenance/master_log/, one line per photo
+    private ThumbnailCache<Bitmap> thumbnails; // PhotoProvenance/thumbnails/, for a history view
+    private final QualityScheduler qualityScheduler = new QualityScheduler(QUALITY_LATENCY_BUDGET_MS,
+            QUALITY_MAX_SAMPLE_SIZE, QUALITY_MAX_LATER_JOBS, QUALITY_AUDIT_EVERY);
+    private final ArrayDeque<ExtractJob> laterJobs = new ArrayDeque<>(); // deferred and audit jobs; guarded by itself
+
+    // Reused across photos: band and preview int[] buffers, band/preview/full-decode bitmaps
+    private final IntArrayPool bufferPool = new IntArrayPool("buffers", BUFFER_POOL_BYTES);
+    private final BitmapPool bitmapPool = new BitmapPool("bitmaps", BITMAP_POOL_BYTES);
+
+    // Metrics: registered once here, recorded allocation-free from the pipeline threads
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Timer metadataTimer = metrics.timer("metadata");
+    private final Metrics.Timer openTimer = metrics.timer("decode.open");
+    private final Metrics.Timer decodeTimer = metrics.timer("decode");
+    private final Metrics.Timer[] stageTimers = { // indexed by SignatureExtractor.STAGE_*
+            metrics.timer("extract.strands"),
+            metrics.timer("extract.constellation"),
+            metrics.timer("extract.pyramid"),
+            metrics.timer("extract.preview")
+    };
+    private final Metrics.Timer photoTimer = metrics.timer("photo.total");
+    private final Metrics.Timer strandWriteTimer = metrics.timer("write.strands");
+    private final Metrics.Timer storeWriteTimer = metrics.timer("write.store");
+    private final Metrics.Timer masterLogTimer = metrics.timer("write.master_log");
+    private final Metrics.Timer thumbnailTimer = metrics.timer("write.thumbnail");
+    private final Metrics.Counter photosProcessed = metrics.counter("photos.processed");
+    private final Metrics.Counter photosFailed = metrics.counter("photos.failed");
+    private final Metrics.Counter uploadsQueued = metrics.counter("uploads.queued");
+    private final Metrics.Counter uploadsSuppressed = metrics.counter("uploads.suppressed_duplicates");
+    private final Metrics.Counter uploadsOk = metrics.counter("upload.signatures");
+    private final Metrics.Counter uploadBatchesFailed = metrics.counter("upload.batches.failed");
+    private final Metrics.Counter catchUpBatches = metrics.counter("catchup.batches");
+    private final Metrics.Counter throttlePauses = metrics.counter("catchup.throttle_pauses");
+
+    // Settings
+    private static final String CAPTURED_BY = "agbuddy7";
+    private static final int CONSTELLATION_BAND_PIXELS = 256 * 1024; // ~1 MB row buffer per tile
+    private static final int CONSTELLATION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int STREAM_BAND_PIXELS = 1024 * 1024; // ~4 MB band bitmap + 4 MB int[] band
+    private static final int PREVIEW_MAX_WIDTH = 1080;
+    private static final int PREVIEW_MAX_HEIGHT = 1920;
+    private static final long BUFFER_POOL_BYTES = 32L * 1024 * 1024; // int[] band + ARGB preview (~3 MP)
+    private static final int THUMBNAIL_MAX_WIDTH = 256; // thumbnails are at least 256x192 (long x short side)
+    private static final int THUMBNAIL_MAX_HEIGHT = 192;
+    private static final int THUMBNAIL_QUALITY = 80; // JPEG on disk, ~15 KB each
+    private static final long THUMBNAIL_MEMORY_BYTES = 16L * 1024 * 1024; // ~130 decoded RGB_565 thumbnails
+    private static final long THUMBNAIL_DISK_BYTES = 64L * 1024 * 1024; // ~4000 thumbnails
+    private static final long BITMAP_POOL_BYTES = 32L * 1024 * 1024; // band bitmap + RGB_565 preview
+    private static final boolean EXPORT_STRAND_TEXT = false; // also write the old pixel_strands_ID.txt
+    private static final boolean EXPORT_SIDECAR_FILES = false; // also write constellation_ID.json and a metadata line to the master log
+    private static final StrandLayout STRAND_LAYOUT = StrandLayout.THREE_VERTICAL; // id is written to each strand file
+    private static final boolean SUPPRESS_DUPLICATE_UPLOADS = true; // skip uploading near-duplicates of stored photos
+    private static final boolean BINARY_UPLOADS = true; // compact wire format, JSON if the server answers 415
+    private static final long CHANGE_DEBOUNCE_MS = 800;
+    private static final int CATCH_UP_BATCH = 16; // IDs per MediaStore query; throttling is checked between batches
+    private static final int METADATA_CACHE_SIZE = 128; // > metadata queue (64) + one batch, so queued IDs stay cached
+    private static final int MASTER_LOG_COMMIT_BYTES = 16 * 1024; // a burst commits early once this much is buffered
+    private static final long MASTER_LOG_COMMIT_MS = 2000; // otherwise lines reach disk within this
+    private static final long MASTER_LOG_SEGMENT_BYTES = 1024 * 1024; // sealed and gzipped past this (~5000 photos)
+    private static final int MASTER_LOG_SEGMENTS = 32; // sealed segments kept
+    private static final long QUALITY_LATENCY_BUDGET_MS = 2000; // per photo, waiting behind a burst included
+    private static final int QUALITY_MAX_SAMPLE_SIZE = 4; // coarsest reduced decode, 1/16 of the pixels
+    private static final int QUALITY_MAX_LATER_JOBS = 32; // deferred photos wait in deferred_ids until run
+    private static final int QUALITY_AUDIT_EVERY = 8; // one reduced photo in 8 is re-run at full resolution and scored
+    private static final String BATCH_REGISTER_URL = "https://netra-1.onrender.com/register/batch";
+    private static final long METRICS_SNAPSHOT_MS = 30 * 1000; // PhotoProvenance/metrics.json
+
+    private CaptureEngine(Context context) {
+        this.context = context;
+    }
+
+    /** The process-wide engine, created on first use. */
+    public static synchronized CaptureEngine get(Context context) {
+        if (instance == null) {
+            instance = new CaptureEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Opens storage and starts the pipeline; safe to call again from a new activity. */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+
+        constellationEngine = new ParallelConstellationExtractor(CONSTELLATION_PARALLELISM, CONSTELLATION_BAND_PIXELS);
+        mediaStore = new MediaStoreResolver(context.getContentResolver(), imageInfoCache.recordTo(metrics),
+                CATCH_UP_BATCH, metrics);
+        bufferPool.recordTo(metrics);
+        bitmapPool.recordTo(metrics);
+        qualityScheduler.recordTo(metrics);
+        context.registerComponentCallbacks(memoryCallbacks);
+        signatureExtractor = new SignatureExtractor(constellationEngine, STREAM_BAND_PIXELS,
+                PREVIEW_MAX_WIDTH, PREVIEW_MAX_HEIGHT, bufferPool).setStrandLayout(STRAND_LAYOUT);
+        changeScheduler = new ChangeCoalescer(CHANGE_DEBOUNCE_MS, this::checkForNewImages,
+                e -> Log.e(TAG, "Error checking for new images", e));
+        highWaterMark = new HighWaterMark(new File(getDirectory(), "high_water_mark"));
+        deferredIds = new DeferredIds(new File(getDirectory(), "deferred_ids"));
+        resubmitDeferred = !deferredIds.load().isEmpty();
+
+        Log.d(TAG, "Image Provenance System - " + STRAND_LAYOUT.getName() + " Strands (Raw Pixel Data)");
+
+        openSignatureStore();
+        openMasterLog();
+        openThumbnailCache();
+        startUploadOutbox();
+        startPipeline();
+        startMetricsSnapshots();
+    }
+
+    /**
+     * Starts watching MediaStore (once the read permission is granted) and catches up
+     * on everything added since the persisted high-water mark.
+     */
+    public synchronized void startObserving() {
+        if (!started) start();
+
+        if (imageObserver == null) {
+            initializeLastImageId();
+            registerImageObserver();
+        }
+        catchUp();
+    }
+
+    /** Scans for IDs past the high-water mark, e.g. when returning to the foreground. */
+    public synchronized void catchUp() {
+        if (imageObserver != null) changeScheduler.signal();
+    }
+
+    /** Attaches the UI; the latest status and photo are replayed to it. */
+    public void setListener(Listener newListener) {
+        listener = newListener;
+
+        mainHandler.post(() -> {
+            if (listener != newListener) return;
+            if (lastStatus != null) newListener.onStatus(lastStatus);
+            Runnable photo = lastPhoto;
+            if (photo != null) photo.run();
+            newListener.onCountsChanged();
+        });
+    }
+
+    /** Detaches the UI if it is still the attached one. */
+    public void removeListener(Listener oldListener) {
+        if (listener == oldListener) listener = null;
+    }
+
+    public int getPhotosCapturedCount() {
+        return photosCapturedCount;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /** The strand layout every photo is sampled with. */
+    public StrandLayout getStrandLayout() {
+        return STRAND_LAYOUT;
+    }
+
+    public String getCountsSummary() {
+        return String.format(Locale.US,
+                "Photos: %d | Queue: %d\nPhoto p50/p99: %.0f/%.0fms | Decode p50: %.0fms\nUploaded: %d | Failed batches: %d",
+                photosCapturedCount, getPipelineDepth(),
+                photoTimer.getPercentileMs(0.5), photoTimer.getPercentileMs(0.99), decodeTimer.getPercentileMs(0.5),
+                uploadsOk.get(), uploadBatchesFailed.get());
+    }
+
+    private void postStatus(String message) {
+        lastStatus = message;
+        Log.d(TAG, message);
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) current.onStatus(message);
+        });
+    }
+
+    private void notifyCountsChanged() {
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) current.onCountsChanged();
+        });
+    }
+
+    private File getDirectory() {
+        File directory = new File(context.getExternalFilesDir(null), "PhotoProvenance");
+        if (!directory.exists()) directory.mkdirs();
+        return directory;
+    }
+
+    // ==========================================
+    // OBSERVATION AND CATCH-UP
+    // ==========================================
+
+    /** Resumes from the persisted high-water mark; on the very first run, from the newest photo. */
+    private void initializeLastImageId() {
+        long mark = highWaterMark.load();
+        if (mark >= 0) {
+            lastImageId = mark;
+            Log.d(TAG, "Resuming after image ID " + mark);
+            return;
+        }
+
+        try {
+            long newest = mediaStore.newestId();
+            // First run: the existing gallery is not new
+            highWaterMark.reset(newest);
+            lastImageId = newest;
+            Log.d(TAG, "Initialized with last image ID: " + newest);
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing last image ID", e);
+        }
+    }
+
+    private void registerImageObserver() {
+        try {
+            ContentResolver contentResolver = context.getContentResolver();
+
+            imageObserver = new ContentObserver(mainHandler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    super.onChange(selfChange);
+                    onMediaStoreChange();
+                }
+
+                @Override
+                public void onChange(boolean selfChange, Uri uri) {
+                    super.onChange(selfChange, uri);
+                    onMediaStoreChange();
+                }
+            };
+
+            contentResolver.registerContentObserver(
+                    MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    true,
+                    imageObserver
+            );
+
+            Log.d(TAG, "Image observer registered");
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to register image observer", e);
+        }
+    }
+
+    private void onMediaStoreChange() {
+        // Bursts of notifications collapse into one range query on the scheduler's worker
+        changeScheduler.signal();
+    }
+
+    /**
+     * Enqueues every ID past lastImageId, CATCH_UP_BATCH at a time, pausing between
+     * batches while the device is hot or low on battery.
+     */
+    private int checkForNewImages() throws InterruptedException {
+        if (lastImageId < 0) {
+            // Never initialized: don't treat the whole gallery as new
+            initializeLastImageId();
+            return 0;
+        }
+
+        int enqueued = 0;
+        if (resubmitDeferred) {
+            resubmitDeferred = false;
+            enqueued += resubmitDeferredIds();
+        }
+        for (int batch = 0; ; batch++) {
+            CaptureThrottle.Conditions conditions = readConditions();
+            long pause = throttle.pauseBeforeBatch(conditions, batch > 0);
+            if (pause > 0) {
+                throttlePauses.inc();
+                postStatus("Paused for " + pause / 1000 + "s (" + conditions + ")");
+                Thread.sleep(pause);
+            }
+
+            int submitted = enqueueBatch();
+            enqueued += submitted;
+            if (submitted > 0) {
+                catchUpBatches.inc();
+                notifyCountsChanged();
+            }
+            if (submitted < CATCH_UP_BATCH) break;
+        }
+
+        Log.d(TAG, "Change scan: events=" + changeScheduler.getEventsReceived()
+                + " coalesced=" + changeScheduler.getEventsCoalesced()
+                + " enqueued=" + (changeScheduler.getItemsEnqueued() + enqueued)
+                + " highWaterMark=" + highWaterMark.get());
+        runLaterJob();
+        return enqueued;
+    }
+
+    /**
+     * Resubmits the photos deferred before the last shutdown. They are behind the
+     * high-water mark, so only deferredIds remembers them; each stays listed until
+     * the pipeline finishes it.
+     */
+    private int resubmitDeferredIds() throws InterruptedException {
+        int submitted = 0;
+        for (long imageId : deferredIds.load()) {
+            if (!metadataStage.submit(imageId)) break; // refused: still listed for the next start
+            submitted++;
+        }
+        if (submitted > 0) Log.d(TAG, "Resubmitted " + submitted + " photos deferred before the last shutdown");
+        return submitted;
+    }
+
+    /**
+     * Submits one deferred or audit job once no live photo is waiting, pausing first
+     * like a backlog batch. Each finished extract job signals another scan, so the
+     * jobs run one after another while the pipeline stays idle.
+     */
+    private void runLaterJob() throws InterruptedException {
+        if (metadataStage.getQueueDepth() > 0 || extractStage.getQueueDepth() > 0) return;
+        ExtractJob job;
+        synchronized (laterJobs) {
+            job = laterJobs.poll();
+        }
+        if (job == null) return;
+
+        CaptureThrottle.Conditions conditions = readConditions();
+        long pause = throttle.pauseBeforeBatch(conditions, true);
+        if (pause > 0) {
+            throttlePauses.inc();
+            postStatus("Deferred work paused for " + pause / 1000 + "s (" + conditions + ")");
+            Thread.sleep(pause);
+        }
+        // Not finished here: a deferred photo still queued at shutdown stays listed for the next start
+        extractStage.submit(job);
+    }
+
+    /** Queues a deferred or audit job; false if QUALITY_MAX_LATER_JOBS are already waiting. */
+    private boolean addLaterJob(ExtractJob job) {
+        synchronized (laterJobs) {
+            if (laterJobs.size() >= QUALITY_MAX_LATER_JOBS) return false;
+            laterJobs.add(job);
+            return true;
+        }
+    }
+
+    private int getLaterJobCount() {
+        synchronized (laterJobs) {
+            return laterJobs.size();
+        }
+    }
+
+    /**
+     * Enqueues up to CATCH_UP_BATCH IDs past lastImageId in capture order; returns how
+     * many. The same cursor pass caches their metadata for the metadata stage.
+     */
+    private int enqueueBatch() throws InterruptedException {
+        int submitted = 0;
+        for (ImageInfo info : mediaStore.queryAfter(lastImageId, CATCH_UP_BATCH)) {
+            long imageId = info.id;
+            Log.d(TAG, "🔔 New image detected! ID: " + imageId);
+            lastImageId = imageId;
+            highWaterMark.started(imageId);
+            submitted++;
+
+            // Blocks while the pipeline is full; new change events coalesce meanwhile
+            if (!metadataStage.submit(imageId)) {
+                finished(imageId);
+            }
+        }
+        return submitted;
+    }
+
+    private CaptureThrottle.Conditions readConditions() {
+        int batteryPercent = -1;
+        boolean charging = false;
+        boolean powerSave = false;
+        int thermalStatus = CaptureThrottle.THERMAL_NONE;
+
+        BatteryManager battery = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        if (battery != null) {
+            batteryPercent = battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            if (batteryPercent <= 0 || batteryPercent > 100) batteryPercent = -1;
+            charging = battery.isCharging();
+        }
+        PowerManager power = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (power != null) {
+            powerSave = power.isPowerSaveMode();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                thermalStatus = power.getCurrentThermalStatus();
+            }
+        }
+        return new CaptureThrottle.Conditions(batteryPercent, charging, powerSave, thermalStatus);
+    }
+
+    /** Called once per enqueued ID when the pipeline is done with it, however it ended. */
+    private void finished(long imageId) {
+        try {
+            highWaterMark.finished(imageId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist high-water mark", e);
+        }
+        try {
+            deferredIds.remove(imageId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist deferred photos", e);
+        }
+    }
+
+    /**
+     * Records a deferred photo durably, then lets the high-water mark move past it.
+     * If the record can't be written the photo stays in flight, holding the mark back
+     * so a restart still finds it.
+     */
+    private void deferred(long imageId) {
+        try {
+            deferredIds.add(imageId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist deferred photo " + imageId, e);
+            return;
+        }
+        try {
+            highWaterMark.finished(imageId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist high-water mark", e);
+        }
+    }
+
+    // ==========================================
+    // PIPELINE
+    // ==========================================
+
+    private void startPipeline() {
+        metadataStage = new PipelineStage<>("metadata", 64, 1,
+                PipelineStage.OverflowPolicy.BLOCK, imageId -> {
+                    ImageInfo info = queryImageInfo(imageId);
+                    if (info == null) {
+                        finished(imageId);
+                        return null;
+                    }
+                    return new ExtractJob(info, null, 1, false, null);
+                });
+        extractStage = new PipelineStage<>("extract", 2, 1,
+                PipelineStage.OverflowPolicy.BLOCK, job -> {
+                    try {
+                        ExtractJob scheduled = job.tier != null ? job : scheduleQuality(job.info);
+                        if (scheduled == null) return null; // deferred: listed in deferredIds until it runs
+
+                        ExtractedImage image = loadAndExtract(scheduled);
+                        if (scheduled.auditOf != null) {
+                            if (image != null) auditReducedSignature(scheduled.auditOf, image);
+                            return null;
+                        }
+                        if (image == null) finished(job.info.id);
+                        return image;
+                    } finally {
+                        if (getLaterJobCount() > 0) changeScheduler.signal();
+                    }
+                });
+        PipelineStage<ExtractedImage, SignatureUpload> persistStage = new PipelineStage<>("persist", 8, 1,
+                PipelineStage.OverflowPolicy.BLOCK, image -> {
+                    SignatureUpload upload = persistSignature(image);
+                    if (upload == null) finished(image.info.id);
+                    return upload;
+                });
+        PipelineStage<SignatureUpload, Void> uploadStage = new PipelineStage<>("upload", 32, 1,
+                PipelineStage.OverflowPolicy.BLOCK, upload -> {
+                    sendSignatureToDatabase(upload.imageId, upload.record, upload.pyramid);
+                    finished(upload.imageId);
+                    logPipeline();
+                    return null;
+                });
+
+        metadataStage.then(extractStage).then(persistStage).then(uploadStage);
+
+        metadataStage.onError((imageId, e) -> failed("metadata", imageId, e));
+        extractStage.onError((job, e) -> failed("extract", job.info.id, e));
+        persistStage.onError((image, e) -> failed("persist", image.info.id, e));
+        uploadStage.onError((upload, e) -> failed("upload", upload.imageId, e));
+
+        pipelineStages.add(metadataStage);
+        pipelineStages.add(extractStage);
+        pipelineStages.add(persistStage);
+        pipelineStages.add(uploadStage);
+
+        for (PipelineStage<?, ?> stage : pipelineStages) {
+            stage.recordTo(metrics);
+            stage.start();
+        }
+        Log.d(TAG, "📋 Pipeline started");
+    }
+
+    private void failed(String stageName, long imageId, Exception e) {
+        photosFailed.inc();
+        Log.e(TAG, "Error in " + stageName + " stage for image " + imageId, e);
+        finished(imageId);
+    }
+
+    private int getPipelineDepth() {
+        int depth = 0;
+        for (PipelineStage<?, ?> stage : pipelineStages) {
+            depth += stage.getQueueDepth();
+        }
+        return depth;
+    }
+
+    private void logPipeline() {
+        StringBuilder view = new StringBuilder("📊 Pipeline:");
+        for (PipelineStage<?, ?> stage : pipelineStages) {
+            view.append("\n  ").append(stage.describe());
+        }
+        view.append("\n  ").append(imageInfoCache.describe()).append(", queries=").append(mediaStore.getQueries());
+        view.append("\n  ").append(bufferPool.describe());
+        view.append("\n  ").append(bitmapPool.describe());
+        if (thumbnails != null) view.append("\n  ").append(thumbnails.describe());
+        if (masterLog != null) view.append("\n  ").append(masterLog.describe());
+        view.append("\n  ").append(qualityScheduler.describe()).append(", later jobs=").append(getLaterJobCount());
+        Log.d(TAG, view.toString());
+    }
+
+    /** Empties the buffer and bitmap pools when the system asks for memory back. */
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                Log.d(TAG, "Trim memory (" + level + "): " + bufferPool.describe() + ", " + bitmapPool.describe());
+                bufferPool.clear();
+                bitmapPool.clear();
+                ThumbnailCache<Bitmap> cache = thumbnails;
+                if (cache != null) cache.clearMemory();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    // ==========================================
+    // PROCESSING
+    // ==========================================
+
+    /** Input of the extract stage: a photo and, once the scheduler has decided, its quality tier. */
+    private static final class ExtractJob {
+        final ImageInfo info;
+        final QualityTier tier; // null until scheduleQuality decides
+        final int sampleSize;
+        final boolean auditLater; // re-run this REDUCED photo at full resolution once idle
+        final SignatureRecord auditOf; // for an audit: the reduced signature to score against
+
+        ExtractJob(ImageInfo info, QualityTier tier, int sampleSize, boolean auditLater, SignatureRecord auditOf) {
+            this.info = info;
+            this.tier = tier;
+            this.sampleSize = sampleSize;
+            this.auditLater = auditLater;
+            this.auditOf = auditOf;
+        }
+    }
+
+    /** Output of the extract stage, consumed by the persist stage. */
+    private static final class ExtractedImage {
+        final ImageInfo info;
+        final ExtractJob job;
+        final int photoNumber;
+        final StrandSampler strands;
+        final ConstellationExtractor constellation;
+        final ConstellationPyramid pyramid; // null if the image is too small
+
+        ExtractedImage(ExtractJob job, int photoNumber, StrandSampler strands, ConstellationExtractor constellation,
+                       ConstellationPyramid pyramid) {
+            this.info = job.info;
+            this.job = job;
+            this.photoNumber = photoNumber;
+            this.strands = strands;
+            this.constellation = constellation;
+            this.pyramid = pyramid;
+        }
+    }
+
+    /** Output of the persist stage, consumed by the upload stage. */
+    private static final class SignatureUpload {
+        final long imageId;
+        final SignatureRecord record;
+        final ConstellationPyramid pyramid; // null if there is no pyramid
+
+        SignatureUpload(long imageId, SignatureRecord record, ConstellationPyramid pyramid) {
+            this.imageId = imageId;
+            this.record = record;
+            this.pyramid = pyramid;
+        }
+    }
+
+    /** Metadata for the image, normally already cached by the change scan's query. */
+    private ImageInfo queryImageInfo(long imageId) {
+        long queryStart = System.nanoTime();
+        ImageInfo info = mediaStore.resolve(imageId);
+        if (info == null) return null;
+
+        metadataTimer.stop(queryStart);
+        Log.d(TAG, "🔄 Processing image ID: " + imageId + " (" + info.displayName + ")");
+        return info;
+    }
+
+    /** Lets the scheduler pick the photo's quality tier; null if it was deferred. */
+    private ExtractJob scheduleQuality(ImageInfo info) {
+        int backlog = metadataStage.getQueueDepth() + extractStage.getQueueDepth();
+        QualityScheduler.Decision decision = qualityScheduler.decide((long) info.width * info.height, backlog,
+                readConditions(), getLaterJobCount());
+
+        if (decision.tier == QualityTier.DEFERRED && addLaterJob(new ExtractJob(info, QualityTier.DEFERRED, 1, false, null))) {
+            deferred(info.id);
+            postStatus("Photo deferred until idle: " + info.displayName);
+            return null;
+        }
+        if (decision.tier == QualityTier.REDUCED) {
+            Log.d(TAG, "Quality " + decision + " for image " + info.id + " (predicted "
+                    + decision.predictedNanos / 1000000 + "ms, backlog " + backlog + ")");
+        }
+        return decision.tier == QualityTier.DEFERRED
+                ? new ExtractJob(info, QualityTier.FULL, 1, false, null)
+                : new ExtractJob(info, decision.tier, decision.sampleSize, decision.audit, null);
+    }
+
+    private ExtractedImage loadAndExtract(ExtractJob job) throws java.io.IOException {
+        ImageInfo info = job.info;
+        Uri imageUri = Uri.parse(info.uri);
+        String displayName = info.displayName;
+        long fileSize = info.fileSize;
+        boolean audit = job.auditOf != null;
+        int photoNumber = audit ? 0 : ++photosCapturedCount;
+        postStatus(audit ? "Auditing a reduced signature..." : "Processing photo...");
+
+        long openStart = System.nanoTime();
+
+        // Stream the image in bands so the full-resolution ARGB bitmap never sits in
+        // memory. Formats BitmapRegionDecoder can't open fall back to a full decode.
+        RegionDecoderPixelSource regionSource = openRegionSource(imageUri, job.sampleSize);
+        Bitmap fullBitmap = null;
+        PixelSource source = regionSource;
+        if (source == null) {
+            fullBitmap = decodeFullBitmap(imageUri, job.sampleSize);
+            if (fullBitmap == null) return null;
+            source = new BitmapPixelSource(fullBitmap);
+        }
+
+        // Pixels stay as stored; every extractor maps its coordinates to the upright frame
+        ImageOrientation orientation = readOrientation(imageUri, info.orientationDegrees);
+        long scanStart = System.nanoTime();
+
+        // A single walk over the pixels feeds the strands, the constellation and the preview
+        SignatureExtractor.Result result;
+        try {
+            postStatus("Extracting strands and constellation...");
+            // MediaStore's size is the full-resolution one; a reduced source has its own
+            boolean full = job.sampleSize == 1;
+            result = signatureExtractor.extract(source, full ? info.width : 0, full ? info.height : 0, orientation);
+        } finally {
+            if (regionSource != null) regionSource.recycle();
+            bitmapPool.release(fullBitmap);
+        }
+        long scanEnd = System.nanoTime();
+
+        if (result.strands == null) Log.e(TAG, "Image too small for strands: " + info.width + "x" + info.height);
+        if (result.pyramid == null) Log.w(TAG, "Image too small for the constellation pyramid");
+
+        long fullPixels = info.width > 0 && info.height > 0 ? (long) info.width * info.height
+                : (long) result.constellation.getWidth() * result.constellation.getHeight() * job.sampleSize * job.sampleSize;
+        qualityScheduler.recordCost(job.sampleSize, fullPixels, scanEnd - openStart);
+        if (audit) {
+            signatureExtractor.release(result);
+            return new ExtractedImage(job, photoNumber, result.strands, result.constellation, result.pyramid);
+        }
+
+        // Display bitmap comes from the same walk, no second decode, drawn into a pooled bitmap
+        Bitmap displayBitmap = bitmapPool.acquire(result.previewWidth, result.previewHeight, Bitmap.Config.RGB_565);
+        displayBitmap.setPixels(result.previewPixels, 0, result.previewWidth, 0, 0,
+                result.previewWidth, result.previewHeight);
+        saveThumbnail(info.id, result);
+        signatureExtractor.release(result);
+        long previewBuilt = System.nanoTime();
+
+        openTimer.record(scanStart - openStart);
+        decodeTimer.record(result.decodeNanos);
+        for (int i = 0; i < stageTimers.length; i++) {
+            if (result.stageNanos[i] > 0) stageTimers[i].record(result.stageNanos[i]);
+        }
+        photoTimer.record(previewBuilt - openStart);
+        photosProcessed.inc();
+
+        StringBuilder timing = new StringBuilder("⏱ ").append(orientation).append(" open=").append((scanStart - openStart) / 1000000)
+                .append("ms decode=").append(result.decodeNanos / 1000000).append("ms");
+        for (int i = 0; i < SignatureExtractor.STAGE_NAMES.length; i++) {
+            timing.append(' ').append(SignatureExtractor.STAGE_NAMES[i]).append('=').append(result.stageNanos[i] / 1000000).append("ms");
+        }
+        timing.append(" | scan=").append((scanEnd - scanStart) / 1000000)
+                .append("ms previewBitmap=").append((previewBuilt - scanEnd) / 1000000)
+                .append("ms total=").append((previewBuilt - openStart) / 1000000).append("ms");
+        Log.d(TAG, timing.toString());
+
+        int actualWidth = info.width > 0 ? info.width : result.constellation.getWidth();
+        int actualHeight = info.height > 0 ? info.height : result.constellation.getHeight();
+        int displayWidth = orientation.displayWidth(actualWidth, actualHeight);
+        int displayHeight = orientation.displayHeight(actualWidth, actualHeight);
+
+        // Update UI
+        lastStatus = "Photo: " + displayName;
+        Runnable photo = () -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onPhotoProcessed(photoNumber, displayName, displayWidth, displayHeight, fileSize, displayBitmap);
+            }
+        };
+        mainHandler.post(() -> showPreview(photo, displayBitmap));
+
+        return new ExtractedImage(job, photoNumber, result.strands, result.constellation, result.pyramid);
+    }
+
+    /** Scores a reduced signature against the full-resolution one of the same photo, as the server would. */
+    private void auditReducedSignature(SignatureRecord reduced, ExtractedImage full) {
+        SignatureRecord fullRecord = SignatureRecord.of(full.info, reduced.capturedAt, reduced.strandPixels,
+                full.constellation);
+        double score = SignatureMatcher.score(reduced, fullRecord);
+        qualityScheduler.recordAudit(score);
+        Log.d(TAG, String.format(Locale.US, "Audit of image %d: reduced/%d scores %.1f against full resolution (%d/%d audits matched)",
+                reduced.imageId, reduced.sampleSize, score, qualityScheduler.getAuditMatches(),
+                qualityScheduler.getAuditSamples()));
+    }
+
+    /** Averages the preview down to a thumbnail and caches it for the history view. */
+    private void saveThumbnail(long imageId, SignatureExtractor.Result result) {
+        ThumbnailCache<Bitmap> cache = thumbnails;
+        if (cache == null) return;
+        long start = System.nanoTime();
+        try {
+            PreviewDownsampler thumbnail = PreviewDownsampler.downsample(result.previewPixels,
+                    result.previewWidth, result.previewHeight,
+                    PreviewDownsampler.sampleSizeFor(result.previewWidth, result.previewHeight,
+                            THUMBNAIL_MAX_WIDTH, THUMBNAIL_MAX_HEIGHT));
+            Bitmap bitmap = Bitmap.createBitmap(thumbnail.getPixels(), thumbnail.getDisplayWidth(),
+                    thumbnail.getDisplayHeight(), Bitmap.Config.RGB_565);
+            cache.put(imageId, bitmap);
+            thumbnailTimer.stop(start);
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving thumbnail", e);
+        }
+    }
+
+    /**
+     * Thumbnail of a processed photo for a history view, or null if it isn't cached.
+     * May read from disk, so call it off the main thread.
+     */
+    public Bitmap getThumbnail(long imageId) {
+        ThumbnailCache<Bitmap> cache = thumbnails;
+        return cache != null ? cache.get(imageId) : null;
+    }
+
+    /**
+     * Main thread: shows the new preview, then hands the one it replaces back to the
+     * pool. The listener has swapped its ImageView over by then, so nothing draws it.
+     */
+    private void showPreview(Runnable photo, Bitmap preview) {
+        Bitmap replaced = shownPreview;
+        shownPreview = preview;
+        lastPhoto = photo;
+        photo.run();
+        if (replaced != null) bitmapPool.release(replaced);
+    }
+
+    private SignatureUpload persistSignature(ExtractedImage image) {
+        long imageId = image.info.id;
+
+        // Save the pixel strands (STRAND_LAYOUT)
+        int strandPixels = 0;
+        if (image.strands != null) {
+            extractStrands(image.strands, imageId, image.info.displayName, image.info.fileSize,
+                    image.info.uri, image.photoNumber);
+            strandPixels = image.strands.getTotalCount();
+        }
+
+        // Save Constellation (Geometric Keypoints); the upload stage sends it on
+        SignatureRecord record = SignatureRecord.of(image.info, System.currentTimeMillis(), strandPixels, image.constellation,
+                image.job.tier, image.job.sampleSize);
+        DuplicateIndex.Match nearest = findNearestSignature(record);
+        boolean suppressed = SUPPRESS_DUPLICATE_UPLOADS && nearest != null && nearest.isMatch()
+                && nearest.imageId != imageId;
+        if (suppressed) record = record.withUploadSuppressed();
+        storeSignature(record);
+        if (image.job.auditLater && addLaterJob(new ExtractJob(image.info, QualityTier.FULL, 1, false, record))) {
+            changeScheduler.signal();
+        }
+
+        if (EXPORT_SIDECAR_FILES) {
+            saveConstellation(record.toJson(), imageId);
+        }
+
+        if (suppressed) {
+            Log.d(TAG, String.format(Locale.US, "Near-duplicate of image %d (score %.1f, %d tight stars), upload skipped",
+                    nearest.imageId, nearest.score, nearest.matchedStars));
+            uploadsSuppressed.inc();
+            return null;
+        }
+        return new SignatureUpload(imageId, record, image.pyramid);
+    }
+
+    private RegionDecoderPixelSource openRegionSource(Uri imageUri, int sampleSize) {
+        try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
+            if (inputStream == null) return null;
+
+            BitmapRegionDecoder decoder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? BitmapRegionDecoder.newInstance(inputStream)
+                    : BitmapRegionDecoder.newInstance(inputStream, false);
+            return decoder != null ? new RegionDecoderPixelSource(decoder, bitmapPool, sampleSize) : null;
+        } catch (Exception e) {
+            Log.w(TAG, "Region decoding unavailable, using full decode", e);
+            return null;
+        }
+    }
+
+    /** EXIF orientation of the image; read from the header only, before decoding. */
+    private ImageOrientation readOrientation(Uri imageUri, int mediaStoreDegrees) {
+        try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
+            if (inputStream == null) return ImageOrientation.fromDegrees(mediaStoreDegrees);
+
+            ExifInterface exif = new ExifInterface(inputStream);
+            return ImageOrientation.fromExif(exif.getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL));
+        } catch (Exception e) {
+            // MediaStore's rotation has no mirroring, but beats assuming upright
+            Log.w(TAG, "Could not read EXIF orientation, using MediaStore's " + mediaStoreDegrees + " degrees", e);
+            return ImageOrientation.fromDegrees(mediaStoreDegrees);
+        }
+    }
+
+    private Bitmap decodeFullBitmap(Uri imageUri, int sampleSize) throws java.io.IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // Bounds first, so a pooled bitmap can be offered as inBitmap
+        try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
+            if (inputStream == null) return null;
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            // Rounded up, so the pooled bitmap is never smaller than the sampled decode
+            options.inBitmap = bitmapPool.acquireForDecode((options.outWidth + sampleSize - 1) / sampleSize,
+                    (options.outHeight + sampleSize - 1) / sampleSize, Bitmap.Config.ARGB_8888);
+        }
+
+        try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
+            if (inputStream == null) {
+                bitmapPool.release(options.inBitmap);
+                return null;
+            }
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        }
+    }
+
+    private void extractStrands(StrandSampler strands, long imageId, String displayName, long fileSize, String uri,
+                                int photoNumber) {
+        try {
+            long startTime = System.currentTimeMillis();
+            int width = strands.getWidth();
+            int height = strands.getHeight();
+
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+            String timestamp = sdf.format(new Date());
+
+            File directory = getDirectory();
+
+            String pixelFileName = "pixel_strands_" + imageId + ".bin";
+            File pixelFile = new File(directory, pixelFileName);
+
+            StrandLayout layout = strands.getLayout();
+            for (int i = 0; i < strands.getStrandCount(); i++) {
+                Log.d(TAG, "Strand " + (i + 1) + " (" + layout.getStrand(i).label + "): " + strands.getDirection(i)
+                        + " from X=" + strands.getX(i) + ", Y=" + strands.getYStart(i) + ", " + strands.getCount(i) + " pixels");
+            }
+
+            // Compact binary strands (see StrandFileWriter for the format)
+            long writeStart = System.nanoTime();
+            strandFileWriter.write(pixelFile, imageId, displayName, uri, timestamp, CAPTURED_BY, fileSize, strands);
+            strandWriteTimer.stop(writeStart);
+
+            if (EXPORT_STRAND_TEXT) {
+                // Debug only: round-trip through the reader into the old text layout
+                File textFile = new File(directory, "pixel_strands_" + imageId + ".txt");
+                try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(textFile))) {
+                    StrandFileReader.read(pixelFile).writeText(writer);
+                }
+            }
+
+            int totalPixels = strands.getTotalCount();
+
+            long endTime = System.currentTimeMillis();
+            long duration = endTime - startTime;
+
+            Log.d(TAG, "✓ " + strands.getStrandCount() + " strands (layout " + layout.getName() + ") saved in " + duration + "ms");
+            Log.d(TAG, "✓ File saved: " + pixelFile.getAbsolutePath());
+            Log.d(TAG, "✓ File size: " + (pixelFile.length() / 1024) + " KB");
+            Log.d(TAG, "✓ Total pixels: " + totalPixels);
+
+            // Per-photo metadata lives in the signature store; the text summary is for debugging
+            if (EXPORT_SIDECAR_FILES) {
+                saveMetadataSummary(imageId, displayName, width, height, fileSize, uri, timestamp, strands, photoNumber);
+            }
+
+            // Update master log
+            updateMasterLog(imageId, displayName, width, height, fileSize, timestamp, layout, totalPixels);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error extracting strands", e);
+        }
+    }
+
+    private void storeSignature(SignatureRecord record) {
+        if (signatureStore == null) {
+            Log.e(TAG, "Signature store unavailable, signature not stored locally");
+            return;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            long appendStart = System.nanoTime();
+            boolean appended = signatureStore.append(record);
+            storeWriteTimer.stop(appendStart);
+            if (appended) {
+                // Only uploaded signatures are indexed: matching a suppressed one would chain
+                // suppression across a slow drift the server never sees
+                if (duplicateIndex != null && !record.uploadSuppressed) duplicateIndex.add(record);
+                long duration = System.currentTimeMillis() - startTime;
+                Log.d(TAG, "✓ Signature stored (" + duration + "ms), " + signatureStore.size() + " in store");
+            } else {
+                Log.d(TAG, "Signature for image " + record.imageId + " already stored");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing signature", e);
+        }
+    }
+
+    private DuplicateIndex.Match findNearestSignature(SignatureRecord record) {
+        if (signatureStore == null) return null;
+
+        if (duplicateIndex == null) {
+            long startTime = System.currentTimeMillis();
+            DuplicateIndex index = new DuplicateIndex(signatureStore.size() + 1024);
+            signatureStore.scan(stored -> {
+                if (!stored.uploadSuppressed) index.add(stored);
+                return true;
+            });
+            duplicateIndex = index;
+            Log.d(TAG, "Duplicate index built from " + index.size() + " signatures in "
+                    + (System.currentTimeMillis() - startTime) + "ms");
+        }
+
+        long startNanos = System.nanoTime();
+        DuplicateIndex.Match nearest = duplicateIndex.nearest(record);
+        Log.d(TAG, "Nearest-signature lookup: " + (System.nanoTime() - startNanos) / 1000 + "us");
+        return nearest;
+    }
+
+    private void saveConstellation(String finalJson, long imageId) {
+        try {
+            long startTime = System.currentTimeMillis();
+
+            // Save to a NEW separate file: constellation_ID.json
+            File directory = getDirectory();
+            
+            File constFile = new File(directory, "constellation_" + imageId + ".json");
+            FileOutputStream fos = new FileOutputStream(constFile);
+            OutputStreamWriter writer = new OutputStreamWriter(fos);
+            writer.write(finalJson);
+            writer.close();
+            fos.close();
+
+            long duration = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "✓ Constellation JSON saved (" + duration + "ms): " + constFile.getAbsolutePath());
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error generating constellation", e);
+        }
+    }
+
+    private void saveMetadataSummary(long imageId, String displayName, int width, int height, long fileSize, String uri,
+                                     String timestamp, StrandSampler strands, int photoNumber) {
+        // One line in the master log instead of a metadata_ID.txt per photo
+        StringBuilder line = new StringBuilder(256);
+        line.append("META ID:").append(imageId)
+                .append(" | ").append(displayName)
+                .append(" | ").append(width).append('x').append(height)
+                .append(" | ").append(fileSize).append(" bytes")
+                .append(" | ").append(uri)
+                .append(" | at ").append(timestamp)
+                .append(" | by ").append(CAPTURED_BY)
+                .append(" | #").append(photoNumber)
+                .append(" | layout ").append(strands.getLayout().getName());
+        for (int i = 0; i < strands.getStrandCount(); i++) {
+            line.append(" | S").append(i + 1).append(' ').append(strands.getDirection(i))
+                    .append(" x=").append(strands.getX(i)).append(" y=").append(strands.getYStart(i))
+                    .append(" n=").append(strands.getCount(i));
+        }
+        line.append(" | total ").append(strands.getTotalCount())
+                .append(" | pixel_strands_").append(imageId).append(".bin");
+        appendToMasterLog(line);
+    }
+
+    private void updateMasterLog(long imageId, String displayName, int width, int height, long fileSize, String timestamp,
+                                 StrandLayout layout, int totalPixels) {
+        long startNanos = System.nanoTime();
+
+        // Same line as before, built without String.format
+        long centiMb = Math.round(fileSize * 100.0 / (1024 * 1024));
+        StringBuilder line = new StringBuilder(128);
+        line.append('[').append(timestamp).append("] ID:").append(imageId)
+                .append(" | ").append(displayName)
+                .append(" | ").append(width).append('x').append(height)
+                .append(" | ").append(centiMb / 100).append('.').append(centiMb % 100 < 10 ? "0" : "").append(centiMb % 100)
+                .append("MB | ").append(layout.getName()).append(" | Pixels:").append(totalPixels);
+        appendToMasterLog(line);
+        masterLogTimer.stop(startNanos);
+    }
+
+    /** Buffers a line; the log commits it with the rest of the burst. */
+    private void appendToMasterLog(CharSequence line) {
+        RollingLog log = masterLog;
+        if (log == null) return;
+        try {
+            log.append(System.currentTimeMillis(), line);
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating master log", e);
+        }
+    }
+
+    private void sendSignatureToDatabase(long imageId, SignatureRecord record, ConstellationPyramid pyramid) {
+        if (uploadOutbox == null) {
+            Log.e(TAG, "Upload outbox unavailable, signature not queued");
+            return;
+        }
+
+        try {
+            if (installId == null) installId = InstallId.load(new File(getDirectory(), "install_id"));
+            String idempotencyKey = SignaturePayload.idempotencyKey(installId, imageId);
+            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
+            String jsonInputString = SignaturePayload.toJson(imageId, CAPTURED_BY, Build.MODEL, timestamp,
+                    idempotencyKey, record, pyramid);
+            byte[] binary = BINARY_UPLOADS
+                    ? SignatureWireFormat.encode(imageId, CAPTURED_BY, Build.MODEL, timestamp, idempotencyKey, record, pyramid)
+                    : null;
+
+            // Journaled before upload; the outbox sender retries until the server acknowledges it
+            uploadOutbox.enqueue(imageId, idempotencyKey, jsonInputString, binary);
+            uploadsQueued.inc();
+            Log.d(TAG, "Signature queued for upload (" + uploadOutbox.getPendingCount() + " pending)");
+
+        } catch (Exception e) {
+             Log.e(TAG, "Failed to queue signature for upload", e);
+        }
+    }
+
+    private void openSignatureStore() {
+        try {
+            File directory = getDirectory();
+
+            SignatureStore store = new SignatureStore(new File(directory, "signatures.db"));
+            store.open();
+            signatureStore = store;
+            Log.d(TAG, "Signature store opened with " + store.size() + " signatures");
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to open signature store", e);
+        }
+    }
+
+    private void openMasterLog() {
+        try {
+            RollingLog log = new RollingLog(new File(getDirectory(), "master_log"), "master_log",
+                    MASTER_LOG_COMMIT_BYTES, MASTER_LOG_COMMIT_MS, MASTER_LOG_SEGMENT_BYTES, MASTER_LOG_SEGMENTS,
+                    e -> Log.e(TAG, "Error writing master log", e));
+            log.recordTo(metrics).open();
+            masterLog = log;
+            Log.d(TAG, "Master log opened: " + log.describe());
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to open master log", e);
+        }
+    }
+
+    private void openThumbnailCache() {
+        try {
+            ThumbnailCache<Bitmap> cache = new ThumbnailCache<>("thumbnails", new File(getDirectory(), "thumbnails"),
+                    THUMBNAIL_MEMORY_BYTES, THUMBNAIL_DISK_BYTES, new ThumbnailCache.Codec<Bitmap>() {
+                        @Override
+                        public long sizeOf(Bitmap thumbnail) {
+                            return thumbnail.getAllocationByteCount();
+                        }
+
+                        @Override
+                        public byte[] encode(Bitmap thumbnail) throws java.io.IOException {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+                            if (!thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out)) {
+                                throw new java.io.IOException("Thumbnail compression failed");
+                            }
+                            return out.toByteArray();
+                        }
+
+                        @Override
+                        public Bitmap decode(byte[] bytes) {
+                            BitmapFactory.Options options = new BitmapFactory.Options();
+                            options.inPreferredConfig = Bitmap.Config.RGB_565;
+                            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+                        }
+                    });
+            cache.recordTo(metrics).open();
+            thumbnails = cache;
+            Log.d(TAG, "Thumbnail cache opened: " + cache.describe());
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to open thumbnail cache", e);
+        }
+    }
+
+    private void startUploadOutbox() {
+        try {
+            File directory = getDirectory();
+
+            UploadOutbox outbox = new UploadOutbox(new File(directory, "upload_outbox.journal"),
+                    new java.net.URL(BATCH_REGISTER_URL), UploadOutbox.DEFAULT_BATCH_SIZE, metrics,
+                    new UploadOutbox.Listener() {
+                        @Override
+                        public void onBatchUploaded(int count, int pending) {
+                            Log.d(TAG, "Database Upload: " + count + " signatures registered, " + pending + " pending");
+                            mainHandler.post(() -> {
+                                Listener current = listener;
+                                if (current != null) {
+                                    current.onSignaturesRegistered(count);
+                                    current.onCountsChanged();
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void onUploadFailed(Exception e, long retryInMs) {
+                            Log.e(TAG, "Database Upload Failed, retrying in " + retryInMs + "ms", e);
+                            notifyCountsChanged();
+                        }
+                    });
+            outbox.preferBinary(BINARY_UPLOADS);
+            outbox.start();
+            uploadOutbox = outbox;
+            Log.d(TAG, "Upload outbox started with " + outbox.getPendingCount() + " pending signatures");
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start upload outbox", e);
+        }
+    }
+
+    private void startMetricsSnapshots() {
+        metrics.startSnapshots(new File(getDirectory(), "metrics.json"), METRICS_SNAPSHOT_MS,
+                e -> Log.e(TAG, "Failed to write metrics snapshot", e));
+    }
+
+    /**
+     * Stops the engine for good (flushing the metrics snapshot). Anything still in the
+     * pipeline is re-found by the catch-up scan on the next start.
+     */
+    public synchronized void shutdown() {
+        if (!started) return;
+        started = false;
+
+        if (imageObserver != null) {
+            try {
+                context.getContentResolver().unregisterContentObserver(imageObserver);
+                Log.d(TAG, "Observer unregistered");
+            } catch (Exception e) {
+                Log.e(TAG, "Error unregistering observer", e);
+            }
+            imageObserver = null;
+        }
+        for (PipelineStage<?, ?> stage : pipelineStages) {
+            stage.shutdown();
+        }
+        pipelineStages.clear();
+        synchronized (laterJobs) {
+            laterJobs.clear(); // deferred photos stay in deferredIds (or in flight) for the next start
+        }
+        constellationEngine.shutdown();
+        context.unregisterComponentCallbacks(memoryCallbacks);
+        bufferPool.clear();
+        bitmapPool.clear();
+        changeScheduler.shutdown();
+        if (uploadOutbox != null) {
+            uploadOutbox.stop();
+            uploadOutbox = null;
+        }
+        if (signatureStore != null) {
+            signatureStore.close();
+            signatureStore = null;
+        }
+        duplicateIndex = null;
+        if (masterLog != null) {
+            masterLog.close();
+            masterLog = null;
+        }
+        if (thumbnails != null) {
+            thumbnails.clearMemory();
+            thumbnails = null;
+        }
+
+        metrics.stopSnapshots();
+        try {
+            metrics.writeSnapshot(new File(getDirectory(), "metrics.json"));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write metrics snapshot", e);
+        }
+    }
+}
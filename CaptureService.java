@@ -0,0 +1,118 @@
+package com.example.myapplication;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Foreground service that keeps the process, and so the CaptureEngine, alive while
+ * no activity is open: without it Android may kill the process soon after the app
+ * leaves the screen, and capture waits for the next launch's catch-up scan.
+ *
+ * MainActivity starts it once the read permission is granted. The engine belongs to
+ * the process, not to this service; stopping the service only lets the process be
+ * reclaimed, and the high-water mark picks up from there.
+ *
+ * Manifest entries (the type is required from Android 14). dataSync is the type that fits
+ * a service extracting and uploading signatures. From Android 15 it may run 6 hours a day,
+ * after which onTimeout stops the service. Nothing is lost: capture resumes from the
+ * high-water mark on the next start, when the activity opens or the app is relaunched:
+ * <pre>
+ * &lt;uses-permission android:name="android.permission.FOREGROUND_SERVICE" /&gt;
+ * &lt;uses-permission android:name="android.permission.FOREGROUND_SERVICE_DATA_SYNC" /&gt;
+ * &lt;uses-permission android:name="android.permission.POST_NOTIFICATIONS" /&gt;
+ *
+ * &lt;service
+ *     android:name=".CaptureService"
+ *     android:exported="false"
+ *     android:foregroundServiceType="dataSync" /&gt;
+ * </pre>
+ */
+public class CaptureService extends Service {
+
+    private static final String TAG = "CaptureService";
+    private static final String CHANNEL_ID = "capture";
+    private static final int NOTIFICATION_ID = 1;
+
+    /** Starts the service (again, harmlessly, if it is running); call from the foreground. */
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, CaptureService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        createChannel();
+        Notification notification = buildNotification();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        CaptureEngine engine = CaptureEngine.get(this);
+        engine.start();
+        if (ContextCompat.checkSelfPermission(this, readPermission()) == PackageManager.PERMISSION_GRANTED) {
+            engine.startObserving();
+        } else {
+            Log.w(TAG, "Read permission missing, not observing");
+        }
+        // Restarted after the process is killed; the catch-up scan covers the gap
+        return START_STICKY;
+    }
+
+    @Override
+    public void onTimeout(int startId, int fgsType) {
+        // dataSync's daily budget is spent (Android 15+). Must stop within seconds or the
+        // system fails the app; the next start catches up from the high-water mark.
+        Log.w(TAG, "Foreground time limit reached, stopping");
+        stopSelf();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private static String readPermission() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Manifest.permission.READ_MEDIA_IMAGES
+                : Manifest.permission.READ_EXTERNAL_STORAGE;
+    }
+
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Photo capture",
+                NotificationManager.IMPORTANCE_LOW);
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) manager.createNotificationChannel(channel);
+    }
+
+    private Notification buildNotification() {
+        PendingIntent openApp = PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_camera)
+                .setContentTitle("Watching for new photos")
+                .setContentText("Signatures are extracted and uploaded in the background")
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .build();
+    }
+}
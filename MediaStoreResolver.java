@@ -0,0 +1,128 @@
+package com.example.myapplication;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads image metadata from MediaStore a range at a time.
+ *
+ * Every query fetches the full projection (name, dimensions, size, orientation,
+ * date) for a run of IDs in one cursor pass and puts each row into the shared
+ * ImageInfoCache. The change scan's own query therefore also resolves the photos
+ * it finds, and the metadata stage goes back to MediaStore only on a cache miss,
+ * prefetching the IDs after the missing one while it is there.
+ */
+public class MediaStoreResolver {
+
+    private static final Uri COLLECTION = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+    private static final String[] PROJECTION = {
+            MediaStore.Images.Media._ID,
+            MediaStore.Images.Media.DISPLAY_NAME,
+            MediaStore.Images.Media.WIDTH,
+            MediaStore.Images.Media.HEIGHT,
+            MediaStore.Images.Media.SIZE,
+            MediaStore.Images.Media.ORIENTATION,
+            MediaStore.Images.Media.DATE_TAKEN,
+            MediaStore.Images.Media.DATE_ADDED
+    };
+
+    private final ContentResolver contentResolver;
+    private final ImageInfoCache cache;
+    private final int prefetch;
+    private final Metrics.Counter queries;
+    private final Metrics.Timer queryTimer;
+
+    /**
+     * @param prefetch how many IDs a cache miss fetches, starting at the missing one
+     */
+    public MediaStoreResolver(ContentResolver contentResolver, ImageInfoCache cache, int prefetch, Metrics metrics) {
+        this.contentResolver = contentResolver;
+        this.cache = cache;
+        this.prefetch = prefetch;
+        this.queries = metrics.counter("metadata.queries");
+        this.queryTimer = metrics.timer("metadata.query");
+    }
+
+    /** Up to limit images with an ID above afterId, in ID order; all of them are cached. */
+    public List<ImageInfo> queryAfter(long afterId, int limit) {
+        return query(MediaStore.Images.Media._ID + " > ?", new String[]{String.valueOf(afterId)}, limit);
+    }
+
+    /** Info for one image, from the cache or else from one prefetching query; null if it is gone. */
+    public ImageInfo resolve(long imageId) {
+        ImageInfo info = cache.get(imageId);
+        if (info != null) return info;
+
+        String selection = MediaStore.Images.Media._ID + " >= ? AND " + MediaStore.Images.Media._ID + " < ?";
+        String[] selectionArgs = {String.valueOf(imageId), String.valueOf(imageId + prefetch)};
+        for (ImageInfo fetched : query(selection, selectionArgs, prefetch)) {
+            if (fetched.id == imageId) return fetched;
+        }
+        return null;
+    }
+
+    /** The newest image ID, or 0 if there are no images. */
+    public long newestId() {
+        String[] projection = {MediaStore.Images.Media._ID};
+        long start = System.nanoTime();
+        queries.inc();
+        try (Cursor cursor = contentResolver.query(COLLECTION, projection, null, null,
+                MediaStore.Images.Media._ID + " DESC")) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID));
+            }
+            return 0;
+        } finally {
+            queryTimer.stop(start);
+        }
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    private List<ImageInfo> query(String selection, String[] selectionArgs, int limit) {
+        List<ImageInfo> infos = new ArrayList<>();
+        long start = System.nanoTime();
+        queries.inc();
+
+        try (Cursor cursor = contentResolver.query(COLLECTION, PROJECTION, selection, selectionArgs,
+                MediaStore.Images.Media._ID + " ASC")) {
+            if (cursor == null) return infos;
+
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+            int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
+            int widthColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.WIDTH);
+            int heightColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.HEIGHT);
+            int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
+            int orientationColumn = cursor.getColumnIndex(MediaStore.Images.Media.ORIENTATION);
+            int takenColumn = cursor.getColumnIndex(MediaStore.Images.Media.DATE_TAKEN);
+            int addedColumn = cursor.getColumnIndex(MediaStore.Images.Media.DATE_ADDED);
+
+            while (infos.size() < limit && cursor.moveToNext()) {
+                long id = cursor.getLong(idColumn);
+                int orientation = orientationColumn >= 0 && !cursor.isNull(orientationColumn)
+                        ? cursor.getInt(orientationColumn) : -1;
+                long dateTaken = takenColumn >= 0 && !cursor.isNull(takenColumn) ? cursor.getLong(takenColumn) : 0;
+                if (dateTaken <= 0 && addedColumn >= 0 && !cursor.isNull(addedColumn)) {
+                    dateTaken = cursor.getLong(addedColumn) * 1000; // DATE_ADDED is in seconds
+                }
+
+                ImageInfo info = new ImageInfo(id, cursor.getString(nameColumn),
+                        cursor.getInt(widthColumn), cursor.getInt(heightColumn), cursor.getLong(sizeColumn),
+                        ContentUris.withAppendedId(COLLECTION, id).toString(), orientation, dateTaken);
+                cache.put(info);
+                infos.add(info);
+            }
+        } finally {
+            queryTimer.stop(start);
+        }
+        return infos;
+    }
+}
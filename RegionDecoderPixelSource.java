@@ -0,0 +1,101 @@
+package com.example.myapplication;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+/**
+ * PixelSource that decodes only the requested region of the encoded image.
+ *
+ * Every region is decoded into one reused band Bitmap (inBitmap), so streaming a
+ * photo through BandScanner never holds more than one band of ARGB pixels. With a
+ * BitmapPool the band comes from the pool and goes back to it on recycle(), so
+ * consecutive photos share one band bitmap.
+ *
+ * With a sample size above 1 the source is the image decoded at 1/sampleSize
+ * (inSampleSize): its size is the stored size divided down, and each requested
+ * region is read from the matching sampleSize-times-larger stored region.
+ */
+public class RegionDecoderPixelSource implements PixelSource {
+
+    private final BitmapRegionDecoder decoder;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Rect region = new Rect();
+    private final BitmapPool bitmapPool; // null to allocate and recycle the band here
+    private final int sampleSize;
+    private Bitmap band;
+
+    public RegionDecoderPixelSource(BitmapRegionDecoder decoder) {
+        this(decoder, null);
+    }
+
+    public RegionDecoderPixelSource(BitmapRegionDecoder decoder, BitmapPool bitmapPool) {
+        this(decoder, bitmapPool, 1);
+    }
+
+    /** @param sampleSize inSampleSize to decode at, a power of two; 1 for full resolution */
+    public RegionDecoderPixelSource(BitmapRegionDecoder decoder, BitmapPool bitmapPool, int sampleSize) {
+        this.decoder = decoder;
+        this.bitmapPool = bitmapPool;
+        this.sampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inSampleSize = sampleSize;
+    }
+
+    @Override
+    public int getWidth() {
+        return decoder.getWidth() / sampleSize;
+    }
+
+    @Override
+    public int getHeight() {
+        return decoder.getHeight() / sampleSize;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    public synchronized void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+        // A larger inBitmap is fine: the region is drawn into its top-left corner
+        if (band != null && (band.getWidth() < w || band.getHeight() < h)) {
+            releaseBand();
+        }
+        if (band == null && bitmapPool != null) {
+            band = bitmapPool.acquireForDecode(w, h, Bitmap.Config.ARGB_8888);
+        }
+
+        // Whole multiples of sampleSize inside the image, so the decoded region is exactly w x h
+        region.set(x * sampleSize, y * sampleSize, (x + w) * sampleSize, (y + h) * sampleSize);
+        options.inBitmap = band;
+        Bitmap decoded = decoder.decodeRegion(region, options);
+        if (decoded == null) {
+            throw new IllegalStateException("Failed to decode region " + region.toShortString());
+        }
+        if (decoded != band && band != null) {
+            releaseBand();
+        }
+        band = decoded;
+        band.getPixels(dst, offset, stride, 0, 0, w, h);
+    }
+
+    private void releaseBand() {
+        if (bitmapPool != null) {
+            bitmapPool.release(band);
+        } else {
+            band.recycle();
+        }
+        band = null;
+    }
+
+    /** Frees the decoder; the band bitmap goes back to the pool, if there is one. */
+    public synchronized void recycle() {
+        if (band != null) {
+            releaseBand();
+        }
+        decoder.recycle();
+    }
+}
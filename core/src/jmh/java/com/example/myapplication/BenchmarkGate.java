@@ -0,0 +1,105 @@
+package com.example.myapplication;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH CSV results (./gradlew :core:jmh writes build/results/jmh/results.csv)
+ * and exits with status 1 if any benchmark lost more throughput than the tolerance,
+ * so a CI job on plain Linux can gate on it:
+ *
+ *   java com.example.myapplication.BenchmarkGate results.csv baseline.csv [tolerance, default 0.2]
+ *
+ * Benchmarks are keyed by name and parameters; ones missing from the baseline pass.
+ */
+public final class BenchmarkGate {
+
+    private BenchmarkGate() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkGate results.csv baseline.csv [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+        Map<String, Double> results = read(new File(args[0]));
+        Map<String, Double> baseline = read(new File(args[1]));
+
+        boolean ok = true;
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null || before <= 0) continue;
+
+            double ratio = entry.getValue() / before;
+            boolean regressed = ratio < 1 - tolerance;
+            System.out.println(String.format(Locale.US, "%-70s %.2fx baseline%s",
+                    entry.getKey(), ratio, regressed ? "  REGRESSION" : ""));
+            ok &= !regressed;
+        }
+        if (!ok) System.exit(1);
+    }
+
+    /** "Benchmark[param=value,...]" -> score, from JMH's CSV (all benchmarks here report throughput). */
+    static Map<String, Double> read(File file) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null) return scores;
+            List<String> header = split(line);
+            int scoreColumn = header.indexOf("Score");
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = split(line);
+                if (fields.size() != header.size()) continue;
+
+                StringBuilder key = new StringBuilder(fields.get(0));
+                String separator = "[";
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).startsWith("Param: ")) {
+                        key.append(separator).append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                        separator = ",";
+                    }
+                }
+                if (!separator.equals("[")) key.append(']');
+                scores.put(key.toString(), Double.parseDouble(fields.get(scoreColumn)));
+            }
+        }
+        return scores;
+    }
+
+    /** One CSV line; fields may be quoted, with "" for a quote. */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
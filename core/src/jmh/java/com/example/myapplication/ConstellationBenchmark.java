@@ -0,0 +1,60 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The band-scanned constellation against MainActivity's original per-pixel loop on
+ * synthetic 12 / 48 / 108 MP frames (4000x3000, 8000x6000, 12000x9000). The 108 MP
+ * frame alone is 432 MB of pixels; -PjmhQuick runs only the 12 MP one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConstellationBenchmark {
+
+    @Param({"12", "48", "108"})
+    public int megapixels;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private PixelSource source;
+    private ParallelConstellationExtractor engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 4:3 frames: 12 MP is 4000x3000
+        width = (int) Math.round(Math.sqrt(megapixels * 1e6 * 4 / 3));
+        height = width * 3 / 4;
+        pixels = SyntheticImages.syntheticFrame(width, height, 42);
+        source = new IntArrayPixelSource(pixels, width, height);
+        engine = new ParallelConstellationExtractor(1, ExtractionBenchmark.BAND_PIXELS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ConstellationExtractor constellation() {
+        return engine.extract(source);
+    }
+
+    /** MainActivity's original getPixel loop and String.format JSON. */
+    @Benchmark
+    public String constellationLegacy() {
+        return LegacyFormats.constellation(pixels, width, height);
+    }
+}
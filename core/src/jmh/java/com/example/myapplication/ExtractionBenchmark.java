@@ -0,0 +1,64 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The extract stage on generated frames: the whole band walk (constellation, strands,
+ * pyramid and preview) with fresh and with pooled buffers. ConstellationBenchmark
+ * times the constellation alone against the loop it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExtractionBenchmark {
+
+    static final int BAND_PIXELS = 256 * 1024;
+
+    @Param({"1600x1200", "4000x3000"})
+    public String frame;
+
+    private PixelSource source;
+    private ParallelConstellationExtractor engine;
+    private SignatureExtractor extractor;
+    private SignatureExtractor pooled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = frame.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        source = new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, 7), width, height);
+        engine = new ParallelConstellationExtractor(1, BAND_PIXELS);
+        extractor = new SignatureExtractor(engine, BAND_PIXELS, 1080, 1920);
+        // Pooled band and preview buffers, as the capture engine runs it
+        pooled = new SignatureExtractor(engine, BAND_PIXELS, 1080, 1920, new IntArrayPool("bench", 64L * 1024 * 1024));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public SignatureExtractor.Result full() {
+        return extractor.extract(source, 0, 0, ImageOrientation.NORMAL);
+    }
+
+    @Benchmark
+    public float pooled() {
+        SignatureExtractor.Result result = pooled.extract(source, 0, 0, ImageOrientation.NORMAL);
+        pooled.release(result);
+        return result.constellation.getStarX(0, 0);
+    }
+}
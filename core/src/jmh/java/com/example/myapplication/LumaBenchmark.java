@@ -0,0 +1,59 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The constellation's luminance kernel on a 12 MP frame: the max search alone, one
+ * cell row at a time as the extractor calls it, and a whole serial constellation,
+ * with the scalar kernel and with VectorLumaKernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LumaBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    private LumaKernel luma;
+    private int[] frame;
+    private PixelSource source;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        luma = LumaKernel.select(kernel);
+        frame = SyntheticImages.sceneFrame(WIDTH, HEIGHT, 7);
+        source = new IntArrayPixelSource(frame, WIDTH, HEIGHT);
+        run = WIDTH / ConstellationExtractor.DEFAULT_GRID_SIZE;
+    }
+
+    @Benchmark
+    public long maxLuma() {
+        long sum = 0;
+        for (int i = 0; i + run <= frame.length; i += run) {
+            sum += luma.maxLuma(frame, i, i + run);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ConstellationExtractor constellation() {
+        ConstellationExtractor extractor = new ConstellationExtractor(WIDTH, HEIGHT).setLumaKernel(luma);
+        extractor.scan(source, ExtractionBenchmark.BAND_PIXELS);
+        return extractor;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.myapplication;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Match scoring: the server's calculateMatchScore ported line for line (ServerPort)
+ * against DuplicateIndex for one photo, and against SignatureMatcher for a /verify
+ * search over a whole table. SignatureMatcherTest checks the two give the same scores.
+ *
+ * The table is one genuine row among in-cell random signatures, queried with a
+ * jittered, unrounded copy as script.js would send it. The 1M-row table is about
+ * 256 MB packed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MatchBenchmark {
+
+    private static final int INDEX_ENTRIES = 10000;
+    private static final int PORT_TABLE_ROWS = 20000; // the straight port is O(64²) per row
+    private static final int MATCH_TABLE_ROWS = 1000000;
+
+    private float[] qx;
+    private float[] qy;
+    private double[] sentX;
+    private double[] sentY;
+    private double[] storedX;
+    private double[] storedY;
+    private DuplicateIndex index;
+
+    private double[][] portX;
+    private double[][] portY;
+    private double[] queryX;
+    private double[] queryY;
+    private SignatureMatcher.Query query;
+    private SignatureMatcher.Signatures portTable;
+    private SignatureMatcher.Signatures table;
+    private SignatureMatcher serial;
+    private SignatureMatcher parallel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(3);
+        index = new DuplicateIndex(INDEX_ENTRIES);
+        float[] firstX = null;
+        float[] firstY = null;
+        for (int i = 0; i < INDEX_ENTRIES; i++) {
+            float[] x = ServerPort.randomStars(random);
+            float[] y = ServerPort.randomStars(random);
+            index.add(i, x, y);
+            if (i == 0) {
+                firstX = x;
+                firstY = y;
+            }
+        }
+        qx = ServerPort.randomStars(random);
+        qy = ServerPort.randomStars(random);
+        sentX = ServerPort.asParsedJson(qx);
+        sentY = ServerPort.asParsedJson(qy);
+        storedX = ServerPort.asParsedJson(firstX);
+        storedY = ServerPort.asParsedJson(firstY);
+
+        int[] rows = new int[DuplicateIndex.CELLS];
+        int[] cols = new int[DuplicateIndex.CELLS];
+        for (int cell = 0; cell < rows.length; cell++) {
+            rows[cell] = cell / SignatureStore.GRID_SIZE;
+            cols[cell] = cell % SignatureStore.GRID_SIZE;
+        }
+        int genuine = PORT_TABLE_ROWS / 2;
+        portTable = new SignatureMatcher.Signatures(PORT_TABLE_ROWS);
+        table = new SignatureMatcher.Signatures(MATCH_TABLE_ROWS);
+        portX = new double[PORT_TABLE_ROWS][];
+        portY = new double[PORT_TABLE_ROWS][];
+        queryX = new double[rows.length];
+        queryY = new double[rows.length];
+        float[] x = new float[rows.length];
+        float[] y = new float[rows.length];
+        random = new Random(5);
+        for (int i = 0; i < MATCH_TABLE_ROWS; i++) {
+            ServerPort.cellStars(random, x, y);
+            table.add(i, rows, cols, x, y);
+            if (i < PORT_TABLE_ROWS) {
+                portTable.add(i, rows, cols, x, y);
+                portX[i] = ServerPort.asParsedJson(x);
+                portY[i] = ServerPort.asParsedJson(y);
+            }
+            if (i == genuine) {
+                for (int cell = 0; cell < rows.length; cell++) {
+                    queryX[cell] = x[cell] + random.nextGaussian() * 0.005;
+                    queryY[cell] = y[cell] + random.nextGaussian() * 0.005;
+                }
+            }
+        }
+        query = new SignatureMatcher.Query(rows, cols, queryX, queryY);
+        serial = new SignatureMatcher(1);
+        parallel = new SignatureMatcher(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    public double serverPortSingle() {
+        return ServerPort.serverScore(sentX, sentY, storedX, storedY);
+    }
+
+    @Benchmark
+    public DuplicateIndex.Match indexNearest10k() {
+        return index.nearest(qx, qy);
+    }
+
+    /** The server's /verify loop over 20k rows. */
+    @Benchmark
+    public int serverPortVerify20k() {
+        int best = -1;
+        double highest = 0;
+        for (int i = 0; i < PORT_TABLE_ROWS; i++) {
+            double score = ServerPort.serverScore(queryX, queryY, portX[i], portY[i]);
+            if (score > highest) {
+                highest = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public SignatureMatcher.Match matcherVerify20k() {
+        return serial.best(query, portTable);
+    }
+
+    @Benchmark
+    public SignatureMatcher.Match matcherVerify1m() {
+        return serial.best(query, table);
+    }
+
+    @Benchmark
+    public SignatureMatcher.Match matcherVerify1mParallel() {
+        return parallel.best(query, table);
+    }
+
+    /** Only looking for a match (score above 75) prunes far earlier. */
+    @Benchmark
+    public SignatureMatcher.Match matcherMatchOnly1mParallel() {
+        return parallel.best(query, table, DuplicateIndex.MATCH_SCORE);
+    }
+}
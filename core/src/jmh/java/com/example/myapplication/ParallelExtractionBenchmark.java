@@ -0,0 +1,50 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * ParallelConstellationExtractor on a 48 MP frame, split over 1 to N threads. Scaling
+ * beyond the machine's cores says nothing, so :core:jmh passes 1, 2, 4 ... up to
+ * availableProcessors() (and that count itself) of the machine it runs on, or the
+ * list given as -PjmhThreads=1,3,6. Run from the jar directly, set them with -p threads=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelExtractionBenchmark {
+
+    @Param({"1"}) // overridden by the build, see above
+    public int threads;
+
+    private PixelSource source;
+    private ParallelConstellationExtractor engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int width = 8000;
+        int height = 6000;
+        source = new IntArrayPixelSource(SyntheticImages.syntheticFrame(width, height, 42), width, height);
+        engine = new ParallelConstellationExtractor(threads, ExtractionBenchmark.BAND_PIXELS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ConstellationExtractor constellation48mp() {
+        return engine.extract(source);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ConstellationPyramid's extraction cost against the full-resolution 8x8 extractor,
+ * and the cost of each level alone (level0 to level2: downsampling to and searching
+ * it, on a pyramid whose base plane is already filled). The streaming box filter into
+ * the base plane is what pyramid spends beyond the three levels. How well each level
+ * survives recompression and resizing is checked by ConstellationPyramidTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PyramidBenchmark {
+
+    @Param({"4000x3000", "8000x6000"})
+    public String frame;
+
+    private int width;
+    private int height;
+    private PixelSource source;
+    private ConstellationPyramid built;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = frame.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        source = new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, 1), width, height);
+        built = pyramid();
+    }
+
+    @Benchmark
+    public ConstellationExtractor fullResolution() {
+        ConstellationExtractor extractor = new ConstellationExtractor(width, height);
+        extractor.scan(source, ExtractionBenchmark.BAND_PIXELS);
+        return extractor;
+    }
+
+    @Benchmark
+    public ConstellationPyramid pyramid() {
+        ConstellationPyramid pyramid = new ConstellationPyramid(width, height);
+        BandScanner.scan(source, ExtractionBenchmark.BAND_PIXELS, pyramid);
+        return pyramid;
+    }
+
+    @Benchmark
+    public ConstellationPyramid level0() {
+        built.buildLevel(0);
+        return built;
+    }
+
+    @Benchmark
+    public ConstellationPyramid level1() {
+        built.buildLevel(1);
+        return built;
+    }
+
+    @Benchmark
+    public ConstellationPyramid level2() {
+        built.buildLevel(2);
+        return built;
+    }
+}
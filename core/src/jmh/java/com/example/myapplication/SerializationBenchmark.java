@@ -0,0 +1,93 @@
+package com.example.myapplication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * One photo's signature on its way to the server: the constellation and pyramid JSON,
+ * the whole upload payload, and its binary wire encoding, against the String.format
+ * code they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    private static final String AUTHOR = "bench";
+    private static final String DEVICE = "desktop";
+    private static final String INSTALL_ID = "4b1d6c52-8f0e-4c7a-9d3b-2e5f7a1c0b98";
+    private static final String TIMESTAMP = "2024-01-01 00:00:00";
+
+    private SignatureRecord record;
+    private ConstellationPyramid pyramid;
+    private String key;
+    private SignatureJsonWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int width = 1600;
+        int height = 1200;
+        ParallelConstellationExtractor engine = new ParallelConstellationExtractor(1, ExtractionBenchmark.BAND_PIXELS);
+        try {
+            SignatureExtractor.Result result = new SignatureExtractor(engine, ExtractionBenchmark.BAND_PIXELS, 1080, 1920)
+                    .extract(new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, 11), width, height),
+                            0, 0, ImageOrientation.NORMAL);
+            ImageInfo info = new ImageInfo(42, "IMG_0042.jpg", width, height, 2500000,
+                    "content://media/external/images/media/42");
+            record = SignatureRecord.of(info, 1700000000000L, result.strands.getTotalCount(), result.constellation);
+            pyramid = result.pyramid;
+        } finally {
+            engine.shutdown();
+        }
+        key = SignaturePayload.idempotencyKey(INSTALL_ID, 42);
+        writer = new SignatureJsonWriter(64 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println("Wire size per signature: JSON "
+                + SignaturePayload.toJson(42, AUTHOR, DEVICE, TIMESTAMP, key, record, pyramid).length()
+                + " bytes, binary "
+                + SignatureWireFormat.encode(42, AUTHOR, DEVICE, TIMESTAMP, key, record, pyramid).length + " bytes");
+    }
+
+    @Benchmark
+    public String constellationLegacy() {
+        return LegacyFormats.constellationJson(record);
+    }
+
+    @Benchmark
+    public int constellation() {
+        return record.writeJson(writer.reset()).length();
+    }
+
+    @Benchmark
+    public int pyramid() {
+        return pyramid.writeJson(writer.reset()).length();
+    }
+
+    @Benchmark
+    public String payloadLegacy() {
+        return LegacyFormats.payload(42, AUTHOR, DEVICE, TIMESTAMP, key, record, pyramid);
+    }
+
+    @Benchmark
+    public int payload() {
+        return SignaturePayload.write(writer.reset(), 42, AUTHOR, DEVICE, TIMESTAMP, key, record, pyramid).length();
+    }
+
+    @Benchmark
+    public byte[] payloadBinary() {
+        return SignatureWireFormat.encode(42, AUTHOR, DEVICE, TIMESTAMP, key, record, pyramid);
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.myapplication;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Headless bulk (re-)indexing of a directory of images, e.g. a copied camera roll or
+ * an existing archive, on a desktop/server JVM with the same SignatureExtractor the
+ * app runs (strands, constellation, pyramid).
+ *
+ *   java com.example.myapplication.ReindexTool DIR [--store signatures.db] [--upload payloads.ndjson]
+ *       [--checkpoint FILE] [--threads N] [--memory-mb 1024] [--author NAME] [--model NAME]
+ *
+ * - Scheduling: the sorted file list is split in halves recursively on a ForkJoinPool,
+ *   so idle workers steal the other halves and slow files don't hold up a fixed share.
+ * - Memory: decoding a w x h image reserves w * h * 4 bytes of the --memory-mb budget
+ *   first and waits until that fits, so the decoded images in flight stay bounded
+ *   whatever the thread count. The band buffers come from a shared IntArrayPool.
+ * - Output: --store appends SignatureRecords to a SignatureStore; --upload writes one
+ *   payload per line, each an element of /register/batch's "signatures" array.
+ * - Resume: every finished file is appended to the checkpoint (default DIR/.reindex.checkpoint),
+ *   after its output, and skipped by the next run. A file redone after a crash is harmless:
+ *   the store ignores known IDs and the server dedups by idempotency key. The key's
+ *   install ID is kept next to the checkpoint (.reindex.install_id), so it survives resumes.
+ *
+ * Image IDs are a 63-bit FNV-1a hash of the path relative to DIR, so they are stable
+ * across runs; they are not MediaStore IDs, so use a separate store for them.
+ *
+ * Progress (photos/s, RSS) is printed every PROGRESS_SECONDS, and a summary with the
+ * peak RSS (VmHWM from /proc/self/status on Linux) at the end.
+ *
+ * Decodes with javax.imageio (JPEG, PNG, BMP, GIF), so like VectorLumaKernel it is
+ * desktop-only and left out of the Android build.
+ */
+public class ReindexTool {
+
+    private static final String[] EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp", ".gif"};
+    private static final int BAND_PIXELS = 1024 * 1024;
+    private static final int PROGRESS_SECONDS = 5;
+
+    private final Path root;
+    private final List<Path> files;
+    private final SignatureStore store;          // null if not requested
+    private final Writer upload;                 // null if not requested
+    private final Writer checkpoint;
+    private final Set<Long> done;
+    private final String author;
+    private final String model;
+    private final String installId;
+    private final Semaphore memoryKb;
+    private final int memoryBudgetKb;
+    private final SignatureExtractor extractor;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger unsupported = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private ReindexTool(Path root, List<Path> files, SignatureStore store, Writer upload, Writer checkpoint,
+                        Set<Long> done, String author, String model, String installId, int memoryMb,
+                        IntArrayPool bufferPool, ParallelConstellationExtractor engine) {
+        this.root = root;
+        this.files = files;
+        this.store = store;
+        this.upload = upload;
+        this.checkpoint = checkpoint;
+        this.done = done;
+        this.author = author;
+        this.model = model;
+        this.installId = installId;
+        this.memoryBudgetKb = memoryMb * 1024;
+        this.memoryKb = new Semaphore(memoryBudgetKb);
+        this.extractor = new SignatureExtractor(engine, BAND_PIXELS, 0, 0, bufferPool);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = null;
+        File storeFile = null;
+        File uploadFile = null;
+        File checkpointFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int memoryMb = 1024;
+        String author = "agbuddy7";
+        String model = "reindex";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--store")) storeFile = new File(args[++i]);
+            else if (args[i].equals("--upload")) uploadFile = new File(args[++i]);
+            else if (args[i].equals("--checkpoint")) checkpointFile = new File(args[++i]);
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--memory-mb")) memoryMb = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--author")) author = args[++i];
+            else if (args[i].equals("--model")) model = args[++i];
+            else if (args[i].startsWith("--")) throw new IllegalArgumentException("Unknown argument " + args[i]);
+            else root = new File(args[i]).toPath().toAbsolutePath().normalize();
+        }
+        if (root == null || !Files.isDirectory(root)) {
+            System.err.println("Usage: ReindexTool DIR [--store signatures.db] [--upload payloads.ndjson]"
+                    + " [--checkpoint FILE] [--threads N] [--memory-mb 1024] [--author NAME] [--model NAME]");
+            System.exit(2);
+        }
+        if (storeFile == null && uploadFile == null) {
+            storeFile = root.resolve("signatures.db").toFile();
+        }
+        if (checkpointFile == null) {
+            checkpointFile = root.resolve(".reindex.checkpoint").toFile();
+        }
+
+        List<Path> files = listImages(root);
+        Set<Long> done = readCheckpoint(checkpointFile);
+        ImageIO.setUseCache(false);
+
+        SignatureStore store = null;
+        if (storeFile != null) {
+            store = new SignatureStore(storeFile);
+            store.open();
+        }
+        if (uploadFile != null) dropTornLine(uploadFile);
+        Writer upload = uploadFile != null ? appendWriter(uploadFile) : null;
+        Writer checkpoint = appendWriter(checkpointFile);
+        ParallelConstellationExtractor engine = new ParallelConstellationExtractor(1, BAND_PIXELS);
+        IntArrayPool bufferPool = new IntArrayPool("reindex", (long) threads * BAND_PIXELS * 4 * 2);
+
+        String installId = InstallId.load(new File(checkpointFile.getAbsoluteFile().getParentFile(),
+                ".reindex.install_id"));
+        ReindexTool tool = new ReindexTool(root, files, store, upload, checkpoint, done, author, model, installId,
+                memoryMb, bufferPool, engine);
+        System.out.println(String.format(Locale.US, "%d images under %s, %d already in the checkpoint, %d threads, %d MB",
+                files.size(), root, done.size(), threads, memoryMb));
+        try {
+            tool.run(threads);
+        } finally {
+            engine.shutdown();
+            tool.closeOutputs();
+        }
+        System.out.println(bufferPool.describe());
+    }
+
+    private void run(int threads) {
+        long start = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reindex-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> System.out.println(report(start, false)),
+                PROGRESS_SECONDS, PROGRESS_SECONDS, TimeUnit.SECONDS);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (!files.isEmpty()) pool.invoke(new Slice(0, files.size()));
+        } finally {
+            pool.shutdown();
+            progress.shutdownNow();
+        }
+        System.out.println(report(start, true));
+    }
+
+    /** Files [from, to) of the list; splits until one file is left, so idle workers steal halves. */
+    private final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Slice(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                process(files.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(from, mid), new Slice(mid, to));
+        }
+    }
+
+    private void process(Path file) {
+        String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+        long imageId = imageId(relative);
+        if (done.contains(imageId)) {
+            skipped.incrementAndGet();
+            return;
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                unsupported.incrementAndGet();
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // Decoded images in flight stay within the memory budget
+                int reservedKb = (int) Math.min(memoryBudgetKb, ((long) width * height * 4 + 1023) / 1024);
+                memoryKb.acquire(reservedKb);
+                try {
+                    BufferedImage image = reader.read(0);
+                    ImageOrientation orientation = ImageOrientation.fromExif(readExifOrientation(file));
+                    SignatureExtractor.Result result = extractor.extract(new BufferedImagePixelSource(image),
+                            0, 0, orientation);
+                    write(file, relative, imageId, width, height, result);
+                } finally {
+                    memoryKb.release(reservedKb);
+                }
+            } finally {
+                reader.dispose();
+            }
+            processed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Failed: " + relative + ": " + e);
+        }
+    }
+
+    private void write(Path file, String relative, long imageId, int width, int height,
+                       SignatureExtractor.Result result) throws IOException {
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        ImageInfo info = new ImageInfo(imageId, file.getFileName().toString(), width, height, Files.size(file),
+                file.toUri().toString(), -1, modified);
+        int strandPixels = result.strands != null ? result.strands.getTotalCount() : 0;
+        SignatureRecord record = SignatureRecord.of(info, modified, strandPixels, result.constellation);
+
+        String payload = null;
+        if (upload != null) {
+            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(modified));
+            // One line per payload; the writer's newlines are all between tokens (strings escape theirs)
+            payload = SignaturePayload.toJson(imageId, author, model, timestamp,
+                    SignaturePayload.idempotencyKey(installId, imageId), record, result.pyramid).replace("\n", "");
+        }
+
+        // Outputs first, then the checkpoint: a file is only skipped once it is written
+        if (store != null) store.append(record);
+        synchronized (this) {
+            if (upload != null) {
+                upload.write(payload);
+                upload.write('\n');
+            }
+            checkpoint.write(imageId + "\t" + relative + "\n");
+            // Two small writes per photo, next to a full decode; a kill loses at most the photos in flight
+            if (upload != null) upload.flush();
+            checkpoint.flush();
+        }
+    }
+
+    private synchronized void closeOutputs() throws IOException {
+        if (upload != null) upload.close();
+        checkpoint.close();
+        if (store != null) store.close();
+    }
+
+    private String report(long start, boolean summary) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int photos = processed.get();
+        if (!summary) {
+            return String.format(Locale.US, "%d/%d photos, %.1f photos/s, RSS %d MB",
+                    photos + skipped.get() + unsupported.get() + failed.get(), files.size(),
+                    photos / seconds, readStatusKb("VmRSS:") / 1024);
+        }
+        return String.format(Locale.US,
+                "Done: %d photos in %.1fs (%.2f photos/s), %d skipped (checkpoint), %d unsupported, %d failed, peak RSS %d MB",
+                photos, seconds, photos / seconds, skipped.get(), unsupported.get(), failed.get(),
+                readStatusKb("VmHWM:") / 1024);
+    }
+
+    // ==========================================
+    // HELPERS
+    // ==========================================
+
+    /** PixelSource over a decoded desktop image. */
+    private static final class BufferedImagePixelSource implements PixelSource {
+        private final BufferedImage image;
+
+        BufferedImagePixelSource(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        @Override
+        public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+            image.getRGB(x, y, w, h, dst, offset, stride);
+        }
+    }
+
+    private static List<Path> listImages(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> isImage(path.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    /** Stable positive 63-bit ID for a relative path (FNV-1a over its UTF-8 bytes). */
+    static long imageId(String relativePath) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : relativePath.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
+    private static Set<Long> readCheckpoint(File file) throws IOException {
+        Set<Long> done = new HashSet<>();
+        if (!file.exists()) return done;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab <= 0) continue; // torn last line after a crash
+            try {
+                done.add(Long.parseLong(line.substring(0, tab)));
+            } catch (NumberFormatException e) {
+                // Torn line
+            }
+        }
+        return done;
+    }
+
+    private static Writer appendWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    /** Cuts a killed run's half-written last line, so appending starts on a line of its own. */
+    private static void dropTornLine(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') break;
+                end--;
+            }
+            raf.setLength(end);
+        }
+    }
+
+    /** A "Vm...:" line of /proc/self/status in kB, or -1 where there is none. */
+    private static long readStatusKb(String key) {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith(key)) {
+                    return Long.parseLong(line.substring(key.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not Linux
+        }
+        return -1;
+    }
+
+    /**
+     * EXIF orientation (1-8) of a JPEG, read from the TIFF header in its APP1 segment;
+     * 1 for anything else. ImageIO leaves the pixels as stored, like the app's decoder.
+     */
+    static int readExifOrientation(Path file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile()))) {
+            if (in.readUnsignedShort() != 0xFFD8) return 1;
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) return 1;
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) return 1;
+                if (marker != 0xFFE1) {
+                    skipFully(in, length);
+                    continue;
+                }
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                int orientation = orientationFromApp1(segment);
+                if (orientation > 0) return orientation;
+            }
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    private static int orientationFromApp1(byte[] s) {
+        if (s.length < 14 || s[0] != 'E' || s[1] != 'x' || s[2] != 'i' || s[3] != 'f' || s[4] != 0 || s[5] != 0) {
+            return -1;
+        }
+        int tiff = 6;
+        boolean little = s[tiff] == 'I' && s[tiff + 1] == 'I';
+        int ifd = tiff + readInt(s, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > s.length) return -1;
+        int entries = readShort(s, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > s.length) return -1;
+            if (readShort(s, entry, little) == 0x0112) {
+                int value = readShort(s, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int readShort(byte[] s, int at, boolean little) {
+        int a = s[at] & 0xFF;
+        int b = s[at + 1] & 0xFF;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int readInt(byte[] s, int at, boolean little) {
+        int hi = readShort(s, little ? at + 2 : at, little);
+        int lo = readShort(s, little ? at : at + 2, little);
+        return (hi << 16) | lo;
+    }
+
+    private static void skipFully(InputStream in, int n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new IOException("Truncated JPEG");
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
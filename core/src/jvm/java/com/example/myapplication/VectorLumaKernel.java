@@ -0,0 +1,49 @@
+package com.example.myapplication;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * LumaKernel on jdk.incubator.vector, for desktop/server JVMs: unpacks R, G and B
+ * lane-wise, forms 299R + 587G + 114B in int lanes (at most 255000, no overflow) and
+ * keeps a running lane-wise max, reduced once per run. Integer math throughout, so it
+ * is bit-exact with ConstellationExtractor.fixedLuma.
+ *
+ * Lives in core's jvm source set, compiled for Java 17 with --add-modules
+ * jdk.incubator.vector and packaged in its own jar, so the Android build never sees
+ * it. Main code only loads it reflectively through LumaKernel.vector().
+ */
+public final class VectorLumaKernel extends LumaKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public VectorLumaKernel() {
+        super("vector");
+    }
+
+    @Override
+    public int maxLuma(int[] pixels, int from, int to) {
+        int i = from;
+        int best = -1;
+        int upper = from + SPECIES.loopBound(to - from);
+
+        if (upper > from) {
+            IntVector max = IntVector.broadcast(SPECIES, -1);
+            for (; i < upper; i += SPECIES.length()) {
+                IntVector argb = IntVector.fromArray(SPECIES, pixels, i);
+                IntVector r = argb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+                IntVector g = argb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+                IntVector b = argb.and(0xFF);
+                max = max.max(r.mul(299).add(g.mul(587)).add(b.mul(114)));
+            }
+            best = max.reduceLanes(VectorOperators.MAX);
+        }
+
+        for (; i < to; i++) {
+            int luma = ConstellationExtractor.fixedLuma(pixels[i]);
+            if (luma > best) best = luma;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.myapplication;
+
+/**
+ * Streams a PixelSource top to bottom in full-width bands, handing every band to
+ * each consumer in turn. Only one band is held in memory at a time, so peak usage
+ * is bounded by bandPixels instead of by the image size.
+ */
+public final class BandScanner {
+
+    private BandScanner() {
+    }
+
+    /** Rows per band for an image of the given width, at least 1. */
+    public static int bandRows(int width, int height, int bandPixels) {
+        return Math.max(1, Math.min(height, bandPixels / width));
+    }
+
+    public static void scan(PixelSource source, int bandPixels, RowConsumer... consumers) {
+        scan(source, bandPixels, null, consumers);
+    }
+
+    /**
+     * Same as scan, also adding the time spent per stage to stageNanos (if not null):
+     * stageNanos[0] is pixel decoding, stageNanos[i + 1] is consumers[i].
+     */
+    public static void scan(PixelSource source, int bandPixels, long[] stageNanos, RowConsumer... consumers) {
+        scan(source, bandPixels, stageNanos, null, consumers);
+    }
+
+    /** Same as scan, taking the band buffer from bufferPool (if not null) and returning it afterwards. */
+    public static void scan(PixelSource source, int bandPixels, long[] stageNanos, IntArrayPool bufferPool,
+                            RowConsumer... consumers) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int bandRows = bandRows(width, height, bandPixels);
+        int[] band = bufferPool != null ? bufferPool.acquire(width * bandRows) : new int[width * bandRows];
+        try {
+            scanBands(source, width, height, bandRows, band, stageNanos, consumers);
+        } finally {
+            if (bufferPool != null) bufferPool.release(band);
+        }
+    }
+
+    private static void scanBands(PixelSource source, int width, int height, int bandRows, int[] band,
+                                  long[] stageNanos, RowConsumer[] consumers) {
+        for (int y = 0; y < height; y += bandRows) {
+            int rows = Math.min(bandRows, height - y);
+            long t = System.nanoTime();
+            source.getPixels(band, 0, width, 0, y, width, rows);
+
+            for (int i = 0; i < consumers.length; i++) {
+                if (stageNanos != null) {
+                    long now = System.nanoTime();
+                    stageNanos[i] += now - t;
+                    t = now;
+                }
+                consumers[i].acceptRows(y, rows, band, 0, width);
+            }
+            if (stageNanos != null) {
+                stageNanos[consumers.length] += System.nanoTime() - t;
+            }
+        }
+    }
+}
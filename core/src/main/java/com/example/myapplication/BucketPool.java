@@ -0,0 +1,205 @@
+package com.example.myapplication;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bucketed pool of reusable buffers, bounded by a byte budget.
+ *
+ * Idle items are bucketed by floor(log2(bytes)). take() looks in the request's own
+ * bucket for an item that is large enough, then in the next bucket up, so a hit is
+ * never more than 4x the requested size. Within a bucket the most recently given
+ * item wins (it is most likely still in cache). When the idle items exceed maxBytes,
+ * the least recently given ones are evicted and handed to Adapter.discard().
+ *
+ * Hits, misses and evictions are counted; recordTo() also feeds them into Metrics
+ * counters pool.NAME.hits / misses / evictions.
+ */
+public class BucketPool<T> {
+
+    public interface Adapter<T> {
+        /** Bytes held by the item; must not change while it is in the pool. */
+        long sizeOf(T item);
+
+        /** Called for items that are evicted or never fit in the budget. */
+        void discard(T item);
+    }
+
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final long maxBytes;
+    private final Adapter<T> adapter;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<T>[] buckets = (ArrayDeque<T>[]) new ArrayDeque<?>[BUCKETS];
+    private final ArrayDeque<T> idle = new ArrayDeque<>(); // least recently given first
+    private long idleBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile Metrics.Counter hitCounter;
+    private volatile Metrics.Counter missCounter;
+    private volatile Metrics.Counter evictionCounter;
+
+    public BucketPool(String name, long maxBytes, Adapter<T> adapter) {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.adapter = adapter;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /** Counts hits, misses and evictions as pool.NAME.hits, pool.NAME.misses and pool.NAME.evictions. */
+    public BucketPool<T> recordTo(Metrics metrics) {
+        this.hitCounter = metrics.counter("pool." + name + ".hits");
+        this.missCounter = metrics.counter("pool." + name + ".misses");
+        this.evictionCounter = metrics.counter("pool." + name + ".evictions");
+        return this;
+    }
+
+    static int bucketOf(long bytes) {
+        return 63 - Long.numberOfLeadingZeros(Math.max(1, bytes));
+    }
+
+    /**
+     * Removes and returns an idle item of at least requiredBytes (and under 4x that),
+     * or null on a miss.
+     */
+    public T take(long requiredBytes) {
+        T item = null;
+        synchronized (this) {
+            int bucket = bucketOf(requiredBytes);
+            for (int b = bucket; b <= bucket + 1 && b < BUCKETS && item == null; b++) {
+                Iterator<T> newestFirst = buckets[b].descendingIterator();
+                while (newestFirst.hasNext()) {
+                    T candidate = newestFirst.next();
+                    if (adapter.sizeOf(candidate) >= requiredBytes) {
+                        newestFirst.remove();
+                        removeIdentity(idle, candidate);
+                        idleBytes -= adapter.sizeOf(candidate);
+                        item = candidate;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (item != null) {
+            hits.incrementAndGet();
+            Metrics.Counter counter = hitCounter;
+            if (counter != null) counter.inc();
+        } else {
+            misses.incrementAndGet();
+            Metrics.Counter counter = missCounter;
+            if (counter != null) counter.inc();
+        }
+        return item;
+    }
+
+    /** Returns an item to the pool; the caller must not touch it afterwards. */
+    public void give(T item) {
+        if (item == null) return;
+        long size = adapter.sizeOf(item);
+        if (size > maxBytes) {
+            evicted(item);
+            return;
+        }
+
+        ArrayDeque<T> evict = null;
+        synchronized (this) {
+            buckets[bucketOf(size)].addLast(item);
+            idle.addLast(item);
+            idleBytes += size;
+
+            while (idleBytes > maxBytes) {
+                T oldest = idle.pollFirst();
+                removeIdentity(buckets[bucketOf(adapter.sizeOf(oldest))], oldest);
+                idleBytes -= adapter.sizeOf(oldest);
+                if (evict == null) evict = new ArrayDeque<>(2);
+                evict.add(oldest);
+            }
+        }
+
+        // Discarding (e.g. Bitmap.recycle) happens outside the lock
+        if (evict != null) {
+            for (T oldest : evict) {
+                evicted(oldest);
+            }
+        }
+    }
+
+    private void evicted(T item) {
+        evictions.incrementAndGet();
+        Metrics.Counter counter = evictionCounter;
+        if (counter != null) counter.inc();
+        adapter.discard(item);
+    }
+
+    /** Pooled objects (arrays, bitmaps) compare by identity. */
+    private static <T> void removeIdentity(ArrayDeque<T> deque, T item) {
+        Iterator<T> it = deque.iterator();
+        while (it.hasNext()) {
+            if (it.next() == item) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    /** Discards every idle item. */
+    public void clear() {
+        ArrayDeque<T> all;
+        synchronized (this) {
+            all = new ArrayDeque<>(idle);
+            idle.clear();
+            for (ArrayDeque<T> bucket : buckets) {
+                bucket.clear();
+            }
+            idleBytes = 0;
+        }
+        for (T item : all) {
+            adapter.discard(item);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Fraction of take() calls served from the pool. */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public String describe() {
+        return String.format(Locale.US, "%s idle=%d (%.1f/%.1f MB) hit=%d miss=%d (%.0f%%) evict=%d",
+                name, getIdleCount(), getIdleBytes() / (1024.0 * 1024.0), maxBytes / (1024.0 * 1024.0),
+                hits.get(), misses.get(), getHitRate() * 100, evictions.get());
+    }
+}
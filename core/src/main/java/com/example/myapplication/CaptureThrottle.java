@@ -0,0 +1,61 @@
+package com.example.myapplication;
+
+/**
+ * Decides how long catch-up processing should pause before its next batch, given
+ * the device's battery and thermal state.
+ *
+ * Live captures (the first batch after a change) only wait when the device is hot;
+ * backlog batches also back off on low battery and in power-save mode. Nothing is
+ * dropped: a pause only delays work, and the high-water mark keeps it safe across
+ * restarts.
+ */
+public class CaptureThrottle {
+
+    /** PowerManager.THERMAL_STATUS_* values, copied so this class stays Android-free. */
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+
+    public static final int LOW_BATTERY_PERCENT = 15;
+    public static final long MODERATE_THERMAL_PAUSE_MS = 5 * 1000;
+    public static final long SEVERE_THERMAL_PAUSE_MS = 60 * 1000;
+    public static final long LOW_BATTERY_PAUSE_MS = 30 * 1000;
+    public static final long POWER_SAVE_PAUSE_MS = 3 * 1000;
+
+    /** Snapshot of the device state; batteryPercent is -1 if unknown. */
+    public static final class Conditions {
+        public final int batteryPercent;
+        public final boolean charging;
+        public final boolean powerSave;
+        public final int thermalStatus;
+
+        public Conditions(int batteryPercent, boolean charging, boolean powerSave, int thermalStatus) {
+            this.batteryPercent = batteryPercent;
+            this.charging = charging;
+            this.powerSave = powerSave;
+            this.thermalStatus = thermalStatus;
+        }
+
+        @Override
+        public String toString() {
+            return "battery=" + batteryPercent + "%" + (charging ? " charging" : "") + (powerSave ? " powerSave" : "")
+                    + " thermal=" + thermalStatus;
+        }
+    }
+
+    /**
+     * @param backlog true for batches after the first one of a catch-up run
+     * @return ms to wait before processing the next batch; 0 to go ahead
+     */
+    public long pauseBeforeBatch(Conditions conditions, boolean backlog) {
+        if (conditions.thermalStatus >= THERMAL_SEVERE) return SEVERE_THERMAL_PAUSE_MS;
+        if (!backlog) return 0;
+
+        if (conditions.thermalStatus >= THERMAL_MODERATE) return MODERATE_THERMAL_PAUSE_MS;
+        if (!conditions.charging && conditions.batteryPercent >= 0
+                && conditions.batteryPercent < LOW_BATTERY_PERCENT) return LOW_BATTERY_PAUSE_MS;
+        if (conditions.powerSave && !conditions.charging) return POWER_SAVE_PAUSE_MS;
+        return 0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.myapplication;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Debounces bursts of change notifications into single runs of a task on one
+ * worker thread.
+ *
+ * The first signal schedules a run debounceMs later; signals arriving before it
+ * starts are folded into it. A signal that arrives while the task is running
+ * schedules exactly one follow-up run, so no change is missed and latency stays
+ * bounded even under a continuous stream of events.
+ */
+public class ChangeCoalescer {
+
+    public interface Task {
+        /** Handles all changes seen so far; returns how many items it enqueued. */
+        int run() throws Exception;
+    }
+
+    public interface ErrorHandler {
+        void onError(Exception e);
+    }
+
+    private final long debounceMs;
+    private final Task task;
+    private final ErrorHandler errorHandler;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+    private boolean scheduled;
+    private boolean running;
+    private boolean dirty;
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong itemsEnqueued = new AtomicLong();
+
+    public ChangeCoalescer(long debounceMs, Task task, ErrorHandler errorHandler) {
+        this.debounceMs = debounceMs;
+        this.task = task;
+        this.errorHandler = errorHandler;
+    }
+
+    /** Called for every change notification; cheap and safe from any thread. */
+    public synchronized void signal() {
+        eventsReceived.incrementAndGet();
+
+        if (scheduled) {
+            eventsCoalesced.incrementAndGet();
+        } else if (running) {
+            if (dirty) eventsCoalesced.incrementAndGet();
+            dirty = true;
+        } else {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        scheduled = true;
+        worker.schedule(this::runTask, debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runTask() {
+        synchronized (this) {
+            scheduled = false;
+            running = true;
+        }
+
+        try {
+            itemsEnqueued.addAndGet(task.run());
+            runs.incrementAndGet();
+        } catch (Exception e) {
+            errorHandler.onError(e);
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (dirty && !worker.isShutdown()) {
+                    dirty = false;
+                    schedule();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public long getEventsCoalesced() {
+        return eventsCoalesced.get();
+    }
+
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getItemsEnqueued() {
+        return itemsEnqueued.get();
+    }
+}
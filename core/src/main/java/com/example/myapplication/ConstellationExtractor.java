@@ -0,0 +1,390 @@
+package com.example.myapplication;
+
+import java.util.Arrays;
+
+/**
+ * Android-independent "Celestial Signature" extractor.
+ *
+ * Finds the brightest pixel ("star") of every cell of a gridSize x gridSize grid,
+ * fed with whole rows of ARGB pixels (as returned by Bitmap.getPixels) instead of
+ * one Bitmap.getPixel call per pixel.
+ *
+ * Output is identical to the original per-pixel float loop:
+ *  - Luminance is tracked as integer fixed point (299R + 587G + 114B). For distinct
+ *    fixed-point values the ordering is the same as the float formula for all 2^24
+ *    colours, so only equal fixed-point values fall back to the float comparison.
+ *  - Tie rule: on equal brightness the first pixel in (y, x) order within the cell
+ *    keeps the star. Every scan order used here (serial, banded, parallel tiles)
+ *    visits a cell's pixels in that order, so all modes produce the same output.
+ *
+ * A vectorized LumaKernel (when LumaKernel.best() finds one) first takes the max
+ * luminance of each cell row and skips the row if it cannot beat the current star;
+ * rows that can are still decided by the scalar loop, so the output is unchanged.
+ *
+ * With an EXIF orientation, pixels are still fed as stored but cells, star positions
+ * and the tie rule follow the displayed frame, so the output matches extracting from
+ * an upright copy without ever making one. Internally cells are kept in stored
+ * order (bounds increase with the stored column and row index); the getters and
+ * toJson translate to display rows and columns.
+ */
+public class ConstellationExtractor implements RowConsumer {
+
+    public static final int DEFAULT_GRID_SIZE = 8;
+
+    private final int width;
+    private final int height;
+    private final int gridSize;
+    private final ImageOrientation orientation;
+    private final int displayWidth;
+    private final int displayHeight;
+
+    // Stored-frame cell bounds [start, end): the original cellW/cellH math on the
+    // display frame, mapped back to stored coordinates
+    private final int[] cellX0;
+    private final int[] cellX1;
+    private final int[] cellY0;
+    private final int[] cellY1;
+
+    // Per-cell star, indexed row * gridSize + col
+    private final int[] maxLuma;
+    private final int[] maxRgb;
+    private final int[] maxX;
+    private final int[] maxY;
+
+    private LumaKernel lumaKernel = LumaKernel.best();
+
+    public ConstellationExtractor(int width, int height) {
+        this(width, height, DEFAULT_GRID_SIZE);
+    }
+
+    public ConstellationExtractor(int width, int height, int gridSize) {
+        this(width, height, gridSize, ImageOrientation.NORMAL);
+    }
+
+    /**
+     * @param width       stored width of the pixels that will be fed
+     * @param height      stored height of the pixels that will be fed
+     * @param orientation how the stored frame is displayed
+     */
+    public ConstellationExtractor(int width, int height, int gridSize, ImageOrientation orientation) {
+        if (width <= 0 || height <= 0 || gridSize <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height + ", grid " + gridSize);
+        }
+        this.width = width;
+        this.height = height;
+        this.gridSize = gridSize;
+        this.orientation = orientation;
+        this.displayWidth = orientation.displayWidth(width, height);
+        this.displayHeight = orientation.displayHeight(width, height);
+
+        float cellW = displayWidth / (float) gridSize;
+        float cellH = displayHeight / (float) gridSize;
+
+        int[] colX0 = new int[gridSize];
+        int[] colX1 = new int[gridSize];
+        int[] rowY0 = new int[gridSize];
+        int[] rowY1 = new int[gridSize];
+
+        for (int i = 0; i < gridSize; i++) {
+            int startX = (int) (i * cellW);
+            int startY = (int) (i * cellH);
+            int w = (int) cellW;
+            int h = (int) cellH;
+
+            // Safety check for edge pixels
+            if (startX + w > displayWidth) w = displayWidth - startX;
+            if (startY + h > displayHeight) h = displayHeight - startY;
+
+            colX0[i] = startX;
+            colX1[i] = startX + w;
+            rowY0[i] = startY;
+            rowY1[i] = startY + h;
+        }
+
+        // Stored x runs along display y when transposed; a mirrored axis reverses the order
+        boolean transpose = orientation.isTransposed();
+        boolean reverseX = orientation.reversesStoredX();
+        boolean reverseY = orientation.reversesStoredY();
+        cellX0 = new int[gridSize];
+        cellX1 = new int[gridSize];
+        cellY0 = new int[gridSize];
+        cellY1 = new int[gridSize];
+        storedBounds(transpose ? rowY0 : colX0, transpose ? rowY1 : colX1, width, reverseX, cellX0, cellX1);
+        storedBounds(transpose ? colX0 : rowY0, transpose ? colX1 : rowY1, height, reverseY, cellY0, cellY1);
+
+        int cells = gridSize * gridSize;
+        maxLuma = new int[cells];
+        maxRgb = new int[cells];
+        maxX = new int[cells];
+        maxY = new int[cells];
+        reset();
+    }
+
+    private static void storedBounds(int[] start, int[] end, int size, boolean reverse, int[] outStart, int[] outEnd) {
+        int n = start.length;
+        for (int i = 0; i < n; i++) {
+            int j = reverse ? n - 1 - i : i;
+            outStart[i] = reverse ? size - end[j] : start[j];
+            outEnd[i] = reverse ? size - start[j] : end[j];
+        }
+    }
+
+    /** Stored-order cell index of display cell (row, col). */
+    private int cellIndex(int row, int col) {
+        boolean transpose = orientation.isTransposed();
+        int alongX = transpose ? row : col;
+        int alongY = transpose ? col : row;
+        int storedCol = orientation.reversesStoredX() ? gridSize - 1 - alongX : alongX;
+        int storedRow = orientation.reversesStoredY() ? gridSize - 1 - alongY : alongY;
+        return storedRow * gridSize + storedCol;
+    }
+
+    /** Overrides the runtime-selected kernel (e.g. to benchmark the scalar path); set before feeding rows. */
+    public ConstellationExtractor setLumaKernel(LumaKernel kernel) {
+        this.lumaKernel = kernel;
+        return this;
+    }
+
+    /** Clears all stars so the extractor can be reused for another image of the same size. */
+    public void reset() {
+        Arrays.fill(maxLuma, -1);
+        Arrays.fill(maxRgb, 0);
+
+        // An empty cell reports its top-left display corner, like the original loop
+        float cellW = displayWidth / (float) gridSize;
+        float cellH = displayHeight / (float) gridSize;
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int cornerX = (int) (col * cellW);
+                int cornerY = (int) (row * cellH);
+                int cell = cellIndex(row, col);
+                maxX[cell] = orientation.toStoredX(cornerX, cornerY, width, height);
+                maxY[cell] = orientation.toStoredY(cornerX, cornerY, width, height);
+            }
+        }
+    }
+
+    /** Stored width, i.e. of the rows being fed. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Stored height, i.e. the number of rows being fed. */
+    public int getHeight() {
+        return height;
+    }
+
+    public int getDisplayWidth() {
+        return displayWidth;
+    }
+
+    public int getDisplayHeight() {
+        return displayHeight;
+    }
+
+    public ImageOrientation getOrientation() {
+        return orientation;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Feeds consecutive image rows. Row y0 + i starts at pixels[offset + i * stride]
+     * and holds the full image width. Rows must be fed top to bottom.
+     */
+    @Override
+    public void acceptRows(int y0, int rowCount, int[] pixels, int offset, int stride) {
+        for (int i = 0; i < rowCount; i++) {
+            acceptRow(y0 + i, pixels, offset + i * stride);
+        }
+    }
+
+    /** Feeds one full-width image row starting at pixels[offset]. */
+    public void acceptRow(int y, int[] pixels, int offset) {
+        for (int row = 0; row < gridSize; row++) {
+            if (y < cellY0[row] || y >= cellY1[row]) continue;
+            acceptCellRow(row, y, pixels, offset, 0, gridSize);
+        }
+    }
+
+    /**
+     * Feeds image row y to the cells (row, colFrom..colTo-1) only. Pixel x is read
+     * from pixels[offset + x], so a buffer starting at image column x0 is passed
+     * with offset - x0.
+     *
+     * Callers that split the grid into tiles own disjoint cells, so they may feed
+     * the same extractor from different threads.
+     */
+    void acceptCellRow(int row, int y, int[] pixels, int offset, int colFrom, int colTo) {
+        int cellBase = row * gridSize;
+        boolean upright = orientation.isIdentity();
+        LumaKernel kernel = lumaKernel.isVectorized() ? lumaKernel : null;
+        for (int col = colFrom; col < colTo; col++) {
+            int cell = cellBase + col;
+            int x0 = cellX0[col];
+            int x1 = cellX1[col];
+            // Nothing below the current star can change it, not even through the tie rule
+            if (kernel != null && kernel.maxLuma(pixels, offset + x0, offset + x1) < maxLuma[cell]) continue;
+
+            if (upright) {
+                scanCellRow(cell, y, pixels, offset, x0, x1);
+            } else {
+                scanCellRowOriented(cell, y, pixels, offset, x0, x1);
+            }
+        }
+    }
+
+    /** Serial scan of a whole image, reading bands of about bandPixels pixels. */
+    public void scan(PixelSource source, int bandPixels) {
+        BandScanner.scan(source, bandPixels, this);
+    }
+
+    int cellX0(int col) {
+        return cellX0[col];
+    }
+
+    int cellX1(int col) {
+        return cellX1[col];
+    }
+
+    int cellY0(int row) {
+        return cellY0[row];
+    }
+
+    int cellY1(int row) {
+        return cellY1[row];
+    }
+
+    private void scanCellRow(int cell, int y, int[] pixels, int offset, int x0, int x1) {
+        int best = maxLuma[cell];
+        int bestRgb = maxRgb[cell];
+        int bestX = -1;
+
+        for (int x = x0; x < x1; x++) {
+            int pixel = pixels[offset + x];
+            int luma = fixedLuma(pixel);
+
+            if (luma < best) continue;
+            if (luma == best) {
+                // Same fixed-point value: only the float formula can tell them apart
+                int rgb = pixel & 0xFFFFFF;
+                if (rgb == bestRgb || luminance(rgb) <= luminance(bestRgb)) continue;
+            }
+            best = luma;
+            bestRgb = pixel & 0xFFFFFF;
+            bestX = x;
+        }
+
+        if (bestX >= 0) {
+            maxLuma[cell] = best;
+            maxRgb[cell] = bestRgb;
+            maxX[cell] = bestX;
+            maxY[cell] = y;
+        }
+    }
+
+    /**
+     * scanCellRow for a rotated or mirrored frame: stored order is no longer display
+     * order, so an exact tie goes to whichever pixel comes first on the display.
+     */
+    private void scanCellRowOriented(int cell, int y, int[] pixels, int offset, int x0, int x1) {
+        int best = maxLuma[cell];
+        int bestRgb = maxRgb[cell];
+        int bestX = maxX[cell];
+        int bestY = maxY[cell];
+
+        for (int x = x0; x < x1; x++) {
+            int pixel = pixels[offset + x];
+            int luma = fixedLuma(pixel);
+
+            if (luma < best) continue;
+            if (luma == best) {
+                int rgb = pixel & 0xFFFFFF;
+                float current = luminance(bestRgb);
+                float candidate = luminance(rgb);
+                if (candidate < current) continue;
+                if ((rgb == bestRgb || candidate == current) && !displaysBefore(x, y, bestX, bestY)) continue;
+            }
+            best = luma;
+            bestRgb = pixel & 0xFFFFFF;
+            bestX = x;
+            bestY = y;
+        }
+
+        maxLuma[cell] = best;
+        maxRgb[cell] = bestRgb;
+        maxX[cell] = bestX;
+        maxY[cell] = bestY;
+    }
+
+    /** True if stored pixel (x, y) comes before (otherX, otherY) in display (y, x) order. */
+    private boolean displaysBefore(int x, int y, int otherX, int otherY) {
+        int dy = orientation.toDisplayY(x, y, width, height);
+        int otherDy = orientation.toDisplayY(otherX, otherY, width, height);
+        if (dy != otherDy) return dy < otherDy;
+        return orientation.toDisplayX(x, y, width, height) < orientation.toDisplayX(otherX, otherY, width, height);
+    }
+
+    /** Luminance scaled by 1000, exact in integer arithmetic. */
+    static int fixedLuma(int pixel) {
+        return 299 * ((pixel >> 16) & 0xFF) + 587 * ((pixel >> 8) & 0xFF) + 114 * (pixel & 0xFF);
+    }
+
+    /** The original float luminance formula, bit for bit. */
+    public static float luminance(int pixel) {
+        return (0.299f * ((pixel >> 16) & 0xFF)) + (0.587f * ((pixel >> 8) & 0xFF)) + (0.114f * (pixel & 0xFF));
+    }
+
+    // ==========================================
+    // RESULTS
+    // ==========================================
+
+    /** Display X of the star in display cell (row, col). */
+    public int getStarX(int row, int col) {
+        int cell = cellIndex(row, col);
+        return orientation.toDisplayX(maxX[cell], maxY[cell], width, height);
+    }
+
+    /** Display Y of the star in display cell (row, col). */
+    public int getStarY(int row, int col) {
+        int cell = cellIndex(row, col);
+        return orientation.toDisplayY(maxX[cell], maxY[cell], width, height);
+    }
+
+    /** Normalized X (0.0 to 1.0) of the star in the given cell. */
+    public float getNormX(int row, int col) {
+        return getStarX(row, col) / (float) displayWidth;
+    }
+
+    /** Normalized Y (0.0 to 1.0) of the star in the given cell. */
+    public float getNormY(int row, int col) {
+        return getStarY(row, col) / (float) displayHeight;
+    }
+
+    /** Normalized brightness (0.0 to 1.0) of the star, or -1/255 for an empty cell. */
+    public float getNormBrightness(int row, int col) {
+        int cell = cellIndex(row, col);
+        float maxVal = maxLuma[cell] < 0 ? -1 : luminance(maxRgb[cell]);
+        return maxVal / 255.0f;
+    }
+
+    /** Same JSON layout as the server expects in the "constellation" field. */
+    public String toJson() {
+        return writeJson(SignatureJsonWriter.local()).toString();
+    }
+
+    /** Appends the same JSON as toJson to writer. */
+    public SignatureJsonWriter writeJson(SignatureJsonWriter writer) {
+        writer.raw("[\n");
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                writer.cell(row, col, getNormX(row, col), getNormY(row, col), getNormBrightness(row, col));
+                writer.raw(row < gridSize - 1 || col < gridSize - 1 ? ",\n" : "\n");
+            }
+        }
+        return writer.raw(']');
+    }
+
+}
@@ -0,0 +1,325 @@
+package com.example.myapplication;
+
+/**
+ * Multi-resolution constellation: the brightest block of every cell at several grid
+ * sizes (by default 16x16, 8x8 and 4x4), for coarse-to-fine matching.
+ *
+ * While rows stream past, luminance is box-filtered into one small base plane whose
+ * long side is {@link #BASE_LONG_SIDE} blocks. Block edges sit at the same fractions
+ * of the frame whatever its resolution, so a resized copy yields nearly the same
+ * plane. Each coarser level halves the
+ * previous plane with a 2x2 box filter and halves the grid, so every level sees the
+ * same number of blocks per cell. Working on block averages instead of single pixels
+ * makes the stars far more stable under resizing and recompression than the
+ * full-resolution 8x8 signature, which stays the one the server matches on.
+ *
+ * With an EXIF orientation the planes are laid out in the displayed frame: stored
+ * blocks are the display blocks mapped back, and each base row is written to its
+ * display position, so the levels come out as if extracted from an upright copy.
+ *
+ * Star positions are block centres in normalized image coordinates; brightness is the
+ * block's mean luminance / 255. Tie rule as in ConstellationExtractor: the first block
+ * in (y, x) order within a cell wins.
+ */
+public class ConstellationPyramid implements RowConsumer {
+
+    public static final int BASE_LONG_SIDE = 256;
+    public static final int DEFAULT_FINEST_GRID = 16;
+    public static final int DEFAULT_LEVELS = 3;
+
+    private final int width;
+    private final int height;
+    private final ImageOrientation orientation;
+    private final int displayWidth;
+    private final int displayHeight;
+    private final int levels;
+    private final int[] gridSizes;
+
+    // Level k plane: planeW[k] x planeH[k] mean fixed-point luma (299R + 587G + 114B)
+    private final int[] planeW;
+    private final int[] planeH;
+    private final int[][] planes;
+
+    // Base-plane block edges in stored pixels: block i spans [edge[i], edge[i + 1])
+    private final int[] colEdges;
+    private final int[] rowEdges;
+    private final int storedBaseW;
+    private final int storedBaseH;
+
+    // The same edges along the display axes
+    private final int[] displayColEdges;
+    private final int[] displayRowEdges;
+
+    // Luma sums of the base-plane row currently being accumulated
+    private final long[] rowSums;
+    private int currentRow;
+
+    // Level k stars, indexed row * grid + col
+    private final float[][] starX;
+    private final float[][] starY;
+    private final float[][] starB;
+    private final long[] levelNanos;
+    private boolean built;
+
+    public ConstellationPyramid(int width, int height) {
+        this(width, height, DEFAULT_FINEST_GRID, DEFAULT_LEVELS);
+    }
+
+    public ConstellationPyramid(int width, int height, int finestGrid, int levels) {
+        this(width, height, finestGrid, levels, ImageOrientation.NORMAL);
+    }
+
+    /**
+     * @param width       stored width of the pixels that will be fed
+     * @param height      stored height of the pixels that will be fed
+     * @param orientation how the stored frame is displayed
+     */
+    public ConstellationPyramid(int width, int height, int finestGrid, int levels, ImageOrientation orientation) {
+        if (width <= 0 || height <= 0 || levels <= 0 || finestGrid >> (levels - 1) <= 0) {
+            throw new IllegalArgumentException("Invalid pyramid: " + width + "x" + height
+                    + ", grid " + finestGrid + ", " + levels + " levels");
+        }
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+        this.orientation = orientation;
+        this.displayWidth = orientation.displayWidth(width, height);
+        this.displayHeight = orientation.displayHeight(width, height);
+
+        int longSide = Math.max(width, height);
+        int baseW = Math.min(displayWidth, Math.max(1, Math.round(displayWidth * (float) BASE_LONG_SIDE / longSide)));
+        int baseH = Math.min(displayHeight, Math.max(1, Math.round(displayHeight * (float) BASE_LONG_SIDE / longSide)));
+        displayColEdges = edges(displayWidth, baseW);
+        displayRowEdges = edges(displayHeight, baseH);
+
+        boolean transpose = orientation.isTransposed();
+        colEdges = storedEdges(transpose ? displayRowEdges : displayColEdges, width, orientation.reversesStoredX());
+        rowEdges = storedEdges(transpose ? displayColEdges : displayRowEdges, height, orientation.reversesStoredY());
+        storedBaseW = colEdges.length - 1;
+        storedBaseH = rowEdges.length - 1;
+
+        gridSizes = new int[levels];
+        planeW = new int[levels];
+        planeH = new int[levels];
+        planes = new int[levels][];
+        starX = new float[levels][];
+        starY = new float[levels][];
+        starB = new float[levels][];
+        levelNanos = new long[levels];
+
+        for (int k = 0; k < levels; k++) {
+            gridSizes[k] = finestGrid >> k;
+            planeW[k] = k == 0 ? baseW : (planeW[k - 1] + 1) / 2;
+            planeH[k] = k == 0 ? baseH : (planeH[k - 1] + 1) / 2;
+            if (planeW[k] < gridSizes[k] || planeH[k] < gridSizes[k]) {
+                throw new IllegalArgumentException("Image too small for a " + gridSizes[k] + "x" + gridSizes[k] + " level");
+            }
+            planes[k] = new int[planeW[k] * planeH[k]];
+            int cells = gridSizes[k] * gridSizes[k];
+            starX[k] = new float[cells];
+            starY[k] = new float[cells];
+            starB[k] = new float[cells];
+        }
+        rowSums = new long[storedBaseW];
+    }
+
+    /** Display edges as seen along a stored axis, reversed if the axis is mirrored. */
+    private static int[] storedEdges(int[] displayEdges, int size, boolean reverse) {
+        if (!reverse) return displayEdges;
+        int blocks = displayEdges.length - 1;
+        int[] edges = new int[blocks + 1];
+        for (int j = 0; j <= blocks; j++) {
+            edges[j] = size - displayEdges[blocks - j];
+        }
+        return edges;
+    }
+
+    private static int[] edges(int size, int blocks) {
+        int[] edges = new int[blocks + 1];
+        for (int i = 0; i <= blocks; i++) {
+            edges[i] = (int) ((long) i * size / blocks);
+        }
+        return edges;
+    }
+
+    @Override
+    public void acceptRows(int y0, int rowCount, int[] pixels, int offset, int stride) {
+        for (int i = 0; i < rowCount; i++) {
+            int rowStart = offset + i * stride;
+
+            for (int bx = 0, x = 0; bx < storedBaseW; bx++) {
+                int end = colEdges[bx + 1];
+                long sum = 0;
+                for (; x < end; x++) {
+                    sum += ConstellationExtractor.fixedLuma(pixels[rowStart + x]);
+                }
+                rowSums[bx] += sum;
+            }
+
+            if (y0 + i + 1 == rowEdges[currentRow + 1]) {
+                flushBaseRow(currentRow);
+                currentRow++;
+            }
+        }
+
+        if (y0 + rowCount >= height) {
+            build();
+        }
+    }
+
+    private void flushBaseRow(int by) {
+        int baseW = planeW[0];
+        int[] base = planes[0];
+        int rows = rowEdges[by + 1] - rowEdges[by];
+        for (int bx = 0; bx < storedBaseW; bx++) {
+            int cols = colEdges[bx + 1] - colEdges[bx];
+            int dx = orientation.toDisplayX(bx, by, storedBaseW, storedBaseH);
+            int dy = orientation.toDisplayY(bx, by, storedBaseW, storedBaseH);
+            base[dy * baseW + dx] = (int) (rowSums[bx] / ((long) cols * rows));
+            rowSums[bx] = 0;
+        }
+    }
+
+    /** Halves each plane into the next and finds every level's stars. */
+    private void build() {
+        for (int k = 0; k < levels; k++) {
+            long start = System.nanoTime();
+            buildLevel(k);
+            levelNanos[k] = System.nanoTime() - start;
+        }
+        built = true;
+    }
+
+    /** Level k from the plane below it (the base plane for k = 0); PyramidBenchmark times each level alone. */
+    void buildLevel(int k) {
+        if (k > 0) downsample(k);
+        findStars(k);
+    }
+
+    private void downsample(int k) {
+        int srcW = planeW[k - 1];
+        int srcH = planeH[k - 1];
+        int[] src = planes[k - 1];
+        int dstW = planeW[k];
+        int[] dst = planes[k];
+
+        for (int y = 0; y < planeH[k]; y++) {
+            int sy0 = 2 * y;
+            int sy1 = Math.min(sy0 + 1, srcH - 1);
+            for (int x = 0; x < dstW; x++) {
+                int sx0 = 2 * x;
+                int sx1 = Math.min(sx0 + 1, srcW - 1);
+                long sum = (long) src[sy0 * srcW + sx0] + src[sy0 * srcW + sx1] + src[sy1 * srcW + sx0] + src[sy1 * srcW + sx1];
+                dst[y * dstW + x] = (int) (sum / 4);
+            }
+        }
+    }
+
+    private void findStars(int k) {
+        int grid = gridSizes[k];
+        int w = planeW[k];
+        int h = planeH[k];
+        int[] plane = planes[k];
+
+        float cellW = w / (float) grid;
+        float cellH = h / (float) grid;
+
+        for (int row = 0; row < grid; row++) {
+            int y0 = (int) (row * cellH);
+            int y1 = Math.min(h, y0 + (int) cellH);
+            for (int col = 0; col < grid; col++) {
+                int x0 = (int) (col * cellW);
+                int x1 = Math.min(w, x0 + (int) cellW);
+
+                int best = -1;
+                int bestX = x0;
+                int bestY = y0;
+                for (int y = y0; y < y1; y++) {
+                    int base = y * w;
+                    for (int x = x0; x < x1; x++) {
+                        if (plane[base + x] > best) {
+                            best = plane[base + x];
+                            bestX = x;
+                            bestY = y;
+                        }
+                    }
+                }
+
+                int cell = row * grid + col;
+                starX[k][cell] = blockCentre(bestX, k, displayColEdges, displayWidth);
+                starY[k][cell] = blockCentre(bestY, k, displayRowEdges, displayHeight);
+                starB[k][cell] = best / 255000f;
+            }
+        }
+    }
+
+    /** Centre of level-k block i as a fraction of size; it covers base blocks [i << k, (i + 1) << k). */
+    private static float blockCentre(int i, int k, int[] edges, int size) {
+        int blocks = edges.length - 1;
+        int start = edges[Math.min(blocks, i << k)];
+        int end = edges[Math.min(blocks, (i + 1) << k)];
+        return (start + end) / 2f / size;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getGridSize(int level) {
+        return gridSizes[level];
+    }
+
+    public int getPlaneWidth(int level) {
+        return planeW[level];
+    }
+
+    public int getPlaneHeight(int level) {
+        return planeH[level];
+    }
+
+    public float getStarX(int level, int row, int col) {
+        checkBuilt();
+        return starX[level][row * gridSizes[level] + col];
+    }
+
+    public float getStarY(int level, int row, int col) {
+        checkBuilt();
+        return starY[level][row * gridSizes[level] + col];
+    }
+
+    public float getBrightness(int level, int row, int col) {
+        checkBuilt();
+        return starB[level][row * gridSizes[level] + col];
+    }
+
+    /** Time spent downsampling to and searching the given level, once all rows are in. */
+    public long getLevelNanos(int level) {
+        return levelNanos[level];
+    }
+
+    private void checkBuilt() {
+        if (!built) {
+            throw new IllegalStateException("Pyramid not complete: not all rows have been scanned");
+        }
+    }
+
+    /**
+     * Every level, coarsest first:
+     * [{"grid": 4, "stars": [{row, col, x, y, b}, ...]}, {"grid": 8, ...}, {"grid": 16, ...}]
+     */
+    public String toJson() {
+        return writeJson(SignatureJsonWriter.local()).toString();
+    }
+
+    /** Appends the same JSON as toJson to writer. */
+    public SignatureJsonWriter writeJson(SignatureJsonWriter writer) {
+        checkBuilt();
+        writer.raw('[');
+        for (int k = levels - 1; k >= 0; k--) {
+            writer.raw("{\"grid\": ").number(gridSizes[k]).raw(", \"stars\": [\n")
+                    .stars(gridSizes[k], starX[k], starY[k], starB[k])
+                    .raw(k > 0 ? "]}, " : "]}");
+        }
+        return writer.raw(']');
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Persisted set of MediaStore IDs deferred until the pipeline is idle.
+ *
+ * Once an ID is recorded here the high-water mark may move past it; after a restart
+ * the caller resubmits everything still listed, and removes an ID only when the
+ * pipeline is done with it. The set is small (bounded by the caller's queue of
+ * deferred jobs), so every change rewrites the whole file: one decimal ID per line,
+ * replaced atomically (write temp, sync, rename) like HighWaterMark.
+ */
+public class DeferredIds {
+
+    private final File file;
+    private final LinkedHashSet<Long> ids = new LinkedHashSet<>();
+
+    public DeferredIds(File file) {
+        this.file = file;
+    }
+
+    /** Reads the persisted IDs in the order they were deferred; unreadable lines are skipped. */
+    public synchronized List<Long> load() {
+        ids.clear();
+        if (file.exists()) {
+            try {
+                for (String line : new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).split("\n")) {
+                    try {
+                        if (!line.trim().isEmpty()) ids.add(Long.parseLong(line.trim()));
+                    } catch (NumberFormatException ignored) {
+                        // Torn or foreign line; the rest still counts
+                    }
+                }
+            } catch (IOException e) {
+                ids.clear();
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Durably records id; once this returns, the high-water mark may move past it. */
+    public synchronized void add(long id) throws IOException {
+        if (ids.add(id)) {
+            try {
+                save();
+            } catch (IOException e) {
+                ids.remove(id);
+                throw e;
+            }
+        }
+    }
+
+    /** Forgets id once it is done with; returns false if it was not deferred. */
+    public synchronized boolean remove(long id) throws IOException {
+        if (!ids.remove(id)) return false;
+        save();
+        return true;
+    }
+
+    public synchronized boolean contains(long id) {
+        return ids.contains(id);
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    private void save() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (long id : ids) {
+            text.append(id).append('\n');
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+}
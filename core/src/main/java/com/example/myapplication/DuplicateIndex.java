@@ -0,0 +1,268 @@
+package com.example.myapplication;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of stored constellations that finds the nearest earlier signature
+ * to a new capture, so near-duplicates (burst frames, re-saved copies) need not be
+ * uploaded again.
+ *
+ * Candidates come from locality-sensitive banding: each star is quantized to a 4x4
+ * bucket within its cell, and the 64 cells are split into 16 bands of 4 spread-out
+ * cells. Two signatures become candidates when all four cells of any band land in
+ * the same buckets (each band is also probed with its most borderline coordinate
+ * moved to the neighbouring bucket). Candidates are then scored exactly as the
+ * server's calculateMatchScore does, on coordinates rounded to the 4 decimals the
+ * server sees, so a reported match always scores what the server would give it.
+ * A near-duplicate whose stars all moved by more than a bucket can be missed; that
+ * only costs an upload, never a wrong suppression.
+ */
+public class DuplicateIndex {
+
+    /** Server threshold: scores above this are a match. */
+    public static final double MATCH_SCORE = 75;
+    /** Star distance the server counts as a tight match. */
+    public static final double TIGHT_DISTANCE = 0.05;
+
+    public static final int CELLS = SignatureStore.GRID_SIZE * SignatureStore.GRID_SIZE;
+
+    private static final int BANDS = 16;
+    private static final int CELLS_PER_BAND = CELLS / BANDS;
+    private static final int BUCKETS_PER_CELL = 4;
+    private static final int BUCKETS_PER_AXIS = SignatureStore.GRID_SIZE * BUCKETS_PER_CELL;
+    private static final double SCALE = 10000; // server sees x and y as %.4f
+
+    public static final class Match {
+        public final long imageId;
+        public final double score;
+        public final int matchedStars;
+
+        Match(long imageId, double score, int matchedStars) {
+            this.imageId = imageId;
+            this.score = score;
+            this.matchedStars = matchedStars;
+        }
+
+        public boolean isMatch() {
+            return score > MATCH_SCORE;
+        }
+    }
+
+    private static final class Posting {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(entries, 0, grown, 0, size);
+                entries = grown;
+            }
+            entries[size++] = entry;
+        }
+    }
+
+    private final Map<Integer, Posting> postings = new HashMap<>();
+
+    // Entry e's coordinates live at [e * CELLS, (e + 1) * CELLS), in units of 1e-4
+    private long[] imageIds;
+    private short[] xs;
+    private short[] ys;
+    private int[] seen;
+    private int size;
+    private int queryStamp;
+
+    // Query scratch, reused across calls
+    private final short[] qx = new short[CELLS];
+    private final short[] qy = new short[CELLS];
+    private final int[] codes = new int[CELLS];
+
+    public DuplicateIndex(int expectedEntries) {
+        int capacity = Math.max(16, expectedEntries);
+        imageIds = new long[capacity];
+        xs = new short[capacity * CELLS];
+        ys = new short[capacity * CELLS];
+        seen = new int[capacity];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public void add(SignatureRecord record) {
+        add(record.imageId, record.x, record.y);
+    }
+
+    /** Adds a signature; x and y are the normalized star positions in row-major cell order. */
+    public synchronized void add(long imageId, float[] x, float[] y) {
+        checkCells(x, y);
+        if (size == imageIds.length) grow();
+
+        int base = size * CELLS;
+        for (int cell = 0; cell < CELLS; cell++) {
+            xs[base + cell] = quantize(x[cell]);
+            ys[base + cell] = quantize(y[cell]);
+            codes[cell] = bucketCode(x[cell], y[cell]);
+        }
+        imageIds[size] = imageId;
+
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(band, codes);
+            Posting posting = postings.get(key);
+            if (posting == null) {
+                posting = new Posting();
+                postings.put(key, posting);
+            }
+            posting.add(size);
+        }
+        size++;
+    }
+
+    public Match nearest(SignatureRecord record) {
+        return nearest(record.x, record.y);
+    }
+
+    /**
+     * Nearest indexed signature by the server's score, or null if no candidate
+     * shares a band with the query.
+     */
+    public synchronized Match nearest(float[] x, float[] y) {
+        checkCells(x, y);
+        if (++queryStamp == 0) {
+            Arrays.fill(seen, 0);
+            queryStamp = 1;
+        }
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            qx[cell] = quantize(x[cell]);
+            qy[cell] = quantize(y[cell]);
+            codes[cell] = bucketCode(x[cell], y[cell]);
+        }
+
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+
+        for (int band = 0; band < BANDS; band++) {
+            int exact = bandKey(band, codes);
+            for (int probe = 0; probe < 2; probe++) {
+                int key = probe == 0 ? exact : neighbourKey(band, x, y, exact);
+                Posting posting = postings.get(key);
+                if (posting == null) continue;
+
+                for (int i = 0; i < posting.size; i++) {
+                    int entry = posting.entries[i];
+                    if (seen[entry] == queryStamp) continue;
+                    seen[entry] = queryStamp;
+
+                    double dist = totalDistance(entry, bestDist);
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        best = entry;
+                    }
+                }
+            }
+        }
+
+        if (best < 0) return null;
+
+        int base = best * CELLS;
+        int matched = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (starDistance(qx[cell], qy[cell], xs[base + cell], ys[base + cell]) < TIGHT_DISTANCE) matched++;
+        }
+        return new Match(imageIds[best], score(bestDist, CELLS), matched);
+    }
+
+    /** Sum of star distances to an entry, giving up once it exceeds limit. */
+    private double totalDistance(int entry, double limit) {
+        int base = entry * CELLS;
+        double total = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            total += starDistance(qx[cell], qy[cell], xs[base + cell], ys[base + cell]);
+            if (total >= limit) return total;
+        }
+        return total;
+    }
+
+    private static double starDistance(short ux, short uy, short ox, short oy) {
+        double dx = (ux - ox) / SCALE;
+        double dy = (uy - oy) / SCALE;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** calculateMatchScore's final step. */
+    public static double score(double totalDist, int gridPoints) {
+        double avgDist = totalDist / gridPoints;
+        return Math.max(0, 100 - (avgDist * 500));
+    }
+
+    // ==========================================
+    // BANDING
+    // ==========================================
+
+    private static short quantize(float value) {
+        return (short) Math.round(value * SCALE);
+    }
+
+    private static int bucket(float value) {
+        int b = (int) (value * BUCKETS_PER_AXIS);
+        return b < 0 ? 0 : Math.min(b, BUCKETS_PER_AXIS - 1);
+    }
+
+    /** 4-bit code of the star's bucket within its cell. */
+    private static int bucketCode(float x, float y) {
+        return (bucket(x) % BUCKETS_PER_CELL) | (bucket(y) % BUCKETS_PER_CELL) << 2;
+    }
+
+    /** Band b holds cells b, b + 16, b + 32 and b + 48, spreading it over the frame. */
+    private static int bandKey(int band, int[] cellCodes) {
+        int key = band;
+        for (int i = 0; i < CELLS_PER_BAND; i++) {
+            key = (key << 4) | cellCodes[band + i * BANDS];
+        }
+        return key;
+    }
+
+    /** The band key with its coordinate nearest a bucket edge moved across that edge. */
+    private static int neighbourKey(int band, float[] x, float[] y, int exact) {
+        int bestShift = 0;
+        int bestCode = 0;
+        float bestMargin = Float.MAX_VALUE;
+
+        for (int i = 0; i < CELLS_PER_BAND; i++) {
+            int cell = band + i * BANDS;
+            for (int axis = 0; axis < 2; axis++) {
+                float value = axis == 0 ? x[cell] : y[cell];
+                float scaled = value * BUCKETS_PER_AXIS;
+                float frac = scaled - (float) Math.floor(scaled);
+                float margin = Math.min(frac, 1 - frac);
+                if (margin >= bestMargin) continue;
+
+                int moved = bucket(value) + (frac < 0.5f ? -1 : 1);
+                moved = Math.max(0, Math.min(BUCKETS_PER_AXIS - 1, moved)) % BUCKETS_PER_CELL;
+                int code = bucketCode(x[cell], y[cell]);
+
+                bestMargin = margin;
+                bestCode = axis == 0 ? (code & ~3) | moved : (code & 3) | moved << 2;
+                bestShift = (CELLS_PER_BAND - 1 - i) * 4;
+            }
+        }
+        return (exact & ~(0xF << bestShift)) | (bestCode << bestShift);
+    }
+
+    private void grow() {
+        int capacity = imageIds.length * 2;
+        imageIds = Arrays.copyOf(imageIds, capacity);
+        xs = Arrays.copyOf(xs, capacity * CELLS);
+        ys = Arrays.copyOf(ys, capacity * CELLS);
+        seen = Arrays.copyOf(seen, capacity);
+    }
+
+    private static void checkCells(float[] x, float[] y) {
+        if (x.length != CELLS || y.length != CELLS) {
+            throw new IllegalArgumentException("Expected " + CELLS + " stars, got " + x.length + "/" + y.length);
+        }
+    }
+}
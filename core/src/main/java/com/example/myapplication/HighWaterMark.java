@@ -0,0 +1,89 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.TreeSet;
+
+/**
+ * Persisted "everything up to here is done" MediaStore ID.
+ *
+ * IDs are started in ascending order and may finish out of order; the mark only
+ * moves past an ID once it and every smaller started ID have finished, so after a
+ * restart resuming from get() never skips a photo (at worst a few finished ones are
+ * processed again, which the store and the outbox treat as duplicates).
+ *
+ * The file holds the mark as decimal text and is replaced atomically (write temp,
+ * sync, rename).
+ */
+public class HighWaterMark {
+
+    private final File file;
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long mark = -1;
+    private long highestStarted = -1;
+
+    public HighWaterMark(File file) {
+        this.file = file;
+    }
+
+    /** Reads the persisted mark; returns -1 if there is none (first run) or it is unreadable. */
+    public synchronized long load() {
+        mark = -1;
+        if (file.exists()) {
+            try {
+                mark = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                mark = -1;
+            }
+        }
+        highestStarted = mark;
+        inFlight.clear();
+        return mark;
+    }
+
+    public synchronized long get() {
+        return mark;
+    }
+
+    /** Moves the mark forward to id with nothing in flight, e.g. to skip the existing gallery on first run. */
+    public synchronized void reset(long id) throws IOException {
+        inFlight.clear();
+        highestStarted = id;
+        mark = id;
+        save();
+    }
+
+    public synchronized void started(long id) {
+        inFlight.add(id);
+        if (id > highestStarted) highestStarted = id;
+    }
+
+    /** Marks id finished (processed, skipped or failed) and persists the mark if it moved. */
+    public synchronized void finished(long id) throws IOException {
+        if (!inFlight.remove(id)) return;
+
+        long next = inFlight.isEmpty() ? highestStarted : inFlight.first() - 1;
+        if (next > mark) {
+            mark = next;
+            save();
+        }
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    private void save() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(Long.toString(mark).getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.myapplication;
+
+/** MediaStore facts about one captured image, as passed between pipeline stages. */
+public class ImageInfo {
+
+    public final long id;
+    public final String displayName;
+    public final int width;
+    public final int height;
+    public final long fileSize;
+    public final String uri;
+    /** Clockwise rotation in degrees recorded by MediaStore (0, 90, 180, 270); -1 if unknown. */
+    public final int orientationDegrees;
+    /** Capture time in ms since the epoch (DATE_TAKEN, else DATE_ADDED); 0 if unknown. */
+    public final long dateTaken;
+
+    public ImageInfo(long id, String displayName, int width, int height, long fileSize, String uri) {
+        this(id, displayName, width, height, fileSize, uri, -1, 0);
+    }
+
+    public ImageInfo(long id, String displayName, int width, int height, long fileSize, String uri,
+                     int orientationDegrees, long dateTaken) {
+        this.id = id;
+        this.displayName = displayName;
+        this.width = width;
+        this.height = height;
+        this.fileSize = fileSize;
+        this.uri = uri;
+        this.orientationDegrees = orientationDegrees;
+        this.dateTaken = dateTaken;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.myapplication;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small LRU of ImageInfo by image ID, shared by the pipeline stages.
+ *
+ * The change scan fills it with one cursor pass per batch of new IDs, so the
+ * metadata stage normally finds every photo here instead of querying MediaStore
+ * again. Capacity should cover everything that can be queued at once, so entries
+ * are not evicted between the scan and the metadata stage.
+ */
+public class ImageInfoCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Long, ImageInfo> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Metrics.Counter hitCounter;
+    private volatile Metrics.Counter missCounter;
+
+    public ImageInfoCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Long, ImageInfo>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ImageInfo> eldest) {
+                return size() > ImageInfoCache.this.capacity;
+            }
+        };
+    }
+
+    /** Counts lookups as the counters metadata.cache.hits and metadata.cache.misses. */
+    public ImageInfoCache recordTo(Metrics metrics) {
+        this.hitCounter = metrics.counter("metadata.cache.hits");
+        this.missCounter = metrics.counter("metadata.cache.misses");
+        return this;
+    }
+
+    public synchronized void put(ImageInfo info) {
+        entries.put(info.id, info);
+    }
+
+    /** Cached info for the ID, or null (counted as a miss). */
+    public ImageInfo get(long imageId) {
+        ImageInfo info;
+        synchronized (this) {
+            info = entries.get(imageId);
+        }
+
+        if (info != null) {
+            hits.incrementAndGet();
+            Metrics.Counter counter = hitCounter;
+            if (counter != null) counter.inc();
+        } else {
+            misses.incrementAndGet();
+            Metrics.Counter counter = missCounter;
+            if (counter != null) counter.inc();
+        }
+        return info;
+    }
+
+    public synchronized void remove(long imageId) {
+        entries.remove(imageId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String describe() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format(Locale.US, "metadata cache %d/%d hit=%d miss=%d (%.0f%%)",
+                size(), capacity, h, m, h + m == 0 ? 0 : 100.0 * h / (h + m));
+    }
+}
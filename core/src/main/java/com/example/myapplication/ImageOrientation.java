@@ -0,0 +1,128 @@
+package com.example.myapplication;
+
+/**
+ * EXIF orientation (1-8) as a coordinate mapping between the frame as stored and
+ * the frame as displayed, so extractors can produce canonical output without
+ * rotating the pixels.
+ *
+ * Display position from stored (sx, sy) in a stored sw x sh frame: transposed
+ * orientations (5-8) swap the axes first, then flipX / flipY mirror them.
+ *
+ *   1 normal          5 transpose
+ *   2 mirror X        6 rotate 90 CW
+ *   3 rotate 180      7 transverse
+ *   4 mirror Y        8 rotate 270 CW
+ */
+public final class ImageOrientation {
+
+    public static final ImageOrientation NORMAL = new ImageOrientation(1);
+
+    private final int exif;
+    private final boolean transpose;
+    private final boolean flipX;
+    private final boolean flipY;
+
+    private ImageOrientation(int exif) {
+        this.exif = exif;
+        this.transpose = exif >= 5;
+        this.flipX = exif == 2 || exif == 3 || exif == 6 || exif == 7;
+        this.flipY = exif == 3 || exif == 4 || exif == 7 || exif == 8;
+    }
+
+    /** Orientation for an EXIF tag value; missing or unknown values mean normal. */
+    public static ImageOrientation fromExif(int value) {
+        return value >= 2 && value <= 8 ? new ImageOrientation(value) : NORMAL;
+    }
+
+    /**
+     * Orientation for a clockwise rotation in degrees, as MediaStore records it.
+     * MediaStore has no mirroring, so this is only a fallback for the EXIF value.
+     */
+    public static ImageOrientation fromDegrees(int degrees) {
+        switch (degrees) {
+            case 90:
+                return new ImageOrientation(6);
+            case 180:
+                return new ImageOrientation(3);
+            case 270:
+                return new ImageOrientation(8);
+            default:
+                return NORMAL;
+        }
+    }
+
+    public int getExifValue() {
+        return exif;
+    }
+
+    public boolean isIdentity() {
+        return exif == 1;
+    }
+
+    public boolean isTransposed() {
+        return transpose;
+    }
+
+    /** True if stored x runs against the display axis it lands on (display y when transposed). */
+    public boolean reversesStoredX() {
+        return transpose ? flipY : flipX;
+    }
+
+    /** True if stored y runs against the display axis it lands on (display x when transposed). */
+    public boolean reversesStoredY() {
+        return transpose ? flipX : flipY;
+    }
+
+    public int displayWidth(int storedWidth, int storedHeight) {
+        return transpose ? storedHeight : storedWidth;
+    }
+
+    public int displayHeight(int storedWidth, int storedHeight) {
+        return transpose ? storedWidth : storedHeight;
+    }
+
+    public int toDisplayX(int sx, int sy, int storedWidth, int storedHeight) {
+        int a = transpose ? sy : sx;
+        return flipX ? displayWidth(storedWidth, storedHeight) - 1 - a : a;
+    }
+
+    public int toDisplayY(int sx, int sy, int storedWidth, int storedHeight) {
+        int b = transpose ? sx : sy;
+        return flipY ? displayHeight(storedWidth, storedHeight) - 1 - b : b;
+    }
+
+    public int toStoredX(int dx, int dy, int storedWidth, int storedHeight) {
+        if (transpose) {
+            return flipY ? storedWidth - 1 - dy : dy;
+        }
+        return flipX ? storedWidth - 1 - dx : dx;
+    }
+
+    public int toStoredY(int dx, int dy, int storedWidth, int storedHeight) {
+        if (transpose) {
+            return flipX ? storedHeight - 1 - dx : dx;
+        }
+        return flipY ? storedHeight - 1 - dy : dy;
+    }
+
+    /** Copy of a small row-major frame (e.g. a preview) in display orientation. */
+    public int[] toDisplay(int[] pixels, int storedWidth, int storedHeight) {
+        if (isIdentity()) return pixels;
+
+        int displayWidth = displayWidth(storedWidth, storedHeight);
+        int[] out = new int[pixels.length];
+        for (int sy = 0; sy < storedHeight; sy++) {
+            for (int sx = 0; sx < storedWidth; sx++) {
+                int dx = toDisplayX(sx, sy, storedWidth, storedHeight);
+                int dy = toDisplayY(sx, sy, storedWidth, storedHeight);
+                out[dy * displayWidth + dx] = pixels[sy * storedWidth + sx];
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "EXIF orientation " + exif;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+/**
+ * Random ID of this install, created on first use and kept in a file, so idempotency
+ * keys are unique across devices: MediaStore IDs are small integers every device
+ * assigns on its own, and neither the author nor the device model tells two phones
+ * apart.
+ *
+ * The file holds the UUID as text and is written atomically (write temp, sync,
+ * rename) like HighWaterMark. An unreadable file gets a new ID; entries already in
+ * the upload outbox keep the key they were queued with.
+ */
+public final class InstallId {
+
+    private InstallId() {
+    }
+
+    /** The persisted ID, creating it if the file is missing or doesn't hold one. */
+    public static synchronized String load(File file) throws IOException {
+        if (file.exists()) {
+            try {
+                String stored = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+                return UUID.fromString(stored).toString();
+            } catch (IOException | IllegalArgumentException e) {
+                // Damaged: replaced below
+            }
+        }
+
+        String id = UUID.randomUUID().toString();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(id.getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.myapplication;
+
+/** PixelSource over a packed ARGB int[] (row-major, stride == width). */
+public class IntArrayPixelSource implements PixelSource {
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+
+    public IntArrayPixelSource(int[] pixels, int width, int height) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Need " + (width * height) + " pixels, got " + pixels.length);
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h) {
+        for (int j = 0; j < h; j++) {
+            System.arraycopy(pixels, (y + j) * width + x, dst, offset + j * stride, w);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.myapplication;
+
+/**
+ * BucketPool of int[] pixel buffers (band rows, preview planes).
+ *
+ * acquire() may return an array longer than asked for, up to 4x; callers index by
+ * their own width/stride and never rely on length.
+ */
+public class IntArrayPool extends BucketPool<int[]> {
+
+    private static final Adapter<int[]> ARRAYS = new Adapter<int[]>() {
+        @Override
+        public long sizeOf(int[] item) {
+            return 4L * item.length;
+        }
+
+        @Override
+        public void discard(int[] item) {
+            // Left to the GC
+        }
+    };
+
+    public IntArrayPool(String name, long maxBytes) {
+        super(name, maxBytes, ARRAYS);
+    }
+
+    /** A pooled array of at least minLength ints, or a new one on a miss. Contents are undefined. */
+    public int[] acquire(int minLength) {
+        int[] array = take(4L * minLength);
+        return array != null ? array : new int[minLength];
+    }
+
+    public void release(int[] array) {
+        give(array);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.myapplication;
+
+import java.util.Random;
+
+/**
+ * The constellation's inner kernel: the largest fixed-point luminance
+ * (299R + 587G + 114B, see ConstellationExtractor.fixedLuma) in a run of ARGB pixels.
+ *
+ * ConstellationExtractor uses a vectorized kernel to rule out cell rows whose
+ * brightest pixel cannot beat the current star, and runs its exact scalar loop
+ * (tie rule included) only on the rest, so the output is the same with either kernel.
+ *
+ * best() picks the kernel once, at runtime: VectorLumaKernel (core's jvm jar on the
+ * classpath of a JVM started with --add-modules jdk.incubator.vector) if it loads
+ * and agrees with the scalar kernel on a self-test, otherwise the scalar one, which
+ * is what Android always gets. -Dnetra.lumaKernel=scalar|vector|auto overrides it.
+ */
+public abstract class LumaKernel {
+
+    public static final LumaKernel SCALAR = new LumaKernel("scalar") {
+        @Override
+        public int maxLuma(int[] pixels, int from, int to) {
+            int best = -1;
+            for (int i = from; i < to; i++) {
+                int luma = ConstellationExtractor.fixedLuma(pixels[i]);
+                if (luma > best) best = luma;
+            }
+            return best;
+        }
+    };
+
+    private static final String VECTOR_CLASS = "com.example.myapplication.VectorLumaKernel";
+    private static volatile LumaKernel best;
+
+    private final String name;
+
+    protected LumaKernel(String name) {
+        this.name = name;
+    }
+
+    /** Largest fixedLuma of pixels[from, to), or -1 if the run is empty. */
+    public abstract int maxLuma(int[] pixels, int from, int to);
+
+    /** True if maxLuma is cheap enough to run as a pre-pass before the scalar loop. */
+    public boolean isVectorized() {
+        return this != SCALAR;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The kernel selected for this process (see the class comment). */
+    public static LumaKernel best() {
+        LumaKernel kernel = best;
+        if (kernel == null) {
+            kernel = select(System.getProperty("netra.lumaKernel", "auto"));
+            best = kernel;
+        }
+        return kernel;
+    }
+
+    /** The vector kernel, or null if jdk.incubator.vector is unavailable or it fails the self-test. */
+    public static LumaKernel vector() {
+        try {
+            LumaKernel kernel = (LumaKernel) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+            return selfTest(kernel) ? kernel : null;
+        } catch (Throwable t) {
+            // Not on the module path (or no such class, as on Android)
+            return null;
+        }
+    }
+
+    static LumaKernel select(String choice) {
+        if ("scalar".equals(choice)) return SCALAR;
+        LumaKernel vector = vector();
+        if (vector == null && "vector".equals(choice)) {
+            throw new IllegalStateException("netra.lumaKernel=vector but jdk.incubator.vector is unavailable");
+        }
+        return vector != null ? vector : SCALAR;
+    }
+
+    /** Compares against the scalar kernel on random runs of every length up to 67, at every alignment. */
+    private static boolean selfTest(LumaKernel kernel) {
+        Random random = new Random(0x4C554D41L);
+        int[] pixels = new int[256];
+        for (int round = 0; round < 16; round++) {
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = round == 0 ? 0xFFFFFFFF : random.nextInt();
+            }
+            for (int from = 0; from < 8; from++) {
+                for (int length = 0; length < 68; length++) {
+                    if (kernel.maxLuma(pixels, from, from + length) != SCALAR.maxLuma(pixels, from, from + length)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
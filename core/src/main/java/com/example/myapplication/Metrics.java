@@ -0,0 +1,238 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters, histograms and timers for the capture pipeline.
+ *
+ * Metrics are registered by name up front; recording into them afterwards is a few
+ * atomic operations and allocates nothing, so it is safe on the hot path from any
+ * thread. Histograms use HDR-style log-linear buckets: 16 linear sub-buckets per
+ * power of two, about 6% relative precision over the whole long range in a fixed
+ * 960-slot array.
+ *
+ * toJson() takes a snapshot; startSnapshots() writes one to a file periodically
+ * (write temp, then rename, so readers never see half a file).
+ */
+public class Metrics {
+
+    public interface ErrorHandler {
+        void onError(Exception e);
+    }
+
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    public static class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /** Records one non-negative value; negative values count as 0. */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long current;
+            while (value > (current = max.get())) {
+                if (max.compareAndSet(current, value)) break;
+            }
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        /** Smallest value that falls in the bucket. */
+        static long bucketStart(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : sum.get() / (double) n;
+        }
+
+        /** Value at quantile q (0..1), as the midpoint of its bucket; 0 if empty. */
+        public long getPercentile(double q) {
+            long n = count.get();
+            if (n == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= rank) {
+                    long start = bucketStart(bucket);
+                    long end = bucket + 1 < BUCKETS ? bucketStart(bucket + 1) : Long.MAX_VALUE;
+                    return Math.min(max.get(), start + (end - start) / 2);
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /** Histogram of durations in nanoseconds, reported in milliseconds. */
+    public static final class Timer extends Histogram {
+
+        /** Records the time since start, a System.nanoTime() value; returns the duration. */
+        public long stop(long start) {
+            long nanos = System.nanoTime() - start;
+            record(nanos);
+            return nanos;
+        }
+
+        public double getPercentileMs(double q) {
+            return getPercentile(q) / 1e6;
+        }
+    }
+
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final long createdAt = System.currentTimeMillis();
+    private ScheduledExecutorService snapshotter;
+
+    public synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    public synchronized Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        } else if (histogram instanceof Timer) {
+            throw new IllegalArgumentException(name + " is a timer");
+        }
+        return histogram;
+    }
+
+    public synchronized Timer timer(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Timer();
+            histograms.put(name, histogram);
+        } else if (!(histogram instanceof Timer)) {
+            throw new IllegalArgumentException(name + " is not a timer");
+        }
+        return (Timer) histogram;
+    }
+
+    /**
+     * Snapshot of every metric:
+     * {"timestamp": ms, "uptime_ms": ms, "counters": {name: n},
+     *  "histograms": {name: {"count", "mean", "p50", "p90", "p99", "max"}}}
+     * with timer values in milliseconds.
+     */
+    public synchronized String toJson() {
+        long now = System.currentTimeMillis();
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"timestamp\": ").append(now)
+                .append(",\n  \"uptime_ms\": ").append(now - createdAt)
+                .append(",\n  \"counters\": {");
+
+        boolean first = true;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            json.append(first ? "\n" : ",\n").append("    \"").append(entry.getKey()).append("\": ").append(entry.getValue().get());
+            first = false;
+        }
+        json.append(first ? "},\n" : "\n  },\n").append("  \"histograms\": {");
+
+        first = true;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram h = entry.getValue();
+            double scale = h instanceof Timer ? 1e6 : 1;
+            json.append(first ? "\n" : ",\n").append("    \"").append(entry.getKey()).append("\": ")
+                    .append(String.format(Locale.US,
+                            "{\"count\": %d, \"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f}",
+                            h.getCount(), h.getMean() / scale, h.getPercentile(0.5) / scale, h.getPercentile(0.9) / scale,
+                            h.getPercentile(0.99) / scale, h.getMax() / scale));
+            first = false;
+        }
+        json.append(first ? "}\n}\n" : "\n  }\n}\n");
+        return json.toString();
+    }
+
+    public void writeSnapshot(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+            writer.flush();
+            fos.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /** Writes a snapshot to file every periodMs until stopSnapshots(). */
+    public synchronized void startSnapshots(File file, long periodMs, ErrorHandler errorHandler) {
+        if (snapshotter != null) return;
+        snapshotter = Executors.newSingleThreadScheduledExecutor();
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot(file);
+            } catch (Exception e) {
+                errorHandler.onError(e);
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSnapshots() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            snapshotter = null;
+        }
+    }
+}
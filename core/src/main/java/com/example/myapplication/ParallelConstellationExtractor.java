@@ -0,0 +1,142 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs ConstellationExtractor over a bounded thread pool.
+ *
+ * The grid is cut into tiles of one cell row by a range of cell columns. Every tile
+ * owns its cells outright and scans them in the same (y, x) order as the serial path,
+ * so the result (including the first-pixel-wins tie rule) does not depend on the
+ * parallelism level or on which thread finishes first.
+ */
+public class ParallelConstellationExtractor {
+
+    private final int parallelism;
+    private final int bandPixels;
+    private final ExecutorService pool;
+
+    /**
+     * @param parallelism number of worker threads; 1 scans on the calling thread
+     * @param bandPixels  approximate size of each tile's row buffer, in pixels
+     */
+    public ParallelConstellationExtractor(int parallelism, int bandPixels) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.bandPixels = bandPixels;
+        this.pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ConstellationExtractor extract(PixelSource source) {
+        return extract(source, ConstellationExtractor.DEFAULT_GRID_SIZE);
+    }
+
+    public ConstellationExtractor extract(PixelSource source, int gridSize) {
+        ConstellationExtractor extractor = new ConstellationExtractor(source.getWidth(), source.getHeight(), gridSize);
+
+        if (pool == null) {
+            extractor.scan(source, bandPixels);
+            return extractor;
+        }
+
+        // Aim for ~2 tiles per thread so uneven cells still balance out
+        int colGroups = Math.min(gridSize, Math.max(1, (2 * parallelism + gridSize - 1) / gridSize));
+
+        List<Callable<Void>> tiles = new ArrayList<>();
+        for (int row = 0; row < gridSize; row++) {
+            for (int g = 0; g < colGroups; g++) {
+                int colFrom = g * gridSize / colGroups;
+                int colTo = (g + 1) * gridSize / colGroups;
+                final int tileRow = row;
+                tiles.add(() -> {
+                    scanTile(source, extractor, tileRow, colFrom, colTo);
+                    return null;
+                });
+            }
+        }
+
+        runAll(tiles);
+        return extractor;
+    }
+
+    /**
+     * Consumer that spreads every streamed band over the pool by cell columns, for
+     * use with BandScanner when the whole image is never in memory at once.
+     */
+    public RowConsumer bandConsumer(ConstellationExtractor extractor) {
+        if (pool == null) return extractor;
+
+        int gridSize = extractor.getGridSize();
+        int colGroups = Math.min(gridSize, parallelism);
+
+        return (y0, rowCount, pixels, offset, stride) -> {
+            List<Callable<Void>> tasks = new ArrayList<>(colGroups);
+            for (int g = 0; g < colGroups; g++) {
+                int colFrom = g * gridSize / colGroups;
+                int colTo = (g + 1) * gridSize / colGroups;
+                tasks.add(() -> {
+                    for (int i = 0; i < rowCount; i++) {
+                        int y = y0 + i;
+                        for (int row = 0; row < gridSize; row++) {
+                            if (y < extractor.cellY0(row) || y >= extractor.cellY1(row)) continue;
+                            extractor.acceptCellRow(row, y, pixels, offset + i * stride, colFrom, colTo);
+                        }
+                    }
+                    return null;
+                });
+            }
+            runAll(tasks);
+        };
+    }
+
+    private void runAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Constellation scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Constellation tile failed", e.getCause());
+        }
+    }
+
+    private void scanTile(PixelSource source, ConstellationExtractor extractor, int row, int colFrom, int colTo) {
+        int x0 = extractor.cellX0(colFrom);
+        int x1 = extractor.cellX1(colTo - 1);
+        int y0 = extractor.cellY0(row);
+        int y1 = extractor.cellY1(row);
+        int tileW = x1 - x0;
+        if (tileW <= 0 || y1 <= y0) return;
+
+        int bandRows = Math.max(1, Math.min(y1 - y0, bandPixels / tileW));
+        int[] band = new int[tileW * bandRows];
+
+        for (int y = y0; y < y1; y += bandRows) {
+            int rows = Math.min(bandRows, y1 - y);
+            source.getPixels(band, 0, tileW, x0, y, tileW, rows);
+            for (int i = 0; i < rows; i++) {
+                extractor.acceptCellRow(row, y + i, band, i * tileW - x0, colFrom, colTo);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
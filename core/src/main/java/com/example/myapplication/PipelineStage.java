@@ -0,0 +1,271 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the capture pipeline: a bounded queue drained by a fixed number of
+ * workers, each running the handler and passing its result on to the next stage.
+ *
+ * When the queue is full, the overflow policy decides what submit does:
+ *  - BLOCK       wait for room, pushing back on the producer (and so on upstream)
+ *  - DROP_NEWEST reject the new item
+ *  - DROP_OLDEST evict the oldest queued item to make room
+ *  - SPILL       hand the new item to the spill callback (e.g. to persist it for later)
+ *
+ * Every stage tracks queue depth, queue wait, service time and time blocked on the
+ * next stage, so describe() shows where the time goes. recordTo() also feeds queue
+ * wait and service time into Metrics timers for percentiles.
+ */
+public class PipelineStage<I, O> {
+
+    public enum OverflowPolicy { BLOCK, DROP_NEWEST, DROP_OLDEST, SPILL }
+
+    public interface Handler<I, O> {
+        /** Processes one item; a null result is not passed on. */
+        O handle(I item) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void accept(T item);
+    }
+
+    public interface ErrorHandler<T> {
+        void onError(T item, Exception e);
+    }
+
+    private static final class Envelope<T> {
+        final T item;
+        final long enqueuedAt;
+
+        Envelope(T item, long enqueuedAt) {
+            this.item = item;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final String name;
+    private final int capacity;
+    private final int workers;
+    private final OverflowPolicy policy;
+    private final Handler<I, O> handler;
+    private final ArrayBlockingQueue<Envelope<I>> queue;
+    private ExecutorService pool;
+    private volatile boolean running;
+
+    private volatile PipelineStage<O, ?> next;
+    private volatile Callback<I> spill;
+    private volatile Callback<I> dropped;
+    private volatile ErrorHandler<I> errorHandler;
+    private volatile Metrics.Timer waitTimer;
+    private volatile Metrics.Timer serviceTimer;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong serviceNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    public PipelineStage(String name, int capacity, int workers, OverflowPolicy policy, Handler<I, O> handler) {
+        if (capacity < 1 || workers < 1) {
+            throw new IllegalArgumentException(name + ": capacity and workers must be >= 1");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.workers = workers;
+        this.policy = policy;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /** Links the next stage and returns it, so stages can be chained. */
+    public <N> PipelineStage<O, N> then(PipelineStage<O, N> nextStage) {
+        this.next = nextStage;
+        return nextStage;
+    }
+
+    public PipelineStage<I, O> onSpill(Callback<I> callback) {
+        this.spill = callback;
+        return this;
+    }
+
+    public PipelineStage<I, O> onDrop(Callback<I> callback) {
+        this.dropped = callback;
+        return this;
+    }
+
+    public PipelineStage<I, O> onError(ErrorHandler<I> handler) {
+        this.errorHandler = handler;
+        return this;
+    }
+
+    /** Records queue wait and service time as the timers stage.NAME.wait and stage.NAME.service. */
+    public PipelineStage<I, O> recordTo(Metrics metrics) {
+        this.waitTimer = metrics.timer("stage." + name + ".wait");
+        this.serviceTimer = metrics.timer("stage." + name + ".service");
+        return this;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        pool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(this::workLoop);
+        }
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Offers an item according to the overflow policy.
+     *
+     * @return true if the item was queued
+     */
+    public boolean submit(I item) throws InterruptedException {
+        Envelope<I> envelope = new Envelope<>(item, System.nanoTime());
+
+        switch (policy) {
+            case BLOCK:
+                queue.put(envelope);
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(envelope)) {
+                    drop(item);
+                    return false;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(envelope)) {
+                    Envelope<I> oldest = queue.poll();
+                    if (oldest != null) drop(oldest.item);
+                }
+                break;
+            case SPILL:
+                if (!queue.offer(envelope)) {
+                    spilledCount.incrementAndGet();
+                    Callback<I> callback = spill;
+                    if (callback != null) callback.accept(item);
+                    return false;
+                }
+                break;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    private void drop(I item) {
+        droppedCount.incrementAndGet();
+        Callback<I> callback = dropped;
+        if (callback != null) callback.accept(item);
+    }
+
+    private void workLoop() {
+        while (running) {
+            Envelope<I> envelope;
+            try {
+                envelope = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            waitNanos.addAndGet(start - envelope.enqueuedAt);
+            Metrics.Timer onWait = waitTimer;
+            if (onWait != null) onWait.record(start - envelope.enqueuedAt);
+
+            O result;
+            try {
+                result = handler.handle(envelope.item);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                ErrorHandler<I> onError = errorHandler;
+                if (onError != null) onError.onError(envelope.item, e);
+                continue;
+            } finally {
+                long service = System.nanoTime() - start;
+                serviceNanos.addAndGet(service);
+                Metrics.Timer onService = serviceTimer;
+                if (onService != null) onService.record(service);
+            }
+            completed.incrementAndGet();
+
+            PipelineStage<O, ?> nextStage = next;
+            if (result != null && nextStage != null) {
+                long blockedFrom = System.nanoTime();
+                try {
+                    nextStage.submit(result);
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    blockedNanos.addAndGet(System.nanoTime() - blockedFrom);
+                }
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getDropped() {
+        return droppedCount.get();
+    }
+
+    public long getSpilled() {
+        return spilledCount.get();
+    }
+
+    /** Average queue wait in ms over all handled items. */
+    public double getAvgWaitMs() {
+        long handled = completed.get() + failed.get();
+        return handled == 0 ? 0 : waitNanos.get() / 1e6 / handled;
+    }
+
+    /** Average handler time in ms over all handled items. */
+    public double getAvgServiceMs() {
+        long handled = completed.get() + failed.get();
+        return handled == 0 ? 0 : serviceNanos.get() / 1e6 / handled;
+    }
+
+    /** Average time spent waiting for room in the next stage, in ms. */
+    public double getAvgBlockedMs() {
+        long done = completed.get();
+        return done == 0 ? 0 : blockedNanos.get() / 1e6 / done;
+    }
+
+    public String describe() {
+        return String.format(Locale.US, "%s q=%d/%d done=%d fail=%d drop=%d spill=%d wait=%.0fms svc=%.0fms blocked=%.0fms",
+                name, getQueueDepth(), capacity, completed.get(), failed.get(), droppedCount.get(), spilledCount.get(),
+                getAvgWaitMs(), getAvgServiceMs(), getAvgBlockedMs());
+    }
+}
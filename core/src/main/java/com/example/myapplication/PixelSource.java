@@ -0,0 +1,20 @@
+package com.example.myapplication;
+
+/**
+ * Read-only rectangular access to ARGB pixels, so extraction code does not
+ * depend on android.graphics.Bitmap.
+ *
+ * Implementations must allow concurrent reads of different regions.
+ */
+public interface PixelSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Copies the w x h region at (x, y) into dst, same contract as Bitmap.getPixels:
+     * pixel (x + i, y + j) lands at dst[offset + j * stride + i].
+     */
+    void getPixels(int[] dst, int offset, int stride, int x, int y, int w, int h);
+}
@@ -0,0 +1,177 @@
+package com.example.myapplication;
+
+import java.util.Arrays;
+
+/**
+ * Builds the on-screen preview while the image streams past, by box-averaging
+ * sampleSize x sampleSize blocks. Replaces re-decoding the photo with inSampleSize.
+ *
+ * Given an orientation, every averaged pixel is written straight to its upright
+ * position, so no rotated copy of the preview is needed. With an IntArrayPool the
+ * output and row sums come from the pool: recycle() returns the sums, and the output
+ * belongs to whoever takes getPixels().
+ */
+public class PreviewDownsampler implements RowConsumer {
+
+    private final int width;
+    private final int height;
+    private final int sampleSize;
+    private final int outWidth;
+    private final int outHeight;
+    private final int[] out;
+    private final ImageOrientation orientation;
+
+    // Channel sums for the output row currently being accumulated
+    private final int[] sumR;
+    private final int[] sumG;
+    private final int[] sumB;
+    private final IntArrayPool bufferPool;
+
+    public PreviewDownsampler(int width, int height, int sampleSize) {
+        this(width, height, sampleSize, ImageOrientation.NORMAL, null);
+    }
+
+    /**
+     * @param orientation orientation of the streamed (stored) pixels; the output is upright
+     * @param bufferPool  pool for the output and row sums; null to allocate them
+     */
+    public PreviewDownsampler(int width, int height, int sampleSize, ImageOrientation orientation,
+                              IntArrayPool bufferPool) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize must be >= 1, got " + sampleSize);
+        }
+        this.width = width;
+        this.height = height;
+        this.sampleSize = sampleSize;
+        this.outWidth = (width + sampleSize - 1) / sampleSize;
+        this.outHeight = (height + sampleSize - 1) / sampleSize;
+        this.orientation = orientation;
+        this.bufferPool = bufferPool;
+        this.out = allocate(outWidth * outHeight);
+        this.sumR = allocate(outWidth);
+        this.sumG = allocate(outWidth);
+        this.sumB = allocate(outWidth);
+        Arrays.fill(sumR, 0, outWidth, 0);
+        Arrays.fill(sumG, 0, outWidth, 0);
+        Arrays.fill(sumB, 0, outWidth, 0);
+    }
+
+    private int[] allocate(int length) {
+        return bufferPool != null ? bufferPool.acquire(length) : new int[length];
+    }
+
+    /**
+     * Largest integer sample size that keeps the preview at least as large as the
+     * bounds, long side against long side, so a landscape photo is sized for a
+     * portrait screen turned sideways. Unlike the power-of-two inSampleSize rule, a
+     * 4000x3000 photo for a 1080x1920 screen is averaged down 2x instead of not at
+     * all, and an 8000x6000 one 4x.
+     */
+    public static int sampleSizeFor(int width, int height, int boundWidth, int boundHeight) {
+        int longSide = Math.max(width, height);
+        int shortSide = Math.min(width, height);
+        int boundLong = Math.max(1, Math.max(boundWidth, boundHeight));
+        int boundShort = Math.max(1, Math.min(boundWidth, boundHeight));
+        return Math.max(1, Math.min(longSide / boundLong, shortSide / boundShort));
+    }
+
+    @Override
+    public void acceptRows(int y0, int rowCount, int[] pixels, int offset, int stride) {
+        for (int i = 0; i < rowCount; i++) {
+            int y = y0 + i;
+            int rowStart = offset + i * stride;
+
+            for (int ox = 0, x = 0; ox < outWidth; ox++) {
+                int end = Math.min(width, x + sampleSize);
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (; x < end; x++) {
+                    int pixel = pixels[rowStart + x];
+                    r += (pixel >> 16) & 0xFF;
+                    g += (pixel >> 8) & 0xFF;
+                    b += pixel & 0xFF;
+                }
+                sumR[ox] += r;
+                sumG[ox] += g;
+                sumB[ox] += b;
+            }
+
+            if ((y + 1) % sampleSize == 0 || y == height - 1) {
+                flushRow(y / sampleSize, y % sampleSize + 1);
+            }
+        }
+    }
+
+    private void flushRow(int oy, int rows) {
+        boolean upright = orientation.isIdentity();
+        int displayWidth = orientation.displayWidth(outWidth, outHeight);
+        int base = oy * outWidth;
+        for (int ox = 0; ox < outWidth; ox++) {
+            int cols = Math.min(sampleSize, width - ox * sampleSize);
+            int n = cols * rows;
+            int r = sumR[ox] / n;
+            int g = sumG[ox] / n;
+            int b = sumB[ox] / n;
+            int pixel = 0xFF000000 | (r << 16) | (g << 8) | b;
+            if (upright) {
+                out[base + ox] = pixel;
+            } else {
+                out[orientation.toDisplayY(ox, oy, outWidth, outHeight) * displayWidth
+                        + orientation.toDisplayX(ox, oy, outWidth, outHeight)] = pixel;
+            }
+            sumR[ox] = 0;
+            sumG[ox] = 0;
+            sumB[ox] = 0;
+        }
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public int getOutWidth() {
+        return outWidth;
+    }
+
+    public int getOutHeight() {
+        return outHeight;
+    }
+
+    /**
+     * Box-averages an upright preview down by sampleSize, e.g. into a thumbnail.
+     * The result is sized getDisplayWidth() x getDisplayHeight() of the returned
+     * downsampler.
+     */
+    public static PreviewDownsampler downsample(int[] pixels, int width, int height, int sampleSize) {
+        PreviewDownsampler thumbnail = new PreviewDownsampler(width, height, sampleSize);
+        thumbnail.acceptRows(0, height, pixels, 0, width);
+        return thumbnail;
+    }
+
+    /** Width of the upright preview. */
+    public int getDisplayWidth() {
+        return orientation.displayWidth(outWidth, outHeight);
+    }
+
+    /** Height of the upright preview. */
+    public int getDisplayHeight() {
+        return orientation.displayHeight(outWidth, outHeight);
+    }
+
+    /**
+     * Upright preview ARGB pixels, row-major with stride getDisplayWidth(). May be
+     * longer than the preview when pooled.
+     */
+    public int[] getPixels() {
+        return out;
+    }
+
+    /** Returns the row sums to the pool; the output from getPixels() is not touched. */
+    public void recycle() {
+        if (bufferPool == null) return;
+        bufferPool.release(sumR);
+        bufferPool.release(sumG);
+        bufferPool.release(sumB);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides per photo how much work its signature gets, so the pipeline keeps to a
+ * latency budget: full resolution, reduced resolution (decoded with inSampleSize
+ * 2, 4, ...), or deferred to a full-resolution job that runs once the pipeline is idle.
+ *
+ * Every photo queued behind this one waits for it, so one photo may take
+ * budget / (backlog + 1). The cost of each sample size is a moving average of the
+ * measured open + decode + extract time per full-resolution pixel. A sample size not
+ * measured yet is estimated from the nearest finer one, halving per step: entropy
+ * decoding still reads every pixel, so cost falls slower than the pixel count. The
+ * finest sample size predicted to fit wins. If none fits, the photo is deferred
+ * while there is room for more deferred jobs, else it gets the coarsest size. Full
+ * resolution is always chosen on a charger with nothing queued; a severely hot phone
+ * defers.
+ *
+ * Every auditEvery-th reduced decision is marked for audit: the caller re-runs that
+ * photo at full resolution later and reports the server score between the two
+ * signatures (SignatureMatcher.score) to recordAudit(), so getAuditMatches() /
+ * getAuditSamples() show whether reduced signatures still match above the
+ * server's threshold.
+ */
+public class QualityScheduler {
+
+    public static final class Decision {
+        public final QualityTier tier;
+        /** inSampleSize to decode with; 1 unless REDUCED. */
+        public final int sampleSize;
+        /** Predicted cost in ns; 0 if it could not be predicted. */
+        public final long predictedNanos;
+        /** True for a REDUCED photo that should also be audited at full resolution. */
+        public final boolean audit;
+
+        Decision(QualityTier tier, int sampleSize, long predictedNanos, boolean audit) {
+            this.tier = tier;
+            this.sampleSize = sampleSize;
+            this.predictedNanos = predictedNanos;
+            this.audit = audit;
+        }
+
+        @Override
+        public String toString() {
+            return tier == QualityTier.REDUCED ? tier.label + "/" + sampleSize : tier.label;
+        }
+    }
+
+    private static final double SMOOTHING = 0.25; // weight of the newest measurement
+
+    private final long budgetNanos;
+    private final int maxSampleSize;
+    private final int maxDeferred;
+    private final int auditEvery;
+
+    // Guarded by this
+    private final double[] nanosPerPixel; // by log2(sample size); 0 until measured
+    private int reducedSinceAudit;
+    private long auditSamples;
+    private long auditMatches;
+    private double auditScoreSum;
+    private double auditMinScore = Double.NaN;
+
+    private final AtomicLong fullCount = new AtomicLong();
+    private final AtomicLong reducedCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+    private volatile Metrics.Counter fullCounter;
+    private volatile Metrics.Counter reducedCounter;
+    private volatile Metrics.Counter deferredCounter;
+    private volatile Metrics.Counter auditSampleCounter;
+    private volatile Metrics.Counter auditMatchCounter;
+
+    /**
+     * @param budgetMs      time a photo may take from leaving the queue to its signature, waiting included
+     * @param maxSampleSize coarsest inSampleSize for REDUCED, a power of two
+     * @param maxDeferred   deferred jobs allowed to wait at once; 0 never defers
+     * @param auditEvery    audit one in this many REDUCED photos; 0 never audits
+     */
+    public QualityScheduler(long budgetMs, int maxSampleSize, int maxDeferred, int auditEvery) {
+        if (maxSampleSize < 1 || Integer.bitCount(maxSampleSize) != 1) {
+            throw new IllegalArgumentException("Sample size must be a power of two, got " + maxSampleSize);
+        }
+        this.budgetNanos = budgetMs * 1000000L;
+        this.maxSampleSize = maxSampleSize;
+        this.maxDeferred = maxDeferred;
+        this.auditEvery = auditEvery;
+        this.nanosPerPixel = new double[Integer.numberOfTrailingZeros(maxSampleSize) + 1];
+    }
+
+    /**
+     * Counts decisions as quality.full / quality.reduced / quality.deferred and audits
+     * as quality.audit.samples / quality.audit.matches.
+     */
+    public QualityScheduler recordTo(Metrics metrics) {
+        this.fullCounter = metrics.counter("quality.full");
+        this.reducedCounter = metrics.counter("quality.reduced");
+        this.deferredCounter = metrics.counter("quality.deferred");
+        this.auditSampleCounter = metrics.counter("quality.audit.samples");
+        this.auditMatchCounter = metrics.counter("quality.audit.matches");
+        return this;
+    }
+
+    /**
+     * @param pixels       full-resolution pixel count; 0 if unknown (always FULL)
+     * @param backlog      photos queued behind this one
+     * @param conditions   device state, or null if unknown
+     * @param deferredJobs deferred jobs already waiting
+     */
+    public Decision decide(long pixels, int backlog, CaptureThrottle.Conditions conditions, int deferredJobs) {
+        boolean canDefer = deferredJobs < maxDeferred;
+        if (conditions != null && conditions.thermalStatus >= CaptureThrottle.THERMAL_SEVERE && canDefer) {
+            return count(new Decision(QualityTier.DEFERRED, 1, 0, false));
+        }
+        if (pixels <= 0 || (conditions != null && conditions.charging && backlog == 0)) {
+            return count(new Decision(QualityTier.FULL, 1, 0, false));
+        }
+
+        long allowance = budgetNanos / (Math.max(0, backlog) + 1);
+        long predicted = 0;
+        synchronized (this) {
+            for (int level = 0; level < nanosPerPixel.length; level++) {
+                predicted = (long) (estimate(level) * pixels);
+                if (predicted <= allowance) {
+                    return level == 0
+                            ? count(new Decision(QualityTier.FULL, 1, predicted, false))
+                            : count(new Decision(QualityTier.REDUCED, 1 << level, predicted, nextAudit()));
+                }
+            }
+            if (!canDefer) {
+                return count(new Decision(QualityTier.REDUCED, maxSampleSize, predicted, nextAudit()));
+            }
+        }
+        return count(new Decision(QualityTier.DEFERRED, 1, 0, false));
+    }
+
+    /**
+     * Feeds one measured photo into the cost model.
+     *
+     * @param pixels full-resolution pixel count of the photo
+     * @param nanos  open + decode + extract time
+     */
+    public synchronized void recordCost(int sampleSize, long pixels, long nanos) {
+        if (pixels <= 0 || nanos <= 0) return;
+        int level = Integer.numberOfTrailingZeros(sampleSize);
+        if (Integer.bitCount(sampleSize) != 1 || level >= nanosPerPixel.length) return;
+
+        double measured = (double) nanos / pixels;
+        double previous = nanosPerPixel[level];
+        nanosPerPixel[level] = previous == 0 ? measured : previous + SMOOTHING * (measured - previous);
+    }
+
+    /** Records the server score of a reduced signature against its full-resolution audit. */
+    public void recordAudit(double score) {
+        boolean match = score > DuplicateIndex.MATCH_SCORE;
+        synchronized (this) {
+            auditSamples++;
+            if (match) auditMatches++;
+            auditScoreSum += score;
+            if (Double.isNaN(auditMinScore) || score < auditMinScore) auditMinScore = score;
+        }
+        Metrics.Counter samples = auditSampleCounter;
+        if (samples != null) samples.inc();
+        Metrics.Counter matches = auditMatchCounter;
+        if (match && matches != null) matches.inc();
+    }
+
+    public long getFullCount() {
+        return fullCount.get();
+    }
+
+    public long getReducedCount() {
+        return reducedCount.get();
+    }
+
+    public long getDeferredCount() {
+        return deferredCount.get();
+    }
+
+    /** Predicted ns per full-resolution pixel at the sample size; 0 until something was measured. */
+    public synchronized double getNanosPerPixel(int sampleSize) {
+        return estimate(Integer.numberOfTrailingZeros(sampleSize));
+    }
+
+    public synchronized long getAuditSamples() {
+        return auditSamples;
+    }
+
+    /** Audits scoring above the server's match threshold. */
+    public synchronized long getAuditMatches() {
+        return auditMatches;
+    }
+
+    /** Lowest audit score; NaN before the first audit. */
+    public synchronized double getAuditMinScore() {
+        return auditMinScore;
+    }
+
+    public synchronized double getAuditMeanScore() {
+        return auditSamples == 0 ? Double.NaN : auditScoreSum / auditSamples;
+    }
+
+    public synchronized String describe() {
+        StringBuilder cost = new StringBuilder();
+        for (int level = 0; level < nanosPerPixel.length; level++) {
+            if (level > 0) cost.append('/');
+            cost.append(String.format(Locale.US, "%.1f", estimate(level)));
+        }
+        return String.format(Locale.US,
+                "quality budget=%dms full=%d reduced=%d deferred=%d ns/px=%s audit=%d/%d matched (min %.1f, mean %.1f)",
+                budgetNanos / 1000000, fullCount.get(), reducedCount.get(), deferredCount.get(), cost,
+                auditMatches, auditSamples, auditMinScore, getAuditMeanScore());
+    }
+
+    /** Measured cost at the level, else the nearest finer measurement halved per level; 0 if none. */
+    private double estimate(int level) {
+        for (int finer = level; finer >= 0; finer--) {
+            if (nanosPerPixel[finer] > 0) return nanosPerPixel[finer] / (1 << (level - finer));
+        }
+        return 0;
+    }
+
+    private boolean nextAudit() {
+        if (auditEvery <= 0 || ++reducedSinceAudit < auditEvery) return false;
+        reducedSinceAudit = 0;
+        return true;
+    }
+
+    private Decision count(Decision decision) {
+        switch (decision.tier) {
+            case FULL:
+                increment(fullCount, fullCounter);
+                break;
+            case REDUCED:
+                increment(reducedCount, reducedCounter);
+                break;
+            default:
+                increment(deferredCount, deferredCounter);
+                break;
+        }
+        return decision;
+    }
+
+    private static void increment(AtomicLong total, Metrics.Counter counter) {
+        total.incrementAndGet();
+        if (counter != null) counter.inc();
+    }
+}
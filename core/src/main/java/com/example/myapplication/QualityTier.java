@@ -0,0 +1,32 @@
+package com.example.myapplication;
+
+/**
+ * How a stored signature was computed; recorded with each SignatureRecord.
+ *
+ * Codes are stored in SignatureStore records. FULL is 0 so records written before
+ * tiers existed read back as full resolution; add new tiers rather than renumbering.
+ */
+public enum QualityTier {
+    /** Full resolution, as soon as the photo arrived. */
+    FULL(0, "full"),
+    /** Decoded at 1/sampleSize resolution (BitmapFactory.Options.inSampleSize) to keep up. */
+    REDUCED(1, "reduced"),
+    /** Full resolution, run later once the pipeline was idle. */
+    DEFERRED(2, "deferred");
+
+    public final int code;
+    public final String label;
+
+    QualityTier(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    /** The tier for a stored code; unknown codes read as FULL. */
+    public static QualityTier forCode(int code) {
+        for (QualityTier tier : values()) {
+            if (tier.code == code) return tier;
+        }
+        return FULL;
+    }
+}
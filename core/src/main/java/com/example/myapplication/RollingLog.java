@@ -0,0 +1,664 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only text log in rolling segments, written by group commit.
+ *
+ * append() only buffers the line. The buffer is written to the active segment
+ * through one open channel and forced once per commit, when it reaches
+ * commitBytes (on the appending thread) or every commitIntervalMs (on the
+ * flusher), so a burst of photos costs one fsync per commit instead of an
+ * open/write/close per photo. A crash loses at most the uncommitted lines.
+ *
+ * Each commit adds one record to a compact index: time range, segment, offset,
+ * length and entry count of the block it wrote. When the active segment passes
+ * segmentBytes it is sealed: its blocks are regrouped into chunks of about
+ * {@link #SEAL_CHUNK_BYTES}, each gzipped as its own member (the file is still a
+ * valid .gz), and the index is rewritten to point at the compressed chunks. Only
+ * the newest maxSegments sealed segments are kept. query() and tail() then read
+ * just the blocks they need, never the whole log.
+ *
+ * Files in the log directory:
+ *   index                 header (int magic "NLOG", int version, int active
+ *                         segment, int CRC32) then {@link #RECORD_SIZE}-byte
+ *                         records: long min time, long max time, long offset,
+ *                         int segment, int length, int entries, int CRC32
+ *   segment-NNNNNN.log    the active segment, one "epochMs TAB text" per line
+ *   segment-NNNNNN.log.gz sealed segments
+ *
+ * Sealing writes the .gz and then swaps in the new index by rename, so a crash
+ * leaves either the old index (the stray .gz is removed on open) or the new one
+ * (the old plain segment is removed on open). Lines written to the active
+ * segment without their index record are re-indexed from their timestamps.
+ */
+public class RollingLog {
+
+    public static final class Entry {
+        public final long timeMs;
+        public final String text;
+
+        Entry(long timeMs, String text) {
+            this.timeMs = timeMs;
+            this.text = text;
+        }
+    }
+
+    private static final int MAGIC = 0x4E4C4F47; // "NLOG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 40;
+    public static final int SEAL_CHUNK_BYTES = 64 * 1024;
+
+    private static final class Block {
+        final long minTime;
+        final long maxTime;
+        final long offset;
+        final int segment;
+        final int length;
+        final int entries;
+
+        Block(long minTime, long maxTime, long offset, int segment, int length, int entries) {
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.offset = offset;
+            this.segment = segment;
+            this.length = length;
+            this.entries = entries;
+        }
+
+        boolean overlaps(long fromMs, long toMs) {
+            return maxTime >= fromMs && minTime <= toMs;
+        }
+    }
+
+    private final File directory;
+    private final String name;
+    private final int commitBytes;
+    private final long commitIntervalMs;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final Metrics.ErrorHandler errorHandler;
+
+    // Buffered lines, guarded by this
+    private StringBuilder pending = new StringBuilder();
+    private StringBuilder spare = new StringBuilder();
+    private int pendingEntries;
+    private long pendingMinTime;
+    private long pendingMaxTime;
+
+    // Files and index, guarded by ioLock (taken before this, never after)
+    private final Object ioLock = new Object();
+    private final List<Block> blocks = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private RandomAccessFile indexFile;
+    private RandomAccessFile segmentFile;
+    private int activeSegment;
+    private long activeSize;
+    private volatile boolean open;
+    private ScheduledExecutorService flusher;
+
+    private long entries;
+    private long commits;
+    private long rotations;
+    private volatile Metrics.Counter entryCounter;
+    private volatile Metrics.Counter commitCounter;
+    private volatile Metrics.Counter rotationCounter;
+    private volatile Metrics.Timer commitTimer;
+
+    /**
+     * @param commitBytes      buffered characters that trigger a commit on the appending thread
+     * @param commitIntervalMs longest a line waits in the buffer
+     * @param segmentBytes     active segment size that triggers sealing
+     * @param maxSegments      sealed segments to keep; older ones are deleted
+     * @param errorHandler     called with failures of background commits and sealing
+     */
+    public RollingLog(File directory, String name, int commitBytes, long commitIntervalMs,
+                      long segmentBytes, int maxSegments, Metrics.ErrorHandler errorHandler) {
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be >= 1, got " + maxSegments);
+        }
+        this.directory = directory;
+        this.name = name;
+        this.commitBytes = commitBytes;
+        this.commitIntervalMs = commitIntervalMs;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.errorHandler = errorHandler;
+    }
+
+    /** Counts log.NAME.entries, log.NAME.commits and log.NAME.rotations, and times log.NAME.commit. */
+    public RollingLog recordTo(Metrics metrics) {
+        this.entryCounter = metrics.counter("log." + name + ".entries");
+        this.commitCounter = metrics.counter("log." + name + ".commits");
+        this.rotationCounter = metrics.counter("log." + name + ".rotations");
+        this.commitTimer = metrics.timer("log." + name + ".commit");
+        return this;
+    }
+
+    /** Opens (or creates) the log, recovers anything a crash left behind and starts the flusher. */
+    public void open() throws IOException {
+        synchronized (ioLock) {
+            if (open) return;
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create log directory " + directory);
+            }
+            loadIndex();
+            dropExpiredBlocks();
+            removeStaleFiles();
+            openActiveSegment();
+            open = true;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(this::flushAndRotate, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Commits whatever is buffered and closes the files. */
+    public void close() {
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+        if (executor != null) {
+            // Not shutdownNow(): interrupting a channel write closes the channel
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (ioLock) {
+            if (!open) return;
+            try {
+                commit();
+            } catch (IOException e) {
+                errorHandler.onError(e);
+            }
+            open = false;
+            closeQuietly(segmentFile);
+            closeQuietly(indexFile);
+            segmentFile = null;
+            indexFile = null;
+        }
+    }
+
+    /**
+     * Buffers one line (newlines in text are replaced by spaces). It reaches disk
+     * with the next commit.
+     */
+    public void append(long timeMs, CharSequence text) throws IOException {
+        if (!open) throw new IOException("Log " + name + " is closed");
+        boolean full;
+        synchronized (this) {
+            if (pendingEntries == 0) {
+                pendingMinTime = timeMs;
+                pendingMaxTime = timeMs;
+            } else {
+                pendingMinTime = Math.min(pendingMinTime, timeMs);
+                pendingMaxTime = Math.max(pendingMaxTime, timeMs);
+            }
+            pendingEntries++;
+            entries++;
+
+            pending.append(timeMs).append('\t');
+            for (int i = 0, n = text.length(); i < n; i++) {
+                char c = text.charAt(i);
+                pending.append(c == '\n' || c == '\r' ? ' ' : c);
+            }
+            pending.append('\n');
+            full = pending.length() >= commitBytes;
+        }
+
+        Metrics.Counter counter = entryCounter;
+        if (counter != null) counter.inc();
+        if (full) commit();
+    }
+
+    /** Writes and forces everything buffered so far as one block. */
+    public void commit() throws IOException {
+        synchronized (ioLock) {
+            StringBuilder batch;
+            int batchEntries;
+            long minTime;
+            long maxTime;
+            synchronized (this) {
+                if (pendingEntries == 0) return;
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchEntries = pendingEntries;
+                minTime = pendingMinTime;
+                maxTime = pendingMaxTime;
+                pendingEntries = 0;
+            }
+
+            // Appenders keep filling the other buffer while this one is written
+            byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+            batch.setLength(0);
+            if (segmentFile == null) throw new IOException("Log " + name + " is closed");
+
+            long start = System.nanoTime();
+            FileChannel channel = segmentFile.getChannel();
+            writeFully(channel, ByteBuffer.wrap(bytes), activeSize);
+            channel.force(false);
+
+            Block block = new Block(minTime, maxTime, activeSize, activeSegment, bytes.length, batchEntries);
+            appendRecord(block);
+            indexFile.getChannel().force(false);
+            blocks.add(block);
+            activeSize += bytes.length;
+
+            commits++;
+            Metrics.Counter counter = commitCounter;
+            if (counter != null) counter.inc();
+            Metrics.Timer timer = commitTimer;
+            if (timer != null) timer.stop(start);
+        }
+    }
+
+    /** Entries with timeMs in [fromMs, toMs], in log order. Commits buffered lines first. */
+    public List<Entry> query(long fromMs, long toMs) throws IOException {
+        commit();
+        List<Entry> result = new ArrayList<>();
+        synchronized (ioLock) {
+            if (!open) throw new IOException("Log " + name + " is closed");
+            for (Block block : blocks) {
+                if (!block.overlaps(fromMs, toMs)) continue;
+                for (Entry entry : parse(readBlock(block))) {
+                    if (entry.timeMs >= fromMs && entry.timeMs <= toMs) result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The last count entries, oldest first. Commits buffered lines first. */
+    public List<Entry> tail(int count) throws IOException {
+        commit();
+        if (count <= 0) return Collections.emptyList();
+        List<Entry> result = new ArrayList<>();
+        synchronized (ioLock) {
+            if (!open) throw new IOException("Log " + name + " is closed");
+            int first = blocks.size();
+            int covered = 0;
+            while (first > 0 && covered < count) {
+                covered += blocks.get(--first).entries;
+            }
+            for (int i = first; i < blocks.size(); i++) {
+                result.addAll(parse(readBlock(blocks.get(i))));
+            }
+        }
+        return result.size() > count ? new ArrayList<>(result.subList(result.size() - count, result.size())) : result;
+    }
+
+    public synchronized long getEntries() {
+        return entries;
+    }
+
+    public synchronized int getPendingEntries() {
+        return pendingEntries;
+    }
+
+    public String describe() {
+        synchronized (ioLock) {
+            long committed;
+            int waiting;
+            synchronized (this) {
+                committed = entries - pendingEntries;
+                waiting = pendingEntries;
+            }
+            int sealed = 0;
+            for (int i = 0; i < blocks.size(); i++) {
+                int segment = blocks.get(i).segment;
+                if (segment != activeSegment && (i == 0 || blocks.get(i - 1).segment != segment)) sealed++;
+            }
+            return String.format(Locale.US,
+                    "log %s segment %d (%d KB) +%d sealed, %d blocks, committed=%d in %d commits (%.1f/commit), rotations=%d, pending=%d",
+                    name, activeSegment, activeSize / 1024, sealed, blocks.size(), committed, commits,
+                    commits == 0 ? 0 : (double) committed / commits, rotations, waiting);
+        }
+    }
+
+    // ==========================================
+    // FLUSHER
+    // ==========================================
+
+    private void flushAndRotate() {
+        try {
+            synchronized (ioLock) {
+                if (!open) return;
+                commit();
+                if (activeSize >= segmentBytes) rotate();
+            }
+        } catch (Exception e) {
+            errorHandler.onError(e);
+        }
+    }
+
+    /** Seals the active segment into a .gz of chunk members and starts the next one. */
+    private void rotate() throws IOException {
+        int sealed = activeSegment;
+        List<Block> kept = new ArrayList<>();
+        List<Block> plain = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block.segment == sealed) {
+                plain.add(block);
+            } else if (block.segment > sealed - maxSegments) {
+                kept.add(block);
+            }
+        }
+
+        File gz = segmentPath(sealed, true);
+        File tmp = new File(gz.getPath() + ".tmp");
+        FileChannel channel = segmentFile.getChannel();
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            long offset = 0;
+            int i = 0;
+            while (i < plain.size()) {
+                Block first = plain.get(i);
+                long minTime = first.minTime;
+                long maxTime = first.maxTime;
+                int chunkEntries = 0;
+                int length = 0;
+                while (i < plain.size() && (length == 0 || length + plain.get(i).length <= SEAL_CHUNK_BYTES)) {
+                    Block block = plain.get(i++);
+                    minTime = Math.min(minTime, block.minTime);
+                    maxTime = Math.max(maxTime, block.maxTime);
+                    chunkEntries += block.entries;
+                    length += block.length;
+                }
+
+                ByteBuffer bytes = ByteBuffer.allocate(length);
+                readFully(channel, bytes, first.offset);
+                ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+                try (GZIPOutputStream zip = new GZIPOutputStream(member)) {
+                    zip.write(bytes.array(), 0, length);
+                }
+                member.writeTo(out);
+                kept.add(new Block(minTime, maxTime, offset, sealed, member.size(), chunkEntries));
+                offset += member.size();
+            }
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(gz)) throw new IOException("Cannot rename " + tmp + " to " + gz);
+
+        // The new index is the commit point; everything after it is cleanup
+        writeIndex(sealed + 1, kept);
+        blocks.clear();
+        blocks.addAll(kept);
+        closeQuietly(segmentFile);
+        activeSegment = sealed + 1;
+        removeStaleFiles();
+        openActiveSegment();
+
+        rotations++;
+        Metrics.Counter counter = rotationCounter;
+        if (counter != null) counter.inc();
+    }
+
+    // ==========================================
+    // FILES
+    // ==========================================
+
+    private File segmentPath(int segment, boolean compressed) {
+        return new File(directory, String.format(Locale.US, "segment-%06d.log%s", segment, compressed ? ".gz" : ""));
+    }
+
+    /** Segment number of a segment-NNNNNN.log[.gz] name, or -1. */
+    private static int segmentNumber(String fileName) {
+        if (!fileName.startsWith("segment-") || fileName.length() < 18) return -1;
+        try {
+            return Integer.parseInt(fileName.substring(8, 14));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        File file = new File(directory, "index");
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            // New log, or a lost index: start after any segments already on disk
+            int highest = 0;
+            String[] names = directory.list();
+            if (names != null) {
+                for (String fileName : names) highest = Math.max(highest, segmentNumber(fileName));
+            }
+            writeIndex(highest + 1, Collections.<Block>emptyList());
+        } else {
+            indexFile = new RandomAccessFile(file, "rw");
+        }
+
+        FileChannel channel = indexFile.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        crc.reset();
+        crc.update(header.array(), 0, 12);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(12) != (int) crc.getValue()) {
+            closeQuietly(indexFile);
+            indexFile = null;
+            throw new IOException("Not a log index: " + file);
+        }
+        activeSegment = header.getInt(8);
+
+        // Keep every record up to the first torn or corrupt one
+        long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (records * RECORD_SIZE));
+        readFully(channel, buffer, HEADER_SIZE);
+        blocks.clear();
+        for (int i = 0; i < records; i++) {
+            int base = i * RECORD_SIZE;
+            crc.reset();
+            crc.update(buffer.array(), base, RECORD_SIZE - 4);
+            if (buffer.getInt(base + RECORD_SIZE - 4) != (int) crc.getValue()) break;
+            blocks.add(new Block(buffer.getLong(base), buffer.getLong(base + 8), buffer.getLong(base + 16),
+                    buffer.getInt(base + 24), buffer.getInt(base + 28), buffer.getInt(base + 32)));
+        }
+        channel.truncate(HEADER_SIZE + (long) blocks.size() * RECORD_SIZE);
+    }
+
+    /** Forgets sealed segments past retention, e.g. after maxSegments was lowered. */
+    private void dropExpiredBlocks() throws IOException {
+        int oldest = activeSegment - maxSegments;
+        int expired = 0;
+        while (expired < blocks.size() && blocks.get(expired).segment < oldest) expired++;
+        if (expired > 0) {
+            blocks.subList(0, expired).clear();
+            writeIndex(activeSegment, new ArrayList<>(blocks));
+        }
+    }
+
+    /** Deletes temp files, the plain file of a sealed segment and sealed segments past retention or not yet indexed. */
+    private void removeStaleFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String fileName = file.getName();
+            int segment = segmentNumber(fileName);
+            if (segment < 0) continue;
+            boolean live = fileName.endsWith(".log")
+                    ? segment == activeSegment
+                    : fileName.endsWith(".log.gz") && segment < activeSegment && segment >= activeSegment - maxSegments;
+            if (!live && !file.delete()) {
+                errorHandler.onError(new IOException("Cannot delete " + file));
+            }
+        }
+    }
+
+    /** Opens the active segment, indexing any complete lines a crash left unindexed. */
+    private void openActiveSegment() throws IOException {
+        segmentFile = new RandomAccessFile(segmentPath(activeSegment, false), "rw");
+        FileChannel channel = segmentFile.getChannel();
+        long fileSize = channel.size();
+
+        long indexedEnd = 0;
+        int lost = blocks.size();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.segment != activeSegment) continue;
+            if (block.offset + block.length > fileSize) {
+                lost = i; // forced index record without its data; cannot happen unless the disk lied
+                break;
+            }
+            indexedEnd = block.offset + block.length;
+        }
+        if (lost < blocks.size()) {
+            blocks.subList(lost, blocks.size()).clear();
+            writeIndex(activeSegment, new ArrayList<>(blocks));
+        }
+
+        activeSize = indexedEnd;
+        if (fileSize > indexedEnd) {
+            ByteBuffer tail = ByteBuffer.allocate((int) (fileSize - indexedEnd));
+            readFully(channel, tail, indexedEnd);
+            int end = tail.capacity();
+            while (end > 0 && tail.get(end - 1) != '\n') end--; // drop a torn last line
+            List<Entry> recovered = parse(tail.array(), end);
+            if (!recovered.isEmpty()) {
+                long minTime = Long.MAX_VALUE;
+                long maxTime = Long.MIN_VALUE;
+                for (Entry entry : recovered) {
+                    minTime = Math.min(minTime, entry.timeMs);
+                    maxTime = Math.max(maxTime, entry.timeMs);
+                }
+                Block block = new Block(minTime, maxTime, indexedEnd, activeSegment, end, recovered.size());
+                appendRecord(block);
+                indexFile.getChannel().force(false);
+                blocks.add(block);
+                activeSize += end;
+            }
+        }
+        channel.truncate(activeSize);
+    }
+
+    /** Replaces the index with a new header and records, by writing a temp file and renaming it. */
+    private void writeIndex(int active, List<Block> records) throws IOException {
+        File file = new File(directory, "index");
+        File tmp = new File(directory, "index.tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, active);
+            crc.reset();
+            crc.update(header.array(), 0, 12);
+            header.putInt(12, (int) crc.getValue());
+            writeFully(out.getChannel(), header, 0);
+
+            ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+            for (int i = 0; i < records.size(); i++) {
+                encode(records.get(i), buffer, i * RECORD_SIZE);
+            }
+            writeFully(out.getChannel(), buffer, HEADER_SIZE);
+            out.getChannel().force(true);
+        }
+
+        closeQuietly(indexFile);
+        if (!tmp.renameTo(file)) throw new IOException("Cannot rename " + tmp + " to " + file);
+        indexFile = new RandomAccessFile(file, "rw");
+    }
+
+    private void appendRecord(Block block) throws IOException {
+        encode(block, record, 0);
+        FileChannel channel = indexFile.getChannel();
+        writeFully(channel, record, channel.size());
+    }
+
+    private void encode(Block block, ByteBuffer buffer, int base) {
+        buffer.putLong(base, block.minTime);
+        buffer.putLong(base + 8, block.maxTime);
+        buffer.putLong(base + 16, block.offset);
+        buffer.putInt(base + 24, block.segment);
+        buffer.putInt(base + 28, block.length);
+        buffer.putInt(base + 32, block.entries);
+        crc.reset();
+        crc.update(buffer.array(), base, RECORD_SIZE - 4);
+        buffer.putInt(base + RECORD_SIZE - 4, (int) crc.getValue());
+    }
+
+    /** The plain bytes of a block, decompressing it if its segment is sealed. */
+    private byte[] readBlock(Block block) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(block.length);
+        if (block.segment == activeSegment) {
+            readFully(segmentFile.getChannel(), bytes, block.offset);
+            return bytes.array();
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(block.segment, true), "r")) {
+            readFully(file.getChannel(), bytes, block.offset);
+        }
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(block.length * 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.array()))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) > 0) plain.write(chunk, 0, read);
+        }
+        return plain.toByteArray();
+    }
+
+    private static List<Entry> parse(byte[] bytes) {
+        return parse(bytes, bytes.length);
+    }
+
+    private static List<Entry> parse(byte[] bytes, int length) {
+        List<Entry> parsed = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != '\n') continue;
+            long timeMs = 0;
+            int p = start;
+            boolean negative = p < i && bytes[p] == '-';
+            if (negative) p++;
+            while (p < i && bytes[p] != '\t') timeMs = timeMs * 10 + (bytes[p++] - '0');
+            String text = p < i ? new String(bytes, p + 1, i - p - 1, StandardCharsets.UTF_8) : "";
+            parsed.add(new Entry(negative ? -timeMs : timeMs, text));
+            start = i + 1;
+        }
+        return parsed;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of log file");
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
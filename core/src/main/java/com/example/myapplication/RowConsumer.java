@@ -0,0 +1,11 @@
+package com.example.myapplication;
+
+/** Receives an image top to bottom, one band of full-width rows at a time. */
+public interface RowConsumer {
+
+    /**
+     * Row y0 + i starts at pixels[offset + i * stride] and holds the full image width.
+     * The buffer is reused for the next band, so implementations must not keep it.
+     */
+    void acceptRows(int y0, int rowCount, int[] pixels, int offset, int stride);
+}
@@ -0,0 +1,164 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The per-photo processing core, free of Android types: one band walk over a
+ * PixelSource feeds the strands, the constellation, the pyramid and the preview.
+ *
+ * MainActivity only opens the PixelSource (region decoder or full decode), reads
+ * the EXIF orientation and turns the preview into a Bitmap; desktop code such as
+ * ExtractionBenchmark (core/src/jmh) drives the same path with an IntArrayPixelSource.
+ *
+ * With an IntArrayPool the band buffer and preview buffers are pooled, so processing
+ * photo after photo reuses the same large buffers; release() returns a Result's
+ * preview pixels once they have been drawn.
+ */
+public class SignatureExtractor {
+
+    public static final String[] STAGE_NAMES = {"strands", "constellation", "pyramid", "preview"};
+    public static final int STAGE_STRANDS = 0;
+    public static final int STAGE_CONSTELLATION = 1;
+    public static final int STAGE_PYRAMID = 2;
+    public static final int STAGE_PREVIEW = 3;
+
+    /** Everything extracted from one photo. */
+    public static final class Result {
+        public final ImageOrientation orientation;
+        public final StrandSampler strands;               // null if the image is too small
+        public final ConstellationExtractor constellation;
+        public final ConstellationPyramid pyramid;        // null if the image is too small
+        public final int[] previewPixels;                 // upright ARGB, null without a preview; may be longer when pooled
+        public final int previewWidth;
+        public final int previewHeight;
+        /** Pixel decoding time in ns. */
+        public final long decodeNanos;
+        /** Time per STAGE_* in ns; 0 for stages that did not run. */
+        public final long[] stageNanos;
+
+        Result(ImageOrientation orientation, StrandSampler strands, ConstellationExtractor constellation,
+               ConstellationPyramid pyramid, int[] previewPixels, int previewWidth, int previewHeight,
+               long decodeNanos, long[] stageNanos) {
+            this.orientation = orientation;
+            this.strands = strands;
+            this.constellation = constellation;
+            this.pyramid = pyramid;
+            this.previewPixels = previewPixels;
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+            this.decodeNanos = decodeNanos;
+            this.stageNanos = stageNanos;
+        }
+    }
+
+    private final ParallelConstellationExtractor constellationEngine;
+    private final int bandPixels;
+    private final int previewMaxWidth;
+    private final int previewMaxHeight;
+    private final IntArrayPool bufferPool;
+    private volatile StrandLayout strandLayout = StrandLayout.THREE_VERTICAL;
+
+    public SignatureExtractor(ParallelConstellationExtractor constellationEngine, int bandPixels,
+                              int previewMaxWidth, int previewMaxHeight) {
+        this(constellationEngine, bandPixels, previewMaxWidth, previewMaxHeight, null);
+    }
+
+    /**
+     * @param constellationEngine thread pool for the constellation; not owned, the caller shuts it down
+     * @param bandPixels          size of the streamed band buffer, in pixels
+     * @param previewMaxWidth     preview bound; 0 for no preview (e.g. headless re-indexing)
+     * @param bufferPool          pool for the band and preview buffers; null to allocate per photo
+     */
+    public SignatureExtractor(ParallelConstellationExtractor constellationEngine, int bandPixels,
+                              int previewMaxWidth, int previewMaxHeight, IntArrayPool bufferPool) {
+        this.constellationEngine = constellationEngine;
+        this.bandPixels = bandPixels;
+        this.previewMaxWidth = previewMaxWidth;
+        this.previewMaxHeight = previewMaxHeight;
+        this.bufferPool = bufferPool;
+    }
+
+    /** Strands to sample from later photos; THREE_VERTICAL by default. */
+    public SignatureExtractor setStrandLayout(StrandLayout layout) {
+        this.strandLayout = layout;
+        return this;
+    }
+
+    /**
+     * Walks the source once.
+     *
+     * @param reportedWidth  width recorded for the photo (e.g. by MediaStore); 0 to use the source's
+     * @param reportedHeight height recorded for the photo; 0 to use the source's
+     */
+    public Result extract(PixelSource source, int reportedWidth, int reportedHeight, ImageOrientation orientation) {
+        int imageWidth = source.getWidth();
+        int imageHeight = source.getHeight();
+        int actualWidth = reportedWidth > 0 ? reportedWidth : imageWidth;
+        int actualHeight = reportedHeight > 0 ? reportedHeight : imageHeight;
+
+        List<RowConsumer> consumers = new ArrayList<>(STAGE_NAMES.length);
+        int[] stageOf = new int[STAGE_NAMES.length];
+
+        StrandSampler strands = null;
+        try {
+            strands = new StrandSampler(actualWidth, actualHeight, imageWidth, imageHeight, orientation, strandLayout);
+            stageOf[consumers.size()] = STAGE_STRANDS;
+            consumers.add(strands);
+        } catch (IllegalArgumentException e) {
+            // Too small for the strand layout; the rest of the signature still works
+        }
+
+        ConstellationExtractor constellation = new ConstellationExtractor(imageWidth, imageHeight,
+                ConstellationExtractor.DEFAULT_GRID_SIZE, orientation);
+        stageOf[consumers.size()] = STAGE_CONSTELLATION;
+        consumers.add(constellationEngine.bandConsumer(constellation));
+
+        // Coarse-to-fine 4x4 / 8x8 / 16x16 signatures from one box-filtered luma plane
+        ConstellationPyramid pyramid = null;
+        try {
+            pyramid = new ConstellationPyramid(imageWidth, imageHeight, ConstellationPyramid.DEFAULT_FINEST_GRID,
+                    ConstellationPyramid.DEFAULT_LEVELS, orientation);
+            stageOf[consumers.size()] = STAGE_PYRAMID;
+            consumers.add(pyramid);
+        } catch (IllegalArgumentException e) {
+            // Too small for the pyramid
+        }
+
+        PreviewDownsampler preview = null;
+        if (previewMaxWidth > 0 && previewMaxHeight > 0) {
+            preview = new PreviewDownsampler(imageWidth, imageHeight,
+                    PreviewDownsampler.sampleSizeFor(imageWidth, imageHeight, previewMaxWidth, previewMaxHeight),
+                    orientation, bufferPool);
+            stageOf[consumers.size()] = STAGE_PREVIEW;
+            consumers.add(preview);
+        }
+
+        // The preview is written upright as it is averaged, so it needs no rotated copy
+        long[] scanNanos = new long[consumers.size() + 1];
+        try {
+            BandScanner.scan(source, bandPixels, scanNanos, bufferPool, consumers.toArray(new RowConsumer[0]));
+        } catch (RuntimeException e) {
+            if (bufferPool != null && preview != null) bufferPool.release(preview.getPixels());
+            throw e;
+        } finally {
+            if (preview != null) preview.recycle();
+        }
+
+        long[] stageNanos = new long[STAGE_NAMES.length];
+        for (int i = 0; i < consumers.size(); i++) {
+            stageNanos[stageOf[i]] = scanNanos[i + 1];
+        }
+
+        if (preview == null) {
+            return new Result(orientation, strands, constellation, pyramid, null, 0, 0, scanNanos[0], stageNanos);
+        }
+        return new Result(orientation, strands, constellation, pyramid, preview.getPixels(),
+                preview.getDisplayWidth(), preview.getDisplayHeight(), scanNanos[0], stageNanos);
+    }
+
+    /** Returns the result's preview pixels to the pool; call once they are no longer needed. */
+    public void release(Result result) {
+        if (bufferPool != null) bufferPool.release(result.previewPixels);
+    }
+}
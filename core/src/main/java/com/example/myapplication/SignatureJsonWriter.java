@@ -0,0 +1,222 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable JSON writer for signatures, appending UTF-8 straight into a growable
+ * byte buffer.
+ *
+ * Output is byte-for-byte what the String.format path produced: fixed() rounds the
+ * float's exact binary value half-up, which is what %.4f / %.2f do for float
+ * arguments (a float is never close enough to a decimal tie for the two to differ).
+ * Once the buffer has grown to fit, writing a signature allocates nothing; local()
+ * hands out one writer per thread.
+ */
+public final class SignatureJsonWriter {
+
+    private static final ThreadLocal<SignatureJsonWriter> LOCAL = new ThreadLocal<SignatureJsonWriter>() {
+        @Override
+        protected SignatureJsonWriter initialValue() {
+            return new SignatureJsonWriter(16 * 1024);
+        }
+    };
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000};
+
+    private byte[] buffer;
+    private int length;
+
+    public SignatureJsonWriter(int initialCapacity) {
+        buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /** This thread's writer, emptied. Finish with it before calling local() again on the same thread. */
+    public static SignatureJsonWriter local() {
+        return LOCAL.get().reset();
+    }
+
+    public SignatureJsonWriter reset() {
+        length = 0;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** The backing array; valid up to length() until the next write. */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // ==========================================
+    // PRIMITIVES
+    // ==========================================
+
+    /** Appends text that is known to be ASCII (keys, punctuation). */
+    public SignatureJsonWriter raw(String ascii) {
+        int n = ascii.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buffer[length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    public SignatureJsonWriter raw(char ascii) {
+        ensure(1);
+        buffer[length++] = (byte) ascii;
+        return this;
+    }
+
+    /** Appends a JSON string literal, quoted and escaped, as UTF-8. */
+    public SignatureJsonWriter string(String value) {
+        raw('"');
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                ensure(2);
+                buffer[length++] = '\\';
+                buffer[length++] = (byte) c;
+            } else if (c < 0x20) {
+                raw("\\u00").raw(Character.forDigit(c >> 4, 16)).raw(Character.forDigit(c & 0xF, 16));
+            } else if (c < 0x80) {
+                ensure(1);
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                buffer[length++] = (byte) (0xF0 | (cp >> 18));
+                buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (Character.isSurrogate(c)) c = '?';
+                ensure(3);
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return raw('"');
+    }
+
+    public SignatureJsonWriter number(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) return raw(Long.toString(value));
+            raw('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) digits++;
+        ensure(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /** Same text as String.format(Locale.US, "%.Nf", value) for N = decimals (0..8). */
+    public SignatureJsonWriter fixed(float value, int decimals) {
+        if (Float.isNaN(value) || Math.abs(value) >= 1 << 20 || decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            // NaN, infinities and huge values never occur in signatures; keep them correct anyway
+            return raw(String.format(java.util.Locale.US, "%." + decimals + "f", value));
+        }
+
+        long scaled = scaledMagnitude(value, decimals);
+        long scale = POWERS_OF_TEN[decimals];
+        if (Float.floatToRawIntBits(value) < 0) raw('-');
+        number(scaled / scale);
+        if (decimals > 0) {
+            long fraction = scaled % scale;
+            ensure(decimals + 1);
+            buffer[length++] = '.';
+            for (int i = length + decimals - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += decimals;
+        }
+        return this;
+    }
+
+    // ==========================================
+    // SIGNATURES
+    // ==========================================
+
+    /** One cell: {@code   { "row": R, "col": C, "x": X.XXXX, "y": Y.YYYY, "b": B.BB }} */
+    public SignatureJsonWriter cell(int row, int col, float x, float y, float b) {
+        raw("  { \"row\": ").number(row).raw(", \"col\": ").number(col)
+                .raw(", \"x\": ").fixed(x, 4).raw(", \"y\": ").fixed(y, 4).raw(", \"b\": ").fixed(b, 2);
+        return raw(" }");
+    }
+
+    /** A grid x grid constellation, row-major arrays, one cell per line. */
+    public SignatureJsonWriter constellation(int grid, float[] x, float[] y, float[] b) {
+        raw("[\n");
+        stars(grid, x, y, b);
+        return raw(']');
+    }
+
+    /** The cells of a constellation without the surrounding brackets, each followed by ",\n" or "\n". */
+    public SignatureJsonWriter stars(int grid, float[] x, float[] y, float[] b) {
+        int cells = grid * grid;
+        for (int cell = 0; cell < cells; cell++) {
+            cell(cell / grid, cell % grid, x[cell], y[cell], b[cell]);
+            raw(cell < cells - 1 ? ",\n" : "\n");
+        }
+        return this;
+    }
+
+    /**
+     * |value| * 10^decimals rounded half-up on the float's exact binary value: the
+     * digits fixed() prints, so k / 10^decimals is the number the JSON carries. value
+     * must be finite and below 2^20 in magnitude, decimals 0..8.
+     */
+    static long scaledMagnitude(float value, int decimals) {
+        int bits = Float.floatToRawIntBits(value);
+        int exponent = (bits >>> 23) & 0xFF;
+
+        // |value| = mantissa * 2^-shift exactly
+        long mantissa = exponent == 0 ? (bits & 0x7FFFFF) : (bits & 0x7FFFFF) | 0x800000;
+        int shift = 150 - (exponent == 0 ? 1 : exponent);
+        long scale = POWERS_OF_TEN[decimals];
+
+        if (shift <= 0) {
+            return (mantissa << -shift) * scale;
+        }
+        long product = mantissa * scale; // < 2^24 * 10^8 < 2^51
+        if (shift >= 62) {
+            return 0; // < 2^51 / 2^62, far below half a unit
+        }
+        long scaled = product >>> shift;
+        long remainder = product & ((1L << shift) - 1);
+        if (remainder >= 1L << (shift - 1)) scaled++; // half-up
+        return scaled;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
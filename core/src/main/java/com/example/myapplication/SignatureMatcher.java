@@ -0,0 +1,341 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server's calculateMatchScore (server.js, mirrored by script.js) on the JVM:
+ * the same scores, without the O(n²) star lookup, and without finishing candidates
+ * that can no longer win.
+ *
+ * Semantics kept exactly:
+ *  - each uploaded star is compared with the stored star of the same (row, col), the
+ *    first one if a signature lists a cell twice; a cell the stored signature lacks
+ *    costs 0.5;
+ *  - score = max(0, 100 - (total / uploaded stars) * 500), with the distances summed
+ *    in upload order in the same double arithmetic, and stored coordinates held as
+ *    the 4-decimal values the server parsed, so scores are bit-for-bit those of the
+ *    straight port (ServerPort.serverScore in the test fixtures);
+ *  - best() keeps the first signature with the highest score above 0, like the
+ *    server's strict "score > highestScore" over its rows; a match scores above
+ *    {@link DuplicateIndex#MATCH_SCORE}.
+ *
+ * Stored signatures are packed into {@link Signatures}: coordinates quantized to the
+ * 1/10000 steps the JSON carries (4 bytes a star, 256 bytes for an 8x8 signature)
+ * and a bitmask of the cells present. A Query resolves each uploaded star to its
+ * cell once, so every comparison is a direct lookup. The running total only grows,
+ * so after every grid row of stars the partial score is checked against the best
+ * so far (or the caller's floor) and a hopeless candidate is dropped.
+ *
+ * best() splits the signatures into ranges over the pool. Threads share the best
+ * score so far for pruning, and ties go to the lower position, so the result does
+ * not depend on the parallelism or on thread timing.
+ */
+public class SignatureMatcher {
+
+    public static final int GRID_SIZE = SignatureStore.GRID_SIZE;
+    public static final int CELLS = GRID_SIZE * GRID_SIZE; // one bit each in a long
+    public static final int SCALE = 10000; // the JSON's 4 decimals
+
+    private static final int MIN_RANGE = 4096; // signatures per parallel task, at least
+    private static final double[] DECIMALS = new double[SCALE + 1]; // k -> the double JSON.parse gives for k/10000
+
+    static {
+        for (int k = 0; k <= SCALE; k++) {
+            DECIMALS[k] = k / (double) SCALE; // correctly rounded, like parsing "0.kkkk"
+        }
+    }
+
+    /** One uploaded signature, resolved to cell indexes. */
+    public static final class Query {
+        final int[] cells; // row * GRID_SIZE + col, or -1 for a cell no signature has
+        final double[] x;
+        final double[] y;
+
+        /** Stars in upload order; coordinates as the server received them. */
+        public Query(int[] rows, int[] cols, double[] x, double[] y) {
+            int n = rows.length;
+            if (n == 0 || cols.length != n || x.length != n || y.length != n) {
+                throw new IllegalArgumentException("Query needs 1 or more stars with row, col, x and y each");
+            }
+            this.cells = new int[n];
+            for (int i = 0; i < n; i++) {
+                boolean inside = rows[i] >= 0 && rows[i] < GRID_SIZE && cols[i] >= 0 && cols[i] < GRID_SIZE;
+                cells[i] = inside ? rows[i] * GRID_SIZE + cols[i] : -1;
+            }
+            this.x = x.clone();
+            this.y = y.clone();
+        }
+
+        /** The record as the server receives it in JSON: row-major, 4 decimals. */
+        public static Query of(SignatureRecord record) {
+            int n = record.gridSize * record.gridSize;
+            int[] rows = new int[n];
+            int[] cols = new int[n];
+            double[] x = new double[n];
+            double[] y = new double[n];
+            for (int cell = 0; cell < n; cell++) {
+                rows[cell] = cell / record.gridSize;
+                cols[cell] = cell % record.gridSize;
+                x[cell] = DECIMALS[quantize(record.x[cell])];
+                y[cell] = DECIMALS[quantize(record.y[cell])];
+            }
+            return new Query(rows, cols, x, y);
+        }
+
+        public int getStarCount() {
+            return cells.length;
+        }
+    }
+
+    /**
+     * Packed stored signatures, added in the order the server would visit its rows.
+     * Not thread-safe: fill it, then scan it from any number of threads.
+     */
+    public static final class Signatures {
+        private long[] ids;
+        private long[] present; // bit cell set when the signature has that cell
+        private char[] xs; // quantized, CELLS per signature
+        private char[] ys;
+        private int size;
+
+        public Signatures(int initialCapacity) {
+            int capacity = Math.max(16, initialCapacity);
+            ids = new long[capacity];
+            present = new long[capacity];
+            xs = new char[capacity * CELLS];
+            ys = new char[capacity * CELLS];
+        }
+
+        /**
+         * Adds one signature; a cell listed twice keeps its first star.
+         *
+         * @return its position
+         */
+        public int add(long id, int[] rows, int[] cols, float[] x, float[] y) {
+            int index = reserve(id);
+            int base = index * CELLS;
+            long mask = 0;
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] < 0 || rows[i] >= GRID_SIZE || cols[i] < 0 || cols[i] >= GRID_SIZE) continue;
+                int cell = rows[i] * GRID_SIZE + cols[i];
+                if ((mask & (1L << cell)) != 0) continue;
+                mask |= 1L << cell;
+                xs[base + cell] = (char) quantize(x[i]);
+                ys[base + cell] = (char) quantize(y[i]);
+            }
+            present[index] = mask;
+            return index;
+        }
+
+        /** Adds a full grid in row-major order, e.g. from the SignatureStore. */
+        public int add(SignatureRecord record) {
+            if (record.gridSize != GRID_SIZE) {
+                throw new IllegalArgumentException("Expected a " + GRID_SIZE + "x" + GRID_SIZE + " grid, got " + record.gridSize);
+            }
+            int index = reserve(record.imageId);
+            int base = index * CELLS;
+            for (int cell = 0; cell < CELLS; cell++) {
+                xs[base + cell] = (char) quantize(record.x[cell]);
+                ys[base + cell] = (char) quantize(record.y[cell]);
+            }
+            present[index] = -1L;
+            return index;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getId(int index) {
+            return ids[index];
+        }
+
+        private int reserve(long id) {
+            if (size == ids.length) {
+                if ((long) size * 2 * CELLS > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Too many signatures: " + size);
+                }
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                present = Arrays.copyOf(present, capacity);
+                xs = Arrays.copyOf(xs, capacity * CELLS);
+                ys = Arrays.copyOf(ys, capacity * CELLS);
+            }
+            ids[size] = id;
+            return size++;
+        }
+    }
+
+    public static final class Match {
+        /** Position in the Signatures it came from. */
+        public final int index;
+        public final long id;
+        public final double score;
+
+        Match(int index, long id, double score) {
+            this.index = index;
+            this.id = id;
+            this.score = score;
+        }
+
+        public boolean isMatch() {
+            return score > DuplicateIndex.MATCH_SCORE;
+        }
+
+        /** Higher score first, then the earlier position, as the server's row order decides. */
+        boolean beats(Match other) {
+            return other == null || score > other.score || (score == other.score && index < other.index);
+        }
+    }
+
+    private final int parallelism;
+    private final ExecutorService pool;
+
+    /** @param parallelism number of worker threads; 1 scans on the calling thread */
+    public SignatureMatcher(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** calculateMatchScore(uploaded, stored): every star, no early exit. */
+    public static double score(Query query, Signatures signatures, int index) {
+        return scoreAbove(query, signatures, index, -1, true);
+    }
+
+    /** calculateMatchScore of one record against another, both as the server receives them. */
+    public static double score(SignatureRecord uploaded, SignatureRecord stored) {
+        Signatures one = new Signatures(1);
+        one.add(stored);
+        return score(Query.of(uploaded), one, 0);
+    }
+
+    /** The server's /verify search: first signature with the highest score, or null if none scores above 0. */
+    public Match best(Query query, Signatures signatures) {
+        return best(query, signatures, 0);
+    }
+
+    /**
+     * First signature with the highest score above floor, or null. A floor of
+     * {@link DuplicateIndex#MATCH_SCORE} only looks for matches and prunes far earlier.
+     */
+    public Match best(Query query, Signatures signatures, double floor) {
+        int size = signatures.size();
+        AtomicLong shared = new AtomicLong(Double.doubleToLongBits(Math.max(0, floor)));
+        int ranges = pool == null ? 1 : Math.min(parallelism * 4, Math.max(1, size / MIN_RANGE));
+        if (ranges == 1) {
+            return scanRange(query, signatures, 0, size, floor, shared);
+        }
+
+        List<Callable<Match>> tasks = new ArrayList<>(ranges);
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) r * size / ranges);
+            int to = (int) ((long) (r + 1) * size / ranges);
+            tasks.add(() -> scanRange(query, signatures, from, to, floor, shared));
+        }
+
+        Match best = null;
+        try {
+            for (Future<Match> future : pool.invokeAll(tasks)) {
+                Match match = future.get();
+                if (match != null && match.beats(best)) best = match;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Signature scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Signature scan failed", e.getCause());
+        }
+        return best;
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Best of [from, to). Within the range a later tie loses; against the best another
+     * range published, a tie is kept and settled by position when the ranges merge.
+     */
+    private static Match scanRange(Query query, Signatures signatures, int from, int to, double floor,
+                                   AtomicLong shared) {
+        int bestIndex = -1;
+        double best = Math.max(0, floor);
+        for (int i = from; i < to; i++) {
+            double published = Double.longBitsToDouble(shared.get());
+            double score = published > best
+                    ? scoreAbove(query, signatures, i, published, true)
+                    : scoreAbove(query, signatures, i, best, false);
+            if (Double.isNaN(score)) continue;
+
+            bestIndex = i;
+            best = score;
+            // Scores are >= 0, so their bit patterns order like the values
+            shared.accumulateAndGet(Double.doubleToLongBits(score), Math::max);
+        }
+        return bestIndex >= 0 ? new Match(bestIndex, signatures.getId(bestIndex), best) : null;
+    }
+
+    /**
+     * Score of the signature at index, or NaN once it can no longer beat bound (tie
+     * included unless allowTie). Adding distances never lowers the total and the
+     * score falls as the total grows, so a partial score bounds the final one.
+     */
+    private static double scoreAbove(Query query, Signatures signatures, int index, double bound, boolean allowTie) {
+        int[] cells = query.cells;
+        double[] ux = query.x;
+        double[] uy = query.y;
+        char[] xs = signatures.xs;
+        char[] ys = signatures.ys;
+        long present = signatures.present[index];
+        int base = index * CELLS;
+        int n = cells.length;
+
+        double total = 0;
+        for (int i = 0; i < n; ) {
+            for (int end = Math.min(n, i + GRID_SIZE); i < end; i++) {
+                int cell = cells[i];
+                if (cell >= 0 && (present & (1L << cell)) != 0) {
+                    double dx = ux[i] - DECIMALS[xs[base + cell]];
+                    double dy = uy[i] - DECIMALS[ys[base + cell]];
+                    total += Math.sqrt(dx * dx + dy * dy);
+                } else {
+                    total += 0.5;
+                }
+            }
+            double partial = score(total, n);
+            if (partial < bound || (partial == bound && !allowTie)) return Double.NaN;
+        }
+        return score(total, n);
+    }
+
+    /** calculateMatchScore's final step, in the same operation order. */
+    private static double score(double totalDist, int gridPoints) {
+        double avgDist = totalDist / gridPoints;
+        return Math.max(0, 100 - (avgDist * 500));
+    }
+
+    private static int quantize(float value) {
+        long q = Math.round(value * (double) SCALE);
+        if (q < 0 || q > SCALE) {
+            throw new IllegalArgumentException("Star coordinate outside [0, 1]: " + value);
+        }
+        return (int) q;
+    }
+}
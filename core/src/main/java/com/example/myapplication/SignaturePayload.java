@@ -0,0 +1,65 @@
+package com.example.myapplication;
+
+/**
+ * The JSON object sent to the batch-register endpoint for one photo.
+ *
+ * The constellation and pyramid are written cell by cell into a SignatureJsonWriter
+ * (same text as SignatureRecord.toJson and ConstellationPyramid.toJson), so building a
+ * payload involves no String.format and no intermediate JSON strings.
+ */
+public final class SignaturePayload {
+
+    private SignaturePayload() {
+    }
+
+    /**
+     * Stable per photo, so a retried batch never registers the same photo twice, and
+     * unique across devices: the server ignores a second row with the same key.
+     *
+     * @param installId this install's InstallId; image IDs are only unique per device
+     */
+    public static String idempotencyKey(String installId, long imageId) {
+        return installId + "/" + imageId;
+    }
+
+    /** @param pyramid null if there is no pyramid */
+    public static SignatureJsonWriter write(SignatureJsonWriter writer, long imageId, String author, String deviceModel,
+                                            String timestamp, String idempotencyKey, SignatureRecord record,
+                                            ConstellationPyramid pyramid) {
+        writeHeader(writer, imageId, author, deviceModel, timestamp, idempotencyKey);
+        record.writeJson(writer).raw(", \"pyramid\": ");
+        if (pyramid != null) pyramid.writeJson(writer);
+        else writer.raw("null");
+        return writer.raw('}');
+    }
+
+    public static String toJson(long imageId, String author, String deviceModel, String timestamp,
+                                String idempotencyKey, SignatureRecord record, ConstellationPyramid pyramid) {
+        return write(SignatureJsonWriter.local(), imageId, author, deviceModel, timestamp, idempotencyKey,
+                record, pyramid).toString();
+    }
+
+    /**
+     * Same object from already-serialized parts.
+     *
+     * @param pyramidJson null if there is no pyramid
+     */
+    public static String toJson(long imageId, String author, String deviceModel, String timestamp,
+                                String idempotencyKey, String constellationJson, String pyramidJson) {
+        SignatureJsonWriter writer = SignatureJsonWriter.local();
+        writeHeader(writer, imageId, author, deviceModel, timestamp, idempotencyKey);
+        writer.raw(constellationJson).raw(", \"pyramid\": ").raw(pyramidJson != null ? pyramidJson : "null");
+        return writer.raw('}').toString();
+    }
+
+    /** Everything up to and including the "constellation" key. */
+    private static void writeHeader(SignatureJsonWriter writer, long imageId, String author, String deviceModel,
+                                    String timestamp, String idempotencyKey) {
+        writer.raw("{\"image_id\": \"").number(imageId)
+                .raw("\", \"author\": ").string(author)
+                .raw(", \"device_model\": ").string(deviceModel)
+                .raw(", \"timestamp\": ").string(timestamp)
+                .raw(", \"idempotency_key\": ").string(idempotencyKey)
+                .raw(", \"constellation\": ");
+    }
+}
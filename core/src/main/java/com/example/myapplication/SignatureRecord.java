@@ -0,0 +1,99 @@
+package com.example.myapplication;
+
+/**
+ * One stored signature: capture metadata plus the constellation as normalized
+ * x, y and brightness per cell, in row-major cell order, and the quality tier
+ * (with its inSampleSize) the constellation was computed at, and whether its
+ * upload was skipped as a near-duplicate.
+ */
+public class SignatureRecord {
+
+    public final long imageId;
+    public final long capturedAt;
+    public final int width;
+    public final int height;
+    public final long fileSize;
+    public final int strandPixels;
+    public final String displayName;
+    public final int gridSize;
+    public final float[] x;
+    public final float[] y;
+    public final float[] b;
+    public final QualityTier qualityTier;
+    /** inSampleSize the constellation was decoded at; 1 for full resolution. */
+    public final int sampleSize;
+    /** True if this photo was not uploaded because it nearly duplicates one that was. */
+    public final boolean uploadSuppressed;
+
+    public SignatureRecord(long imageId, long capturedAt, int width, int height, long fileSize, int strandPixels,
+                           String displayName, int gridSize, float[] x, float[] y, float[] b) {
+        this(imageId, capturedAt, width, height, fileSize, strandPixels, displayName, gridSize, x, y, b,
+                QualityTier.FULL, 1);
+    }
+
+    public SignatureRecord(long imageId, long capturedAt, int width, int height, long fileSize, int strandPixels,
+                           String displayName, int gridSize, float[] x, float[] y, float[] b,
+                           QualityTier qualityTier, int sampleSize) {
+        this(imageId, capturedAt, width, height, fileSize, strandPixels, displayName, gridSize, x, y, b,
+                qualityTier, sampleSize, false);
+    }
+
+    public SignatureRecord(long imageId, long capturedAt, int width, int height, long fileSize, int strandPixels,
+                           String displayName, int gridSize, float[] x, float[] y, float[] b,
+                           QualityTier qualityTier, int sampleSize, boolean uploadSuppressed) {
+        this.imageId = imageId;
+        this.capturedAt = capturedAt;
+        this.width = width;
+        this.height = height;
+        this.fileSize = fileSize;
+        this.strandPixels = strandPixels;
+        this.displayName = displayName;
+        this.gridSize = gridSize;
+        this.x = x;
+        this.y = y;
+        this.b = b;
+        this.qualityTier = qualityTier;
+        this.sampleSize = sampleSize;
+        this.uploadSuppressed = uploadSuppressed;
+    }
+
+    public static SignatureRecord of(ImageInfo info, long capturedAt, int strandPixels, ConstellationExtractor constellation) {
+        return of(info, capturedAt, strandPixels, constellation, QualityTier.FULL, 1);
+    }
+
+    public static SignatureRecord of(ImageInfo info, long capturedAt, int strandPixels, ConstellationExtractor constellation,
+                                     QualityTier qualityTier, int sampleSize) {
+        int gridSize = constellation.getGridSize();
+        int cells = gridSize * gridSize;
+        float[] x = new float[cells];
+        float[] y = new float[cells];
+        float[] b = new float[cells];
+
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int cell = row * gridSize + col;
+                x[cell] = constellation.getNormX(row, col);
+                y[cell] = constellation.getNormY(row, col);
+                b[cell] = constellation.getNormBrightness(row, col);
+            }
+        }
+
+        return new SignatureRecord(info.id, capturedAt, info.width, info.height, info.fileSize, strandPixels,
+                info.displayName, gridSize, x, y, b, qualityTier, sampleSize);
+    }
+
+    /** This record, marked as not uploaded because it nearly duplicates an uploaded one. */
+    public SignatureRecord withUploadSuppressed() {
+        return new SignatureRecord(imageId, capturedAt, width, height, fileSize, strandPixels, displayName, gridSize,
+                x, y, b, qualityTier, sampleSize, true);
+    }
+
+    /** Same JSON as ConstellationExtractor.toJson for the constellation it came from. */
+    public String toJson() {
+        return writeJson(SignatureJsonWriter.local()).toString();
+    }
+
+    public SignatureJsonWriter writeJson(SignatureJsonWriter writer) {
+        return writer.constellation(gridSize, x, y, b);
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local store of every captured signature in one memory-mapped file of fixed-size
+ * records, replacing a constellation JSON and a metadata text file per photo.
+ *
+ * Records are only ever appended. An append writes the record, forces it to disk,
+ * then bumps the committed count in the header and forces again, so a crash
+ * leaves either the old count (the half-written record is ignored and later
+ * overwritten) or the new one. Each record and the header carry a CRC32, and on
+ * open the index is rebuilt from the committed records.
+ *
+ * Header (one record in size): int magic "NSIG", int version, int record size,
+ * int grid size, long committed count, int CRC32 of the preceding 24 bytes.
+ *
+ * Record ({@link #RECORD_SIZE} bytes, big-endian):
+ *   long  image id
+ *   long  captured at (epoch ms)
+ *   int   width, height
+ *   long  file size
+ *   int   strand pixels
+ *   short grid size
+ *   short display name length, then {@link #NAME_BYTES} bytes of UTF-8
+ *   grid x grid x {float x, float y, float b} in row-major cell order
+ *   reserved (zero)
+ *   byte  1 if the upload was suppressed as a near-duplicate, else 0 (0 in older records)
+ *   byte  quality tier code (QualityTier), byte inSampleSize; both zero in records
+ *         from before tiers, which read back as FULL at 1
+ *   int   CRC32 of everything above
+ */
+public class SignatureStore {
+
+    public interface Visitor {
+        /** Returns false to stop the scan. */
+        boolean visit(SignatureRecord record);
+    }
+
+    public static final int MAGIC = 0x4E534947; // "NSIG"
+    public static final int VERSION = 1;
+    public static final int GRID_SIZE = ConstellationExtractor.DEFAULT_GRID_SIZE;
+    public static final int RECORD_SIZE = 1024;
+    public static final int NAME_BYTES = 200;
+
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    private static final int HEADER_COUNT_OFFSET = 16;
+    private static final int HEADER_CRC_OFFSET = 24;
+    private static final int NAME_OFFSET = 40;
+    private static final int CELLS_OFFSET = NAME_OFFSET + NAME_BYTES;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int QUALITY_OFFSET = CRC_OFFSET - 2;
+    private static final int UPLOAD_OFFSET = QUALITY_OFFSET - 1;
+    private static final int GROW_RECORDS = 1024;
+
+    private final File file;
+    private final Map<Long, Integer> index = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[RECORD_SIZE];
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int count;
+
+    public SignatureStore(File file) {
+        this.file = file;
+    }
+
+    /** Maps the file, creating it if needed, and rebuilds the id index. */
+    public synchronized void open() throws IOException {
+        boolean fresh = !file.exists() || file.length() < HEADER_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+
+        long records = Math.max(0, (raf.length() - HEADER_SIZE) / RECORD_SIZE);
+        remap((int) Math.max(records, GROW_RECORDS));
+
+        if (fresh) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(8, RECORD_SIZE);
+            map.putInt(12, GRID_SIZE);
+            writeCount(0);
+            map.force();
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != RECORD_SIZE) {
+            close();
+            throw new IOException("Not a signature store: " + file);
+        }
+
+        count = recover();
+        index.clear();
+        for (int slot = 0; slot < count; slot++) {
+            index.put(map.getLong(offsetOf(slot)), slot);
+        }
+    }
+
+    public synchronized void close() {
+        map = null;
+        channel = null;
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+            raf = null;
+        }
+    }
+
+    /**
+     * Durably appends a signature. Returns false if the image id is already stored.
+     */
+    public synchronized boolean append(SignatureRecord record) throws IOException {
+        if (map == null) throw new IOException("Signature store is closed");
+        if (record.gridSize != GRID_SIZE) {
+            throw new IllegalArgumentException("Store holds " + GRID_SIZE + "x" + GRID_SIZE + " grids, got " + record.gridSize);
+        }
+        if (index.containsKey(record.imageId)) return false;
+
+        if (count == capacity) {
+            remap(capacity + GROW_RECORDS);
+        }
+
+        int slot = count;
+        encode(record, slot);
+        map.force();
+
+        writeCount(slot + 1);
+        map.force();
+
+        count = slot + 1;
+        index.put(record.imageId, slot);
+        return true;
+    }
+
+    public synchronized boolean contains(long imageId) {
+        return index.containsKey(imageId);
+    }
+
+    /** Random access by image id; null if not stored. */
+    public synchronized SignatureRecord get(long imageId) {
+        Integer slot = index.get(imageId);
+        return slot != null ? decode(slot) : null;
+    }
+
+    /** Record at the given position in append order. */
+    public synchronized SignatureRecord read(int slot) {
+        if (slot < 0 || slot >= count) {
+            throw new IndexOutOfBoundsException("slot " + slot + " of " + count);
+        }
+        return decode(slot);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Sequential scan in append order, e.g. for bulk re-upload. */
+    public void scan(Visitor visitor) {
+        for (int slot = 0; slot < size(); slot++) {
+            if (!visitor.visit(read(slot))) return;
+        }
+    }
+
+    // ==========================================
+    // FILE
+    // ==========================================
+
+    /** Mapped buffers are int-indexed, which caps the store at about two million records. */
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private void remap(int records) throws IOException {
+        int size = offsetOf(records);
+        if (raf.length() < size) {
+            raf.setLength(size);
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        capacity = records;
+    }
+
+    private void writeCount(long committed) {
+        map.putLong(HEADER_COUNT_OFFSET, committed);
+        crc.reset();
+        for (int i = 0; i < HEADER_COUNT_OFFSET + 8; i++) {
+            crc.update(map.get(i));
+        }
+        map.putInt(HEADER_CRC_OFFSET, (int) crc.getValue());
+    }
+
+    /**
+     * Number of records to trust: the committed count if the header is intact,
+     * cut short at the first record that fails its CRC.
+     */
+    private int recover() {
+        crc.reset();
+        for (int i = 0; i < HEADER_COUNT_OFFSET + 8; i++) {
+            crc.update(map.get(i));
+        }
+        long committed = map.getLong(HEADER_COUNT_OFFSET);
+        boolean headerValid = (int) crc.getValue() == map.getInt(HEADER_CRC_OFFSET);
+        long limit = headerValid ? Math.min(committed, capacity) : capacity;
+
+        int valid = 0;
+        while (valid < limit && recordValid(valid)) {
+            valid++;
+        }
+        if (!headerValid || valid != committed) {
+            writeCount(valid);
+            map.force();
+        }
+        return valid;
+    }
+
+    private boolean recordValid(int slot) {
+        ByteBuffer view = map.duplicate();
+        view.position(offsetOf(slot));
+        view.get(scratch, 0, CRC_OFFSET);
+        crc.reset();
+        crc.update(scratch, 0, CRC_OFFSET);
+        return (int) crc.getValue() == view.getInt();
+    }
+
+    // ==========================================
+    // RECORDS
+    // ==========================================
+
+    private void encode(SignatureRecord record, int slot) {
+        ByteBuffer out = ByteBuffer.wrap(scratch);
+        out.putLong(record.imageId);
+        out.putLong(record.capturedAt);
+        out.putInt(record.width);
+        out.putInt(record.height);
+        out.putLong(record.fileSize);
+        out.putInt(record.strandPixels);
+        out.putShort((short) record.gridSize);
+
+        byte[] name = truncatedName(record.displayName);
+        out.putShort((short) name.length);
+        out.put(name);
+        for (int i = name.length; i < NAME_BYTES; i++) {
+            out.put((byte) 0);
+        }
+
+        int cells = record.gridSize * record.gridSize;
+        for (int cell = 0; cell < cells; cell++) {
+            out.putFloat(record.x[cell]);
+            out.putFloat(record.y[cell]);
+            out.putFloat(record.b[cell]);
+        }
+        while (out.position() < UPLOAD_OFFSET) {
+            out.put((byte) 0);
+        }
+        out.put((byte) (record.uploadSuppressed ? 1 : 0));
+        out.put((byte) record.qualityTier.code);
+        out.put((byte) record.sampleSize);
+
+        crc.reset();
+        crc.update(scratch, 0, CRC_OFFSET);
+        out.putInt((int) crc.getValue());
+
+        ByteBuffer view = map.duplicate();
+        view.position(offsetOf(slot));
+        view.put(scratch);
+    }
+
+    private SignatureRecord decode(int slot) {
+        int offset = offsetOf(slot);
+        long imageId = map.getLong(offset);
+        long capturedAt = map.getLong(offset + 8);
+        int width = map.getInt(offset + 16);
+        int height = map.getInt(offset + 20);
+        long fileSize = map.getLong(offset + 24);
+        int strandPixels = map.getInt(offset + 32);
+        int gridSize = map.getShort(offset + 36);
+
+        int nameLength = map.getShort(offset + 38) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+        ByteBuffer view = map.duplicate();
+        view.position(offset + NAME_OFFSET);
+        view.get(name);
+
+        int cells = gridSize * gridSize;
+        float[] x = new float[cells];
+        float[] y = new float[cells];
+        float[] b = new float[cells];
+        int p = offset + CELLS_OFFSET;
+        for (int cell = 0; cell < cells; cell++, p += 12) {
+            x[cell] = map.getFloat(p);
+            y[cell] = map.getFloat(p + 4);
+            b[cell] = map.getFloat(p + 8);
+        }
+
+        QualityTier tier = QualityTier.forCode(map.get(offset + QUALITY_OFFSET));
+        int sampleSize = Math.max(1, map.get(offset + QUALITY_OFFSET + 1) & 0xFF);
+        boolean uploadSuppressed = map.get(offset + UPLOAD_OFFSET) != 0;
+
+        return new SignatureRecord(imageId, capturedAt, width, height, fileSize, strandPixels,
+                new String(name, StandardCharsets.UTF_8), gridSize, x, y, b, tier, sampleSize, uploadSuppressed);
+    }
+
+    /** UTF-8 name cut to NAME_BYTES without splitting a character. */
+    private static byte[] truncatedName(String displayName) {
+        byte[] bytes = (displayName != null ? displayName : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_BYTES) return bytes;
+
+        int length = NAME_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+}
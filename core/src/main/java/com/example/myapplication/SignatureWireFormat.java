@@ -0,0 +1,124 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact binary encoding of signature batches, sent with CONTENT_TYPE instead of
+ * JSON when the server accepts it (see UploadOutbox).
+ *
+ * Big-endian throughout. Batch: int magic "NSWB", byte version, ushort count, then
+ * count signatures, each prefixed with its ushort length:
+ *
+ *   long image id
+ *   author, device model, timestamp, idempotency key: ushort length + UTF-8
+ *   byte grid, grid*grid stars         constellation, row-major
+ *   byte levels, per level coarsest first: byte grid, grid*grid stars   (0 levels = no pyramid)
+ *
+ * A star is ushort x, ushort y, ubyte b holding the decimals the JSON prints: x and y
+ * as k / 10000 (4 decimals), b as k / 100 (2 decimals), rounded exactly as
+ * SignatureJsonWriter.fixed rounds them. The server divides by 10000 and 100, so a
+ * binary batch decodes to the very numbers its JSON would parse to. Values are
+ * clamped to what fits (x, y to 0..6.5535, b to 0..2.55; signatures stay within
+ * 0..1). The 8x8 constellation is 320 bytes.
+ *
+ * Version 1 scaled x and y by 65535 and b by 255 instead; servers still accept it.
+ */
+public final class SignatureWireFormat {
+
+    public static final String CONTENT_TYPE = "application/x-netra-signatures";
+    public static final int MAGIC = 0x4E535742; // "NSWB"
+    public static final int VERSION = 2;
+    public static final int STAR_BYTES = 5;
+    public static final int XY_DECIMALS = 4;
+    public static final int B_DECIMALS = 2;
+
+    private SignatureWireFormat() {
+    }
+
+    /** One signature, without the length prefix; see encodeBatch. */
+    public static byte[] encode(long imageId, String author, String deviceModel, String timestamp,
+                                String idempotencyKey, SignatureRecord record, ConstellationPyramid pyramid) {
+        byte[][] strings = {utf8(author), utf8(deviceModel), utf8(timestamp), utf8(idempotencyKey)};
+        int size = 8 + 1 + record.gridSize * record.gridSize * STAR_BYTES + 1;
+        for (byte[] s : strings) size += 2 + s.length;
+        if (pyramid != null) {
+            for (int level = 0; level < pyramid.getLevels(); level++) {
+                int grid = pyramid.getGridSize(level);
+                size += 1 + grid * grid * STAR_BYTES;
+            }
+        }
+        if (size > 0xFFFF) {
+            throw new IllegalArgumentException("Signature too large for the wire format: " + size + " bytes");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putLong(imageId);
+        for (byte[] s : strings) {
+            out.putShort((short) s.length);
+            out.put(s);
+        }
+
+        out.put((byte) record.gridSize);
+        for (int cell = 0; cell < record.gridSize * record.gridSize; cell++) {
+            putStar(out, record.x[cell], record.y[cell], record.b[cell]);
+        }
+
+        int levels = pyramid != null ? pyramid.getLevels() : 0;
+        out.put((byte) levels);
+        for (int level = levels - 1; level >= 0; level--) {
+            int grid = pyramid.getGridSize(level);
+            out.put((byte) grid);
+            for (int row = 0; row < grid; row++) {
+                for (int col = 0; col < grid; col++) {
+                    putStar(out, pyramid.getStarX(level, row, col), pyramid.getStarY(level, row, col),
+                            pyramid.getBrightness(level, row, col));
+                }
+            }
+        }
+        return out.array();
+    }
+
+    /** Frames signatures from encode() into one request body. */
+    public static byte[] encodeBatch(List<byte[]> signatures) {
+        if (signatures.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many signatures in one batch: " + signatures.size());
+        }
+        int size = 4 + 1 + 2;
+        for (byte[] signature : signatures) size += 2 + signature.length;
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(size);
+        ByteBuffer header = ByteBuffer.allocate(7);
+        header.putInt(MAGIC).put((byte) VERSION).putShort((short) signatures.size());
+        body.write(header.array(), 0, 7);
+        for (byte[] signature : signatures) {
+            body.write(signature.length >>> 8);
+            body.write(signature.length);
+            body.write(signature, 0, signature.length);
+        }
+        return body.toByteArray();
+    }
+
+    /** k such that the JSON prints value as k / 10^decimals, clamped to 0..max. */
+    static int quantize(float value, int decimals, int max) {
+        if (!(value > 0)) return 0; // also NaN
+        if (value >= max) return max;
+        return (int) Math.min(max, SignatureJsonWriter.scaledMagnitude(value, decimals));
+    }
+
+    private static void putStar(ByteBuffer out, float x, float y, float b) {
+        out.putShort((short) quantize(x, XY_DECIMALS, 0xFFFF));
+        out.putShort((short) quantize(y, XY_DECIMALS, 0xFFFF));
+        out.put((byte) quantize(b, B_DECIMALS, 0xFF));
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for the wire format");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Strands decoded from a binary strand file, with an exporter to the old text layout. */
+public class StrandData {
+
+    private static final String[] TITLES = {"STRAND 1: BOTTOM", "STRAND 2: MIDDLE", "STRAND 3: TOP"};
+    private static final String[] PERCENTS = {"15%", "50%", "80%"};
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    public final int version;
+    public final int layout;
+    public final long imageId;
+    public final int width;
+    public final int height;
+    /** Longest strand length before clipping (the strand height for the 3 vertical layout). */
+    public final int strandHeight;
+    public final long fileSize;
+    public final String displayName;
+    public final String uri;
+    public final String timestamp;
+    public final String capturedBy;
+
+    public final StrandLayout.Direction[] direction;
+    public final int[] x;
+    public final int[] yStart;
+    /** RGB pixels per strand, pixels[s][i] is i steps along direction[s] from (x[s], yStart[s]). */
+    public final int[][] pixels;
+
+    StrandData(int version, int layout, long imageId, int width, int height, int strandHeight, long fileSize,
+               String displayName, String uri, String timestamp, String capturedBy,
+               StrandLayout.Direction[] direction, int[] x, int[] yStart, int[][] pixels) {
+        this.version = version;
+        this.layout = layout;
+        this.imageId = imageId;
+        this.width = width;
+        this.height = height;
+        this.strandHeight = strandHeight;
+        this.fileSize = fileSize;
+        this.displayName = displayName;
+        this.uri = uri;
+        this.timestamp = timestamp;
+        this.capturedBy = capturedBy;
+        this.direction = direction;
+        this.x = x;
+        this.yStart = yStart;
+        this.pixels = pixels;
+    }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (int[] strand : pixels) total += strand.length;
+        return total;
+    }
+
+    /**
+     * Writes the pre-binary pixel_strands_ID.txt layout, for debugging. Other strand
+     * layouts get the same layout with their own strand titles.
+     */
+    public void writeText(Writer writer) throws IOException {
+        boolean threeVertical = layout == StrandLayout.THREE_VERTICAL.getId();
+        StrandLayout known = StrandLayout.forId(layout);
+
+        writer.write("==============================================\n");
+        writer.write(threeVertical ? "3 VERTICAL PIXEL STRANDS\n"
+                : pixels.length + " PIXEL STRANDS (LAYOUT " + (known != null ? known.getName() : String.valueOf(layout)) + ")\n");
+        writer.write("==============================================\n\n");
+        writer.write("Image ID: " + imageId + "\n");
+        writer.write("File Name: " + displayName + "\n");
+        writer.write("Image Dimensions: " + width + " x " + height + " pixels\n");
+        writer.write("File Size: " + String.format("%.2f MB", fileSize / (1024.0 * 1024.0)) + "\n");
+        writer.write("URI: " + uri + "\n");
+        writer.write("Captured At: " + timestamp + "\n");
+        writer.write("Captured By: " + capturedBy + "\n");
+        if (threeVertical) {
+            writer.write("Total Strands: 3 (Vertical)\n");
+            writer.write("Strand Height: " + (height / 3) + " pixels each\n");
+        } else {
+            writer.write("Total Strands: " + pixels.length + "\n");
+        }
+        writer.write("Format: X,Y,RGB,HEX\n");
+        writer.write("\n==============================================\n\n");
+
+        StringBuilder line = new StringBuilder(48);
+        for (int s = 0; s < pixels.length; s++) {
+            int stepX = direction[s].stepX;
+            int stepY = direction[s].stepY;
+            if (threeVertical) {
+                writer.write("--- " + TITLES[s] + " (X=" + x[s] + ", " + PERCENTS[s] + " from left) ---\n");
+                writer.write("Start: (" + x[s] + "," + yStart[s] + ") | End: (" + x[s] + "," + (yStart[s] + strandHeight - 1) + ")\n\n");
+            } else {
+                int last = Math.max(0, pixels[s].length - 1);
+                String label = known != null && s < known.getStrandCount() ? known.getStrand(s).label : direction[s].name();
+                writer.write("--- STRAND " + (s + 1) + ": " + label + " (" + direction[s] + ") ---\n");
+                writer.write("Start: (" + x[s] + "," + yStart[s] + ") | End: (" + (x[s] + last * stepX) + ","
+                        + (yStart[s] + last * stepY) + ")\n\n");
+            }
+
+            for (int i = 0; i < pixels[s].length; i++) {
+                int pixel = pixels[s][i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+
+                line.setLength(0);
+                line.append("X=").append(x[s] + i * stepX).append(",Y=").append(yStart[s] + i * stepY)
+                        .append(",RGB(").append(r).append(',').append(g).append(',').append(b).append("),#");
+                appendHex(line, r);
+                appendHex(line, g);
+                appendHex(line, b);
+                line.append('\n');
+                writer.append(line);
+            }
+            writer.write("\n");
+        }
+
+        writer.write("==============================================\n");
+        writer.write("EXTRACTION SUMMARY\n");
+        writer.write("==============================================\n");
+        for (int s = 0; s < pixels.length; s++) {
+            writer.write("Strand " + (s + 1) + " pixels: " + pixels[s].length + "\n");
+        }
+        writer.write("Total pixels extracted: " + getTotalCount() + "\n");
+        writer.write("==============================================\n");
+    }
+
+    private static void appendHex(StringBuilder sb, int value) {
+        sb.append(HEX[value >> 4]).append(HEX[value & 0xF]);
+    }
+}
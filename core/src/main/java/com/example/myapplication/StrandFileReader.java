@@ -0,0 +1,128 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/** Reads files written by StrandFileWriter, checking magic, version and CRC. */
+public final class StrandFileReader {
+
+    private StrandFileReader() {
+    }
+
+    public static StrandData read(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileInputStream fis = new FileInputStream(file);
+             FileChannel channel = fis.getChannel()) {
+            long size = channel.size();
+            if (size < 8 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a strand file: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new IOException("Unexpected end of " + file);
+            }
+            buffer.flip();
+        }
+        return decode(buffer);
+    }
+
+    public static StrandData decode(ByteBuffer buffer) throws IOException {
+        int end = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset(), end);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Strand file CRC mismatch");
+        }
+        buffer.limit(end);
+
+        try {
+            if (buffer.getInt() != StrandFileWriter.MAGIC) {
+                throw new IOException("Bad strand file magic");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version < 1 || version > StrandFileWriter.VERSION) {
+                throw new IOException("Unsupported strand file version " + version);
+            }
+            int layout = buffer.get() & 0xFF;
+            int strandCount = buffer.getShort() & 0xFFFF;
+            long imageId = buffer.getLong();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int strandLength = buffer.getInt();
+            long fileSize = buffer.getLong();
+            String displayName = getString(buffer);
+            String uri = getString(buffer);
+            String timestamp = getString(buffer);
+            String capturedBy = getString(buffer);
+
+            StrandLayout.Direction[] directions = StrandLayout.Direction.values();
+            StrandLayout.Direction[] direction = new StrandLayout.Direction[strandCount];
+            int[] x = new int[strandCount];
+            int[] yStart = new int[strandCount];
+            int[][] pixels = new int[strandCount][];
+            for (int s = 0; s < strandCount; s++) {
+                int d = version >= 2 ? buffer.get() & 0xFF : StrandLayout.Direction.COLUMN.ordinal();
+                if (d >= directions.length) throw new IOException("Unknown strand direction " + d);
+                direction[s] = directions[d];
+                x[s] = buffer.getInt();
+                yStart[s] = buffer.getInt();
+                pixels[s] = decodeStrand(buffer, buffer.getInt());
+            }
+
+            return new StrandData(version, layout, imageId, width, height, strandLength, fileSize,
+                    displayName, uri, timestamp, capturedBy, direction, x, yStart, pixels);
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Truncated strand file", e);
+        }
+    }
+
+    private static int[] decodeStrand(ByteBuffer buffer, int count) throws IOException {
+        int[] out = new int[count];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+
+        for (int i = 0; i < count; ) {
+            int op = buffer.get() & 0xFF;
+
+            if (op == StrandFileWriter.OP_RGB) {
+                r = buffer.get() & 0xFF;
+                g = buffer.get() & 0xFF;
+                b = buffer.get() & 0xFF;
+            } else if ((op & 0xC0) == StrandFileWriter.OP_RUN) {
+                int run = (op & 0x3F) + 1;
+                if (i + run > count) throw new IOException("Strand run overflows pixel count");
+                int pixel = 0xFF000000 | (r << 16) | (g << 8) | b;
+                for (int k = 0; k < run; k++) out[i++] = pixel;
+                continue;
+            } else if ((op & 0xC0) == StrandFileWriter.OP_DIFF) {
+                r = (r + ((op >> 4) & 0x03) - 2) & 0xFF;
+                g = (g + ((op >> 2) & 0x03) - 2) & 0xFF;
+                b = (b + (op & 0x03) - 2) & 0xFF;
+            } else if ((op & 0xC0) == StrandFileWriter.OP_LUMA) {
+                int dg = (op & 0x3F) - 32;
+                int rb = buffer.get() & 0xFF;
+                r = (r + dg + (rb >> 4) - 8) & 0xFF;
+                g = (g + dg) & 0xFF;
+                b = (b + dg + (rb & 0x0F) - 8) & 0xFF;
+            } else {
+                throw new IOException("Unknown strand op 0x" + Integer.toHexString(op));
+            }
+            out[i++] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        return out;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) throw new java.nio.BufferUnderflowException();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Writes sampled strands in the compact binary strand format (pixel_strands_ID.bin).
+ *
+ * Layout, big-endian:
+ *   int    magic "NSTR"
+ *   byte   version
+ *   byte   layout id (see StrandLayout; 0 = 3 vertical strands)
+ *   short  strand count
+ *   long   image id
+ *   int    width, height, longest strand length
+ *   long   file size
+ *   string display name, uri, timestamp, captured by   (ushort length + UTF-8)
+ *   per strand: byte direction (StrandLayout.Direction ordinal), int x, int y of
+ *               the first pixel, int pixel count, then the encoded pixels
+ *   int    CRC32 of everything above
+ *
+ * Version 1 files have no direction byte; all their strands are columns.
+ *
+ * Pixels are RGB only, encoded against the previous pixel of the same strand
+ * (starting from black):
+ *   00nnnnnn           run of n + 1 repeats of the previous pixel
+ *   01rrggbb           dr, dg, db each in -2..1
+ *   10gggggg rrrrbbbb  dg in -32..31, dr - dg and db - dg in -8..7
+ *   11111111 r g b     raw pixel
+ *
+ * One instance reuses its buffer and CRC across photos, so writing a photo
+ * allocates nothing per pixel. Not thread-safe.
+ */
+public class StrandFileWriter {
+
+    public static final int MAGIC = 0x4E535452; // "NSTR"
+    public static final int VERSION = 2;
+    public static final int LAYOUT_3_VERTICAL = 0; // StrandLayout.THREE_VERTICAL
+
+    static final int OP_RUN = 0x00;
+    static final int OP_DIFF = 0x40;
+    static final int OP_LUMA = 0x80;
+    static final int OP_RGB = 0xFF;
+    static final int MAX_RUN = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+
+    public void write(File file, long imageId, String displayName, String uri, String timestamp,
+                      String capturedBy, long fileSize, StrandSampler strands) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            channel = fos.getChannel();
+            buffer.clear();
+            crc.reset();
+
+            buffer.putInt(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.put((byte) strands.getLayout().getId());
+            buffer.putShort((short) strands.getStrandCount());
+            buffer.putLong(imageId);
+            buffer.putInt(strands.getWidth());
+            buffer.putInt(strands.getHeight());
+            buffer.putInt(strands.getStrandLength());
+            buffer.putLong(fileSize);
+            putString(displayName);
+            putString(uri);
+            putString(timestamp);
+            putString(capturedBy);
+
+            for (int s = 0; s < strands.getStrandCount(); s++) {
+                ensure(13);
+                buffer.put((byte) strands.getDirection(s).ordinal());
+                buffer.putInt(strands.getX(s));
+                buffer.putInt(strands.getYStart(s));
+                buffer.putInt(strands.getCount(s));
+                encodeStrand(strands, s);
+            }
+
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            channel = null;
+            buffer.clear();
+        }
+    }
+
+    private void encodeStrand(StrandSampler strands, int s) throws IOException {
+        int prev = 0;
+        int run = 0;
+        int count = strands.getCount(s);
+
+        for (int i = 0; i < count; i++) {
+            int pixel = strands.getPixel(s, i) & 0xFFFFFF;
+
+            if (pixel == prev) {
+                run++;
+                if (run == MAX_RUN) {
+                    ensure(1);
+                    buffer.put((byte) (OP_RUN | (run - 1)));
+                    run = 0;
+                }
+                continue;
+            }
+            ensure(5);
+            if (run > 0) {
+                buffer.put((byte) (OP_RUN | (run - 1)));
+                run = 0;
+            }
+
+            int dr = (byte) (((pixel >> 16) & 0xFF) - ((prev >> 16) & 0xFF));
+            int dg = (byte) (((pixel >> 8) & 0xFF) - ((prev >> 8) & 0xFF));
+            int db = (byte) ((pixel & 0xFF) - (prev & 0xFF));
+            int drg = dr - dg;
+            int dbg = db - dg;
+
+            if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                buffer.put((byte) (OP_DIFF | ((dr + 2) << 4) | ((dg + 2) << 2) | (db + 2)));
+            } else if (dg >= -32 && dg <= 31 && drg >= -8 && drg <= 7 && dbg >= -8 && dbg <= 7) {
+                buffer.put((byte) (OP_LUMA | (dg + 32)));
+                buffer.put((byte) (((drg + 8) << 4) | (dbg + 8)));
+            } else {
+                buffer.put((byte) OP_RGB);
+                buffer.put((byte) (pixel >> 16));
+                buffer.put((byte) (pixel >> 8));
+                buffer.put((byte) pixel);
+            }
+            prev = pixel;
+        }
+
+        if (run > 0) {
+            ensure(1);
+            buffer.put((byte) (OP_RUN | (run - 1)));
+        }
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        ensure(2);
+        buffer.putShort((short) length);
+        for (int off = 0; off < length; ) {
+            ensure(1);
+            int n = Math.min(length - off, buffer.remaining());
+            buffer.put(bytes, off, n);
+            off += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /** Writes the buffered bytes to the channel, adding them to the CRC. */
+    private void flush() throws IOException {
+        buffer.flip();
+        int start = buffer.position();
+        crc.update(buffer);
+        buffer.position(start);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication;
+
+/**
+ * Declarative set of pixel strands: for each strand a direction, a position
+ * across it and an extent along it, all relative to the displayed frame.
+ * StrandSampler resolves a layout against the image size and samples every
+ * strand in the same pass.
+ *
+ * The layout id is written to each strand file so a verifier knows which strands
+ * to compare. Ids are stable; add new layouts rather than changing existing ones.
+ *
+ * Placement of one strand in a display W x H frame, along its run axis of size
+ * S (height for a column or diagonal, width for a row):
+ *   length = S * spanNum / spanDen
+ *   start  = (int) ((S - length) * anchor)       0 = top/left, 1 = bottom/right
+ *   cross  = min((int) (crossSize * position), crossSize - 1)
+ *                                                x for columns and diagonals, y for rows
+ * A diagonal starts at (cross, start) and stops early where it leaves the frame.
+ */
+public final class StrandLayout {
+
+    public enum Direction {
+        /** Top to bottom at a fixed x. */
+        COLUMN(0, 1),
+        /** Left to right at a fixed y. */
+        ROW(1, 0),
+        /** Top-left to bottom-right. */
+        DIAGONAL_DOWN_RIGHT(1, 1),
+        /** Top-right to bottom-left. */
+        DIAGONAL_DOWN_LEFT(-1, 1);
+
+        public final int stepX;
+        public final int stepY;
+
+        Direction(int stepX, int stepY) {
+            this.stepX = stepX;
+            this.stepY = stepY;
+        }
+    }
+
+    public static final class Strand {
+        public final Direction direction;
+        public final double position;
+        public final int spanNum;
+        public final int spanDen;
+        public final double anchor;
+        public final String label;
+
+        Strand(Direction direction, double position, int spanNum, int spanDen, double anchor, String label) {
+            if (position < 0 || position > 1 || anchor < 0 || anchor > 1 || spanNum < 1 || spanDen < spanNum) {
+                throw new IllegalArgumentException("Bad strand " + label);
+            }
+            this.direction = direction;
+            this.position = position;
+            this.spanNum = spanNum;
+            this.spanDen = spanDen;
+            this.anchor = anchor;
+            this.label = label;
+        }
+    }
+
+    /** The original layout: columns at 15/50/80% of the width over the bottom, middle and top thirds. */
+    public static final StrandLayout THREE_VERTICAL = new StrandLayout(0, "3V",
+            column(0.15, 1, 3, 1.0, "Bottom"),
+            column(0.50, 1, 3, 0.5, "Middle"),
+            column(0.80, 1, 3, 0.0, "Top"));
+
+    /** Full-length rows and columns at the thirds plus both corner-to-corner diagonals. */
+    public static final StrandLayout GRID_AND_DIAGONALS = new StrandLayout(1, "2H2V2D",
+            row(1 / 3.0, 1, 1, 0, "Row 1/3"),
+            row(2 / 3.0, 1, 1, 0, "Row 2/3"),
+            column(1 / 3.0, 1, 1, 0, "Column 1/3"),
+            column(2 / 3.0, 1, 1, 0, "Column 2/3"),
+            diagonal(true, 0, 1, 1, 0, "Diagonal TL-BR"),
+            diagonal(false, 1, 1, 1, 0, "Diagonal TR-BL"));
+
+    private static final StrandLayout[] KNOWN = {THREE_VERTICAL, GRID_AND_DIAGONALS};
+
+    private final int id;
+    private final String name;
+    private final Strand[] strands;
+
+    public StrandLayout(int id, String name, Strand... strands) {
+        if (id < 0 || id > 0xFF) throw new IllegalArgumentException("Layout id must fit in a byte, got " + id);
+        if (strands.length == 0 || strands.length > 0xFFFF) {
+            throw new IllegalArgumentException("Layout needs 1..65535 strands, got " + strands.length);
+        }
+        this.id = id;
+        this.name = name;
+        this.strands = strands.clone();
+    }
+
+    public static Strand column(double x, int spanNum, int spanDen, double anchor, String label) {
+        return new Strand(Direction.COLUMN, x, spanNum, spanDen, anchor, label);
+    }
+
+    public static Strand row(double y, int spanNum, int spanDen, double anchor, String label) {
+        return new Strand(Direction.ROW, y, spanNum, spanDen, anchor, label);
+    }
+
+    public static Strand diagonal(boolean downRight, double x, int spanNum, int spanDen, double anchor, String label) {
+        return new Strand(downRight ? Direction.DIAGONAL_DOWN_RIGHT : Direction.DIAGONAL_DOWN_LEFT,
+                x, spanNum, spanDen, anchor, label);
+    }
+
+    /** A built-in layout by id, or null. */
+    public static StrandLayout forId(int id) {
+        for (StrandLayout layout : KNOWN) {
+            if (layout.id == id) return layout;
+        }
+        return null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStrandCount() {
+        return strands.length;
+    }
+
+    public Strand getStrand(int index) {
+        return strands[index];
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.myapplication;
+
+/**
+ * Collects the pixel strands of a StrandLayout while the image streams past.
+ *
+ * Each strand is resolved against the reported display size into a start point,
+ * a direction and a pixel count (see StrandLayout for the placement rules). The
+ * default layout is {@link StrandLayout#THREE_VERTICAL}:
+ *  - Strand 1: X = 15% of width, bottom third of the height
+ *  - Strand 2: X = 50% of width, middle third
+ *  - Strand 3: X = 80% of width, top third
+ *
+ * Positions are in the displayed frame. Every EXIF orientation maps a display
+ * line to a stored line, so each strand becomes a start offset and a fixed step in
+ * the stored band: a strand that lies in one stored row is copied with
+ * System.arraycopy (or reversed), any other strand is read with one pointer that
+ * advances by its step. All strands, of any direction, share the same pass.
+ */
+public class StrandSampler implements RowConsumer {
+
+    private final StrandLayout layout;
+    private final int width;
+    private final int height;
+    private final int strandLength;
+    private final int[] x;
+    private final int[] yStart;
+    private final int[] count;
+    private final int[][] samples;
+
+    // Each strand in the stored frame: start (storedX, storedY) and step per pixel
+    private final int[] storedX;
+    private final int[] storedY;
+    private final int[] stepX;
+    private final int[] stepY;
+
+    /**
+     * @param width       width the strand positions are computed from (MediaStore or decoded)
+     * @param height      height the strand positions are computed from
+     * @param imageWidth  width of the pixels that will actually be fed
+     * @param imageHeight height of the pixels that will actually be fed
+     */
+    public StrandSampler(int width, int height, int imageWidth, int imageHeight) {
+        this(width, height, imageWidth, imageHeight, ImageOrientation.NORMAL);
+    }
+
+    public StrandSampler(int storedWidth, int storedHeight, int imageWidth, int imageHeight, ImageOrientation orientation) {
+        this(storedWidth, storedHeight, imageWidth, imageHeight, orientation, StrandLayout.THREE_VERTICAL);
+    }
+
+    /**
+     * @param storedWidth  stored width the strand positions are computed from (MediaStore or decoded)
+     * @param storedHeight stored height the strand positions are computed from
+     * @param imageWidth   stored width of the pixels that will actually be fed
+     * @param imageHeight  stored height of the pixels that will actually be fed
+     * @param orientation  how the stored frame is displayed
+     * @param layout       which strands to sample
+     */
+    public StrandSampler(int storedWidth, int storedHeight, int imageWidth, int imageHeight,
+                         ImageOrientation orientation, StrandLayout layout) {
+        this.layout = layout;
+        this.width = orientation.displayWidth(storedWidth, storedHeight);
+        this.height = orientation.displayHeight(storedWidth, storedHeight);
+        int displayImageWidth = orientation.displayWidth(imageWidth, imageHeight);
+        int displayImageHeight = orientation.displayHeight(imageWidth, imageHeight);
+
+        int strands = layout.getStrandCount();
+        x = new int[strands];
+        yStart = new int[strands];
+        count = new int[strands];
+        samples = new int[strands][];
+        storedX = new int[strands];
+        storedY = new int[strands];
+        stepX = new int[strands];
+        stepY = new int[strands];
+
+        int longest = 0;
+        for (int s = 0; s < strands; s++) {
+            StrandLayout.Strand strand = layout.getStrand(s);
+            StrandLayout.Direction direction = strand.direction;
+            boolean row = direction == StrandLayout.Direction.ROW;
+            int runSize = row ? width : height;
+            int crossSize = row ? height : width;
+
+            int length = (int) ((long) runSize * strand.spanNum / strand.spanDen);
+            int start = (int) ((runSize - length) * strand.anchor);
+            int cross = Math.max(0, Math.min((int) (crossSize * strand.position), crossSize - 1));
+            longest = Math.max(longest, length);
+
+            x[s] = row ? start : cross;
+            yStart[s] = row ? cross : start;
+            int n = Math.max(0, Math.min(length, runSize - start));
+            if (direction.stepX > 0 && direction.stepY > 0) {
+                n = Math.min(n, width - x[s]);
+            } else if (direction.stepX < 0) {
+                n = Math.min(n, x[s] + 1);
+            }
+            count[s] = Math.max(0, n);
+
+            if (count[s] > 0) {
+                int lastX = x[s] + (count[s] - 1) * direction.stepX;
+                int lastY = yStart[s] + (count[s] - 1) * direction.stepY;
+                if (!inside(x[s], yStart[s], displayImageWidth, displayImageHeight)
+                        || !inside(lastX, lastY, displayImageWidth, displayImageHeight)) {
+                    throw new IllegalArgumentException("Strand " + (s + 1) + " at (" + x[s] + "," + yStart[s]
+                            + ") lies outside the " + displayImageWidth + "x" + displayImageHeight + " image");
+                }
+
+                // Display lines map to stored lines, so two points give the stored step
+                storedX[s] = orientation.toStoredX(x[s], yStart[s], imageWidth, imageHeight);
+                storedY[s] = orientation.toStoredY(x[s], yStart[s], imageWidth, imageHeight);
+                stepX[s] = orientation.toStoredX(x[s] + direction.stepX, yStart[s] + direction.stepY, imageWidth, imageHeight) - storedX[s];
+                stepY[s] = orientation.toStoredY(x[s] + direction.stepX, yStart[s] + direction.stepY, imageWidth, imageHeight) - storedY[s];
+            }
+            samples[s] = new int[count[s]];
+        }
+        this.strandLength = longest;
+    }
+
+    private static boolean inside(int px, int py, int w, int h) {
+        return px >= 0 && px < w && py >= 0 && py < h;
+    }
+
+    @Override
+    public void acceptRows(int y0, int rowCount, int[] pixels, int offset, int stride) {
+        int y1 = y0 + rowCount;
+        for (int s = 0; s < count.length; s++) {
+            int n = count[s];
+            if (n == 0) continue;
+            int[] dst = samples[s];
+            int sx = storedX[s];
+            int sy = storedY[s];
+            int dx = stepX[s];
+            int dy = stepY[s];
+
+            if (dy == 0) {
+                // The whole strand is one stored row
+                if (sy < y0 || sy >= y1) continue;
+                int rowStart = offset + (sy - y0) * stride;
+                if (dx == 1) {
+                    System.arraycopy(pixels, rowStart + sx, dst, 0, n);
+                } else {
+                    for (int i = 0, p = rowStart + sx; i < n; i++, p--) {
+                        dst[i] = pixels[p];
+                    }
+                }
+                continue;
+            }
+
+            // Pixels i in [from, to) have their stored row inside this band
+            int from;
+            int to;
+            if (dy > 0) {
+                from = Math.max(0, y0 - sy);
+                to = Math.min(n, y1 - sy);
+            } else {
+                from = Math.max(0, sy - y1 + 1);
+                to = Math.min(n, sy - y0 + 1);
+            }
+            int step = dy * stride + dx;
+            for (int i = from, p = offset + (sy + from * dy - y0) * stride + sx + from * dx; i < to; i++, p += step) {
+                dst[i] = pixels[p];
+            }
+        }
+    }
+
+    public StrandLayout getLayout() {
+        return layout;
+    }
+
+    public int getStrandCount() {
+        return count.length;
+    }
+
+    /** Display width the strand positions come from. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Display height the strand positions come from. */
+    public int getHeight() {
+        return height;
+    }
+
+    /** Length of the longest strand before clipping; the strand height for THREE_VERTICAL. */
+    public int getStrandLength() {
+        return strandLength;
+    }
+
+    public StrandLayout.Direction getDirection(int strand) {
+        return layout.getStrand(strand).direction;
+    }
+
+    /** Display x of the strand's first pixel. */
+    public int getX(int strand) {
+        return x[strand];
+    }
+
+    /** Display y of the strand's first pixel. */
+    public int getYStart(int strand) {
+        return yStart[strand];
+    }
+
+    public int getCount(int strand) {
+        return count[strand];
+    }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (int n : count) total += n;
+        return total;
+    }
+
+    /** ARGB pixel i of the strand, i.e. the pixel i steps along its direction from (getX, getYStart). */
+    public int getPixel(int strand, int i) {
+        return samples[strand][i];
+    }
+}
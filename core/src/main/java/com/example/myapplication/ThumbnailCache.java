@@ -0,0 +1,291 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier LRU of photo thumbnails by image ID, for scrolling through past captures.
+ *
+ * The memory tier holds decoded thumbnails up to memoryBytes; the disk tier holds
+ * one encoded file per image (ID.thumb) up to diskBytes. get() tries memory, then
+ * disk (promoting the thumbnail back into memory), and counts which tier answered.
+ * Both tiers evict least recently used first. Disk recency survives restarts
+ * through file modification times, which get() refreshes.
+ *
+ * Memory hits, disk hits, misses and disk evictions are counted; recordTo() also
+ * feeds them into Metrics counters NAME.memory_hits / disk_hits / misses / evictions.
+ */
+public class ThumbnailCache<T> {
+
+    public interface Codec<T> {
+        /** Bytes the decoded thumbnail holds in memory. */
+        long sizeOf(T thumbnail);
+
+        byte[] encode(T thumbnail) throws IOException;
+
+        /** The thumbnail, or null if the bytes can't be decoded. */
+        T decode(byte[] bytes) throws IOException;
+    }
+
+    private static final String SUFFIX = ".thumb";
+
+    private final String name;
+    private final File directory;
+    private final long memoryBytes;
+    private final long diskBytes;
+    private final Codec<T> codec;
+
+    // Both access-ordered, least recently used first; guarded by this
+    private final LinkedHashMap<Long, T> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Long, Long> disk = new LinkedHashMap<>(256, 0.75f, true); // id -> file bytes
+    private long memoryUsed;
+    private long diskUsed;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile Metrics.Counter memoryHitCounter;
+    private volatile Metrics.Counter diskHitCounter;
+    private volatile Metrics.Counter missCounter;
+    private volatile Metrics.Counter evictionCounter;
+
+    public ThumbnailCache(String name, File directory, long memoryBytes, long diskBytes, Codec<T> codec) {
+        this.name = name;
+        this.directory = directory;
+        this.memoryBytes = memoryBytes;
+        this.diskBytes = diskBytes;
+        this.codec = codec;
+    }
+
+    /** Counts lookups and evictions as NAME.memory_hits, NAME.disk_hits, NAME.misses and NAME.evictions. */
+    public ThumbnailCache<T> recordTo(Metrics metrics) {
+        this.memoryHitCounter = metrics.counter(name + ".memory_hits");
+        this.diskHitCounter = metrics.counter(name + ".disk_hits");
+        this.missCounter = metrics.counter(name + ".misses");
+        this.evictionCounter = metrics.counter(name + ".evictions");
+        return this;
+    }
+
+    /** Indexes the thumbnails already on disk, oldest first, and trims them to the budget. */
+    public void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create thumbnail directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) files = new File[0];
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            disk.clear();
+            diskUsed = 0;
+            for (File file : files) {
+                long imageId = imageIdOf(file.getName());
+                if (imageId < 0) {
+                    if (file.getName().endsWith(".tmp")) evicted.add(file); // interrupted put()
+                    continue;
+                }
+                disk.put(imageId, file.length());
+                diskUsed += file.length();
+            }
+            trimDisk(evicted);
+        }
+        delete(evicted);
+    }
+
+    /** Cached thumbnail, or null (counted as a miss). */
+    public T get(long imageId) {
+        boolean onDisk;
+        synchronized (this) {
+            T thumbnail = memory.get(imageId);
+            if (thumbnail != null) {
+                count(memoryHits, memoryHitCounter);
+                return thumbnail;
+            }
+            onDisk = disk.get(imageId) != null; // also marks it recently used
+        }
+
+        T thumbnail = null;
+        if (onDisk) {
+            File file = fileFor(imageId);
+            try {
+                thumbnail = codec.decode(readFile(file));
+                file.setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                // Deleted by a concurrent eviction, or unreadable
+            }
+            if (thumbnail == null) remove(imageId);
+        }
+
+        if (thumbnail == null) {
+            count(misses, missCounter);
+            return null;
+        }
+        count(diskHits, diskHitCounter);
+        putInMemory(imageId, thumbnail);
+        return thumbnail;
+    }
+
+    /** Stores the thumbnail in both tiers, replacing any earlier one for the ID. */
+    public void put(long imageId, T thumbnail) throws IOException {
+        putInMemory(imageId, thumbnail);
+
+        byte[] bytes = codec.encode(thumbnail);
+        File file = fileFor(imageId);
+        File tmp = new File(directory, imageId + SUFFIX + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+
+        List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = disk.put(imageId, (long) bytes.length);
+            if (previous != null) diskUsed -= previous;
+            diskUsed += bytes.length;
+            trimDisk(evicted);
+        }
+        delete(evicted);
+    }
+
+    public void remove(long imageId) {
+        boolean onDisk;
+        synchronized (this) {
+            T thumbnail = memory.remove(imageId);
+            if (thumbnail != null) memoryUsed -= codec.sizeOf(thumbnail);
+            Long bytes = disk.remove(imageId);
+            onDisk = bytes != null;
+            if (onDisk) diskUsed -= bytes;
+        }
+        if (onDisk) fileFor(imageId).delete();
+    }
+
+    /** Drops the memory tier, e.g. when the system is short of memory; the disk tier stays. */
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryUsed = 0;
+    }
+
+    public synchronized int getMemoryCount() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryUsed;
+    }
+
+    public synchronized int getDiskCount() {
+        return disk.size();
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskUsed;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Fraction of lookups answered by either tier. */
+    public double getHitRate() {
+        long h = memoryHits.get() + diskHits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public String describe() {
+        return String.format(Locale.US, "%s mem=%d (%.1f/%.1f MB) disk=%d (%.1f/%.1f MB) hit=%d+%d miss=%d (%.0f%%) evict=%d",
+                name, getMemoryCount(), getMemoryBytes() / (1024.0 * 1024.0), memoryBytes / (1024.0 * 1024.0),
+                getDiskCount(), getDiskBytes() / (1024.0 * 1024.0), diskBytes / (1024.0 * 1024.0),
+                memoryHits.get(), diskHits.get(), misses.get(), getHitRate() * 100, evictions.get());
+    }
+
+    private void putInMemory(long imageId, T thumbnail) {
+        long size = codec.sizeOf(thumbnail);
+        synchronized (this) {
+            T previous = memory.remove(imageId);
+            if (previous != null) memoryUsed -= codec.sizeOf(previous);
+            if (size > memoryBytes) return;
+
+            memory.put(imageId, thumbnail);
+            memoryUsed += size;
+            Iterator<Map.Entry<Long, T>> eldest = memory.entrySet().iterator();
+            while (memoryUsed > memoryBytes && eldest.hasNext()) {
+                memoryUsed -= codec.sizeOf(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    /** Drops least recently used files past the disk budget; the caller deletes them outside the lock. */
+    private void trimDisk(List<File> evicted) {
+        Iterator<Map.Entry<Long, Long>> eldest = disk.entrySet().iterator();
+        while (diskUsed > diskBytes && eldest.hasNext()) {
+            Map.Entry<Long, Long> entry = eldest.next();
+            diskUsed -= entry.getValue();
+            evicted.add(fileFor(entry.getKey()));
+            eldest.remove();
+            count(evictions, evictionCounter);
+        }
+    }
+
+    private void delete(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File fileFor(long imageId) {
+        return new File(directory, imageId + SUFFIX);
+    }
+
+    /** Image ID of an ID.thumb file name, or -1. */
+    private static long imageIdOf(String fileName) {
+        if (!fileName.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    private static void count(AtomicLong total, Metrics.Counter counter) {
+        total.incrementAndGet();
+        if (counter != null) counter.inc();
+    }
+}
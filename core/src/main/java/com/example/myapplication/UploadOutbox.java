@@ -0,0 +1,504 @@
+package com.example.myapplication;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue of signatures waiting to be registered with the server.
+ *
+ * Every signature is appended to an on-disk journal before upload and only
+ * forgotten once the server acknowledges it, so captures made offline (or
+ * before a crash) are sent on the next run. A single sender thread drains the
+ * journal in batches to the batch-register endpoint, reusing the keep-alive
+ * connection and backing off exponentially while the network is down.
+ *
+ * Journal record: int length, byte type, long image id, ushort key length,
+ * key, payload, int CRC32 of type..payload. The payload is UTF-8 JSON, or for
+ * TYPE_ENQUEUE_BINARY int JSON length, JSON, then the SignatureWireFormat
+ * encoding. A torn record at the end (crash mid-write) is dropped on replay.
+ *
+ * With preferBinary set, batches whose entries all have a binary encoding are
+ * sent as SignatureWireFormat.CONTENT_TYPE. A 415 reply to a binary batch switches
+ * this outbox back to JSON for good, and the batch is resent at once.
+ *
+ * A 2xx reply acknowledges the whole batch. Its body may list entries the server
+ * refused on their own ("rejected": [indexes into the batch]); those can never
+ * succeed, so they are dropped and reported to onUploadFailed with no retry. Any
+ * other reply, 4xx included (a wrong URL, expired credentials, a proxy that limits
+ * the body size), says nothing about the entries themselves: the batch stays queued
+ * and is retried with backoff. A 413 also halves the batch size.
+ *
+ * Each POST is timed into the upload.post timer, and batch outcomes are counted
+ * in upload.batches.ok / failed, upload.signatures and upload.signatures.rejected.
+ */
+public class UploadOutbox {
+
+    public interface Listener {
+        void onBatchUploaded(int count, int pending);
+
+        void onUploadFailed(Exception e, long retryInMs);
+    }
+
+    private static final byte TYPE_ENQUEUE = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final byte TYPE_ENQUEUE_BINARY = 3;
+    private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int MAX_RESPONSE_BYTES = 1024 * 1024;
+
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final File journal;
+    private final URL endpoint;
+    private final int batchSize;
+    private final Listener listener;
+    private final Metrics.Timer postTimer;
+    private final Metrics.Counter batchesOk;
+    private final Metrics.Counter batchesFailed;
+    private final Metrics.Counter signaturesUploaded;
+    private final Metrics.Counter signaturesRejected;
+    private final Metrics.Counter bytesSent;
+    private volatile boolean binaryUploads;
+    private volatile int batchLimit; // batchSize, halved by each 413
+
+    // Idempotency key -> pending entry, in enqueue order
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor();
+    private volatile boolean running;
+    private RandomAccessFile journalFile;
+
+    private static final class Entry {
+        final long imageId;
+        final String key;
+        final String payload;
+        final byte[] binary; // null if only JSON is available
+
+        Entry(long imageId, String key, String payload, byte[] binary) {
+            this.imageId = imageId;
+            this.key = key;
+            this.payload = payload;
+            this.binary = binary;
+        }
+    }
+
+    public UploadOutbox(File journal, URL endpoint, int batchSize, Metrics metrics, Listener listener) {
+        this.journal = journal;
+        this.endpoint = endpoint;
+        this.batchSize = batchSize;
+        this.batchLimit = batchSize;
+        this.listener = listener;
+        this.postTimer = metrics.timer("upload.post");
+        this.batchesOk = metrics.counter("upload.batches.ok");
+        this.batchesFailed = metrics.counter("upload.batches.failed");
+        this.signaturesUploaded = metrics.counter("upload.signatures");
+        this.signaturesRejected = metrics.counter("upload.signatures.rejected");
+        this.bytesSent = metrics.counter("upload.bytes");
+    }
+
+    /** Sends batches in SignatureWireFormat when every entry has a binary encoding. */
+    public void preferBinary(boolean enabled) {
+        binaryUploads = enabled;
+    }
+
+    /** Replays the journal and starts the sender thread. */
+    public synchronized void start() throws IOException {
+        replay();
+        compact();
+        journalFile = new RandomAccessFile(journal, "rw");
+        journalFile.seek(journalFile.length());
+
+        running = true;
+        sender.execute(this::drainLoop);
+    }
+
+    public void stop() {
+        running = false;
+        sender.shutdownNow();
+        synchronized (this) {
+            notifyAll();
+            closeJournal();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Durably queues one signature. payload is the JSON object for the batch
+     * endpoint; key must be stable for the photo so retries are idempotent.
+     */
+    public synchronized void enqueue(long imageId, String key, String payload) throws IOException {
+        enqueue(imageId, key, payload, null);
+    }
+
+    /**
+     * Same, also keeping the SignatureWireFormat encoding (may be null) for binary uploads.
+     *
+     * @throws IOException if the journal write fails, or the outbox is not started or already stopped
+     */
+    public synchronized void enqueue(long imageId, String key, String payload, byte[] binary) throws IOException {
+        if (journalFile == null) {
+            throw new IOException("Upload outbox is not running");
+        }
+        if (pending.containsKey(key)) return;
+
+        Entry entry = new Entry(imageId, key, payload, binary);
+        appendRecord(entry);
+        journalFile.getFD().sync();
+        pending.put(key, entry);
+        notifyAll();
+    }
+
+    // ==========================================
+    // SENDER
+    // ==========================================
+
+    private void drainLoop() {
+        long backoff = 0;
+
+        while (running) {
+            List<Entry> batch;
+            try {
+                batch = nextBatch(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch.isEmpty()) continue;
+
+            try {
+                boolean binary = binaryUploads && allBinary(batch);
+                long postStart = System.nanoTime();
+                Response response;
+                try {
+                    response = post(batch, binary);
+                } finally {
+                    postTimer.stop(postStart);
+                }
+
+                int code = response.code;
+                if (binary && code == HTTP_UNSUPPORTED_MEDIA_TYPE) {
+                    // Server doesn't speak the binary format: fall back to JSON and resend now
+                    binaryUploads = false;
+                    backoff = 0;
+                    continue;
+                }
+                if (code < 200 || code >= 300) {
+                    if (code == HTTP_PAYLOAD_TOO_LARGE) {
+                        batchLimit = Math.max(1, batch.size() / 2);
+                    }
+                    throw new IOException("HTTP " + code);
+                }
+
+                int rejected = countRejected(response.body, batch.size());
+                acknowledge(batch);
+                backoff = 0;
+                batchesOk.inc();
+                signaturesUploaded.add(batch.size() - rejected);
+                if (rejected > 0) {
+                    // Refused one by one (e.g. malformed); resending them cannot help
+                    signaturesRejected.add(rejected);
+                    listener.onUploadFailed(new IOException(rejected + " of " + batch.size()
+                            + " signatures rejected by the server"), 0);
+                }
+                listener.onBatchUploaded(batch.size() - rejected, getPendingCount());
+            } catch (IOException e) {
+                batchesFailed.inc();
+                backoff = backoff == 0 ? MIN_BACKOFF_MS : Math.min(MAX_BACKOFF_MS, backoff * 2);
+                listener.onUploadFailed(e, backoff);
+            }
+        }
+    }
+
+    /**
+     * Waits out the backoff (or until new work arrives when idle) and takes a batch.
+     * enqueue() notifies, so the backoff is waited against a deadline rather than
+     * cut short by every new capture.
+     */
+    private synchronized List<Entry> nextBatch(long backoff) throws InterruptedException {
+        if (backoff > 0) {
+            // Jitter so a fleet of phones coming back online doesn't retry in lockstep
+            long delayMs = backoff + (long) (Math.random() * backoff / 4);
+            long deadline = System.nanoTime() + delayMs * 1000000L;
+            while (running && delayMs > 0) {
+                wait(delayMs);
+                delayMs = (deadline - System.nanoTime() + 999999) / 1000000;
+            }
+        }
+        while (running && pending.isEmpty()) {
+            wait();
+        }
+        if (!running) return Collections.emptyList();
+
+        int limit = batchLimit;
+        List<Entry> batch = new ArrayList<>(Math.min(limit, pending.size()));
+        for (Entry entry : pending.values()) {
+            if (batch.size() == limit) break;
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    private static boolean allBinary(List<Entry> batch) {
+        for (Entry entry : batch) {
+            if (entry.binary == null) return false;
+        }
+        return true;
+    }
+
+    private static final class Response {
+        final int code;
+        final String body; // "" for error replies
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Entries of the batch the server refused on their own, from the reply's
+     * "rejected": [i, ...] (indexes into the batch). Out-of-range indexes are ignored.
+     */
+    static int countRejected(String body, int batchSize) {
+        int key = body.indexOf("\"rejected\"");
+        if (key < 0) return 0;
+        int open = body.indexOf('[', key);
+        int close = open < 0 ? -1 : body.indexOf(']', open);
+        if (close < 0) return 0;
+
+        boolean[] seen = new boolean[batchSize];
+        int count = 0;
+        for (String item : body.substring(open + 1, close).split(",")) {
+            String trimmed = item.trim();
+            if (trimmed.isEmpty()) continue;
+            try {
+                int index = Integer.parseInt(trimmed);
+                if (index >= 0 && index < batchSize && !seen[index]) {
+                    seen[index] = true;
+                    count++;
+                }
+            } catch (NumberFormatException ignored) {
+                // Not an index; skip it
+            }
+        }
+        return count;
+    }
+
+    private Response post(List<Entry> batch, boolean binary) throws IOException {
+        byte[] input;
+        if (binary) {
+            List<byte[]> signatures = new ArrayList<>(batch.size());
+            for (Entry entry : batch) {
+                signatures.add(entry.binary);
+            }
+            input = SignatureWireFormat.encodeBatch(signatures);
+        } else {
+            StringBuilder body = new StringBuilder("{\"signatures\": [");
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) body.append(", ");
+                body.append(batch.get(i).payload);
+            }
+            body.append("]}");
+            input = body.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        bytesSent.add(input.length);
+
+        HttpURLConnection conn = (HttpURLConnection) endpoint.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", binary ? SignatureWireFormat.CONTENT_TYPE : "application/json; utf-8");
+        conn.setRequestProperty("Accept", "application/json");
+        conn.setRequestProperty("Connection", "keep-alive");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(input.length);
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(input, 0, input.length);
+        }
+
+        int code = conn.getResponseCode();
+
+        // Read the body to the end so the connection goes back to the keep-alive pool
+        InputStream in = code < 400 ? conn.getInputStream() : conn.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                byte[] chunk = new byte[1024];
+                int n;
+                while ((n = response.read(chunk)) != -1) {
+                    if (code < 400 && body.size() < MAX_RESPONSE_BYTES) body.write(chunk, 0, n);
+                }
+            }
+        }
+        return new Response(code, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private synchronized void acknowledge(List<Entry> batch) throws IOException {
+        if (journalFile == null) return;
+
+        for (Entry entry : batch) {
+            if (pending.remove(entry.key) != null) {
+                appendRecord(TYPE_ACK, entry.imageId, entry.key, new byte[0]);
+            }
+        }
+        journalFile.getFD().sync();
+
+        if (pending.isEmpty()) {
+            // Nothing left to replay: start the journal over
+            journalFile.setLength(0);
+            journalFile.getFD().sync();
+        }
+    }
+
+    // ==========================================
+    // JOURNAL
+    // ==========================================
+
+    private void appendRecord(Entry entry) throws IOException {
+        byte[] json = entry.payload.getBytes(StandardCharsets.UTF_8);
+        if (entry.binary == null) {
+            appendRecord(TYPE_ENQUEUE, entry.imageId, entry.key, json);
+            return;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(4 + json.length + entry.binary.length);
+        payload.putInt(json.length);
+        payload.put(json);
+        payload.put(entry.binary);
+        appendRecord(TYPE_ENQUEUE_BINARY, entry.imageId, entry.key, payload.array());
+    }
+
+    private void appendRecord(byte type, long imageId, String key, byte[] payloadBytes) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + 2 + keyBytes.length + payloadBytes.length;
+
+        ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+        record.putInt(length);
+        record.put(type);
+        record.putLong(imageId);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        record.put(payloadBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+
+        journalFile.write(record.array());
+    }
+
+    private void replay() throws IOException {
+        pending.clear();
+        if (!journal.exists()) return;
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 11 || length > 16 * 1024 * 1024) break;
+
+                byte[] data = new byte[length];
+                int crcValue;
+                try {
+                    in.readFully(data);
+                    crcValue = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != crcValue) break;
+
+                ByteBuffer record = ByteBuffer.wrap(data);
+                byte type = record.get();
+                long imageId = record.getLong();
+                int keyLength = record.getShort() & 0xFFFF;
+                String key = new String(data, 11, keyLength, StandardCharsets.UTF_8);
+                int payloadStart = 11 + keyLength;
+
+                if (type == TYPE_ENQUEUE) {
+                    String payload = new String(data, payloadStart, length - payloadStart, StandardCharsets.UTF_8);
+                    pending.put(key, new Entry(imageId, key, payload, null));
+                } else if (type == TYPE_ENQUEUE_BINARY) {
+                    int jsonLength = ByteBuffer.wrap(data, payloadStart, 4).getInt();
+                    String payload = new String(data, payloadStart + 4, jsonLength, StandardCharsets.UTF_8);
+                    byte[] binary = new byte[length - payloadStart - 4 - jsonLength];
+                    System.arraycopy(data, payloadStart + 4 + jsonLength, binary, 0, binary.length);
+                    pending.put(key, new Entry(imageId, key, payload, binary));
+                } else if (type == TYPE_ACK) {
+                    pending.remove(key);
+                }
+                validLength += 4 + length + 4;
+            }
+        }
+
+        if (validLength < journal.length()) {
+            // Torn write at the tail from a crash
+            try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    /** Rewrites the journal with only the pending entries (write temp, sync, rename). */
+    private void compact() throws IOException {
+        File temp = new File(journal.getPath() + ".tmp");
+        if (temp.exists() && !temp.delete()) {
+            throw new IOException("Failed to delete stale " + temp);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            journalFile = raf;
+            for (Entry entry : pending.values()) {
+                appendRecord(entry);
+            }
+            raf.getFD().sync();
+        } finally {
+            journalFile = null;
+        }
+        if (!temp.renameTo(journal)) {
+            throw new IOException("Failed to replace " + journal);
+        }
+    }
+
+    private void closeJournal() {
+        if (journalFile != null) {
+            try {
+                journalFile.close();
+            } catch (IOException ignored) {
+            }
+            journalFile = null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConstellationExtractorTest {
+
+    private static final int BAND_PIXELS = 256 * 1024;
+
+    @Test
+    public void bandScanMatchesOriginalPixelLoop() {
+        int[][] frames = {{640, 480}, {1001, 757}, {7, 9}, {4000, 3000}};
+        for (int[] frame : frames) {
+            int width = frame[0];
+            int height = frame[1];
+            int[] pixels = SyntheticImages.syntheticFrame(width, height, 42);
+
+            ConstellationExtractor extractor = new ConstellationExtractor(width, height);
+            extractor.scan(new IntArrayPixelSource(pixels, width, height), BAND_PIXELS);
+            assertEquals(width + "x" + height, LegacyFormats.constellation(pixels, width, height), extractor.toJson());
+        }
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        int width = 1601;
+        int height = 1203;
+        PixelSource source = new IntArrayPixelSource(SyntheticImages.syntheticFrame(width, height, 7), width, height);
+        ConstellationExtractor serial = new ConstellationExtractor(width, height);
+        serial.scan(source, BAND_PIXELS);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            // Small bands so every thread gets several
+            ParallelConstellationExtractor engine = new ParallelConstellationExtractor(threads, 16 * 1024);
+            try {
+                assertEquals(threads + " threads", serial.toJson(), engine.extract(source).toJson());
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Each pyramid level must keep matching (score above 75, as calculateMatchScore
+ * rates it) after JPEG-style recompression and resizing; in practice they stay
+ * near 98.
+ */
+public class ConstellationPyramidTest {
+
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 900;
+    private static final int SCENES = 3;
+    private static final double MIN_MEAN_SCORE = 92;
+
+    private interface Transform {
+        int[] apply(int[] pixels, int width, int height, int[] outSize);
+    }
+
+    @Test
+    public void levelsSurviveRecompression() {
+        check("jpeg q75", (p, w, h, size) -> SyntheticImages.jpegRoundTrip(p, w, h, 75, size));
+    }
+
+    @Test
+    public void levelsSurviveResizing() {
+        check("resize 50%", (p, w, h, size) -> SyntheticImages.resize(p, w, h, 0.5, size));
+        check("resize 37%", (p, w, h, size) -> SyntheticImages.resize(p, w, h, 0.37, size));
+    }
+
+    @Test
+    public void levelsSurviveResizingAndRecompression() {
+        check("resize 50% + jpeg q60", (p, w, h, size) -> {
+            int[] half = SyntheticImages.resize(p, w, h, 0.5, size);
+            return SyntheticImages.jpegRoundTrip(half, size[0], size[1], 60, size);
+        });
+    }
+
+    private static void check(String name, Transform transform) {
+        double[] levelScores = new double[ConstellationPyramid.DEFAULT_LEVELS];
+        for (int scene = 0; scene < SCENES; scene++) {
+            int[] original = SyntheticImages.sceneFrame(WIDTH, HEIGHT, scene);
+            int[] size = new int[2];
+            int[] changed = transform.apply(original, WIDTH, HEIGHT, size);
+
+            ConstellationPyramid a = pyramid(original, WIDTH, HEIGHT);
+            ConstellationPyramid b = pyramid(changed, size[0], size[1]);
+            for (int k = 0; k < a.getLevels(); k++) {
+                levelScores[k] += score(a, b, k);
+            }
+        }
+        for (int k = 0; k < levelScores.length; k++) {
+            double mean = levelScores[k] / SCENES;
+            assertTrue(name + ", level " + k + " scores " + mean, mean > MIN_MEAN_SCORE);
+        }
+    }
+
+    private static ConstellationPyramid pyramid(int[] pixels, int width, int height) {
+        ConstellationPyramid pyramid = new ConstellationPyramid(width, height);
+        BandScanner.scan(new IntArrayPixelSource(pixels, width, height), 256 * 1024, pyramid);
+        return pyramid;
+    }
+
+    /** calculateMatchScore for two signatures on the same grid. */
+    private static double score(ConstellationPyramid a, ConstellationPyramid b, int level) {
+        int grid = a.getGridSize(level);
+        double total = 0;
+        for (int row = 0; row < grid; row++) {
+            for (int col = 0; col < grid; col++) {
+                double dx = a.getStarX(level, row, col) - b.getStarX(level, row, col);
+                double dy = a.getStarY(level, row, col) - b.getStarY(level, row, col);
+                total += Math.sqrt(dx * dx + dy * dy);
+            }
+        }
+        return DuplicateIndex.score(total, grid * grid);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeferredIdsTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idsSurviveARestartUntilRemoved() throws IOException {
+        File file = new File(folder.getRoot(), "deferred_ids");
+        DeferredIds deferred = new DeferredIds(file);
+        assertEquals(Collections.emptyList(), deferred.load());
+
+        deferred.add(42);
+        deferred.add(7);
+        deferred.add(42);
+        assertEquals(Arrays.asList(42L, 7L), new DeferredIds(file).load());
+
+        assertTrue(deferred.remove(42));
+        assertFalse(deferred.remove(42));
+        DeferredIds reopened = new DeferredIds(file);
+        assertEquals(Collections.singletonList(7L), reopened.load());
+        assertTrue(reopened.contains(7));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void unreadableLinesAreSkipped() throws IOException {
+        File file = new File(folder.getRoot(), "deferred_ids");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("12\nnot an id\n\n13\n1".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(Arrays.asList(12L, 13L, 1L), new DeferredIds(file).load());
+    }
+}
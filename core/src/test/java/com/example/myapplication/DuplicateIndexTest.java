@@ -0,0 +1,159 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DuplicateIndexTest {
+
+    private static final int BUCKETS_PER_AXIS = SignatureStore.GRID_SIZE * 4;
+    private static final int BANDS = 16;
+
+    @Test
+    public void nearDuplicateMovedAcrossBucketEdgesIsFound() {
+        Random random = new Random(3);
+        int cells = DuplicateIndex.CELLS;
+        int original = 500;
+        float[] x = new float[cells];
+        float[] y = new float[cells];
+        float[] qx = new float[cells];
+        float[] qy = new float[cells];
+        DuplicateIndex index = new DuplicateIndex(16);
+        for (int i = 0; i < 1000; i++) {
+            if (i != original) {
+                ServerPort.cellStars(random, x, y);
+                index.add(i, x, y);
+            }
+        }
+
+        // Every band has one star that crosses a bucket edge, so no band matches
+        // exactly and only the neighbour probe can find the original
+        for (int cell = 0; cell < cells; cell++) {
+            x[cell] = clearOfEdges(random, cell % SignatureStore.GRID_SIZE);
+            y[cell] = clearOfEdges(random, cell / SignatureStore.GRID_SIZE);
+            qx[cell] = x[cell] + (random.nextFloat() - 0.5f) * 0.004f;
+            qy[cell] = y[cell] + (random.nextFloat() - 0.5f) * 0.004f;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            float[] stored = band % 2 == 0 ? x : y;
+            float[] query = band % 2 == 0 ? qx : qy;
+            int cellOnAxis = band % 2 == 0 ? band % SignatureStore.GRID_SIZE : band / SignatureStore.GRID_SIZE;
+            float edge = (cellOnAxis * 4 + 2) / (float) BUCKETS_PER_AXIS;
+            stored[band] = edge + 0.0006f;
+            query[band] = edge - 0.0006f;
+        }
+        index.add(original, x, y);
+
+        DuplicateIndex.Match match = index.nearest(qx, qy);
+        assertNotNull(match);
+        assertEquals(original, match.imageId);
+        assertTrue(match.isMatch());
+        assertEquals(cells, match.matchedStars);
+        assertEquals(serverScore(qx, qy, x, y), match.score, 1e-9);
+    }
+
+    @Test
+    public void scoreIsTheServersScore() {
+        Random random = new Random(7);
+        int cells = DuplicateIndex.CELLS;
+        float[] x = new float[cells];
+        float[] y = new float[cells];
+        float[] qx = new float[cells];
+        float[] qy = new float[cells];
+        int matches = 0;
+        int misses = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            ServerPort.cellStars(random, x, y);
+            DuplicateIndex index = new DuplicateIndex(1);
+            index.add(trial, x, y);
+
+            // From burst frames to barely related, so scores fall on both sides of the threshold
+            float noise = 0.002f + trial % 30 * 0.002f;
+            for (int cell = 0; cell < cells; cell++) {
+                qx[cell] = x[cell] + (float) random.nextGaussian() * noise;
+                qy[cell] = y[cell] + (float) random.nextGaussian() * noise;
+            }
+
+            DuplicateIndex.Match match = index.nearest(qx, qy);
+            if (match == null) continue;
+            double expected = serverScore(qx, qy, x, y);
+            assertEquals("trial " + trial, expected, match.score, 1e-9);
+            assertEquals("trial " + trial, expected > DuplicateIndex.MATCH_SCORE, match.isMatch());
+            if (match.isMatch()) {
+                matches++;
+            } else {
+                misses++;
+            }
+        }
+        assertTrue(matches > 0 && misses > 0);
+    }
+
+    @Test
+    public void unrelatedSignatureIsNeverAMatch() {
+        // Stars anywhere in the frame, nothing like a near-duplicate
+        Random random = new Random(13);
+        DuplicateIndex index = new DuplicateIndex(2000);
+        for (int i = 0; i < 2000; i++) {
+            index.add(i, ServerPort.randomStars(random), ServerPort.randomStars(random));
+        }
+
+        int candidates = 0;
+        for (int query = 0; query < 500; query++) {
+            DuplicateIndex.Match match = index.nearest(ServerPort.randomStars(random), ServerPort.randomStars(random));
+            if (match == null) continue;
+            candidates++;
+            assertFalse("query " + query + " scored " + match.score, match.isMatch());
+        }
+        assertTrue(candidates > 0); // some did share a band, so scoring ran
+    }
+
+    @Test
+    public void unrelatedConstellationMatchesOnlyWhereTheServerDoes() {
+        // One star per cell, as extracted. Unrelated stars land about 0.065 apart on
+        // average (score ~67), so the server's threshold lets the odd pair through; the
+        // index must agree with the server on those and never go beyond it.
+        Random random = new Random(11);
+        int cells = DuplicateIndex.CELLS;
+        float[][] storedX = new float[2000][cells];
+        float[][] storedY = new float[2000][cells];
+        DuplicateIndex index = new DuplicateIndex(storedX.length);
+        for (int i = 0; i < storedX.length; i++) {
+            ServerPort.cellStars(random, storedX[i], storedY[i]);
+            index.add(i, storedX[i], storedY[i]);
+        }
+
+        float[] qx = new float[cells];
+        float[] qy = new float[cells];
+        int candidates = 0;
+        int matches = 0;
+        for (int query = 0; query < 500; query++) {
+            ServerPort.cellStars(random, qx, qy);
+            DuplicateIndex.Match match = index.nearest(qx, qy);
+            if (match == null) continue;
+            candidates++;
+            int stored = (int) match.imageId;
+            double expected = serverScore(qx, qy, storedX[stored], storedY[stored]);
+            assertEquals("query " + query, expected, match.score, 1e-9);
+            assertEquals("query " + query, expected > DuplicateIndex.MATCH_SCORE, match.isMatch());
+            if (match.isMatch()) matches++;
+        }
+        assertTrue(candidates > 0);
+        assertTrue(matches + " of " + candidates, matches * 100 < candidates);
+    }
+
+    /** A coordinate in the given cell at least a fifth of a bucket from any bucket edge. */
+    private static float clearOfEdges(Random random, int cellOnAxis) {
+        int bucket = cellOnAxis * 4 + random.nextInt(4);
+        return (bucket + 0.2f + random.nextFloat() * 0.6f) / BUCKETS_PER_AXIS;
+    }
+
+    private static double serverScore(float[] ux, float[] uy, float[] ox, float[] oy) {
+        return ServerPort.serverScore(ServerPort.asParsedJson(ux), ServerPort.asParsedJson(uy),
+                ServerPort.asParsedJson(ox), ServerPort.asParsedJson(oy));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Each of the 8 EXIF orientations, applied to a synthetic upright image the way a
+ * camera stores it, must give exactly the signature of the upright image.
+ */
+public class ImageOrientationTest {
+
+    private static final int WIDTH = 641;
+    private static final int HEIGHT = 479;
+    private static final int BAND_PIXELS = 16 * 1024; // several bands, so band edges are crossed too
+
+    @Test
+    public void mappingsRoundTrip() {
+        for (int exif = 1; exif <= 8; exif++) {
+            ImageOrientation orientation = ImageOrientation.fromExif(exif);
+            int storedWidth = orientation.isTransposed() ? HEIGHT : WIDTH;
+            int storedHeight = orientation.isTransposed() ? WIDTH : HEIGHT;
+            assertEquals(WIDTH, orientation.displayWidth(storedWidth, storedHeight));
+            assertEquals(HEIGHT, orientation.displayHeight(storedWidth, storedHeight));
+
+            for (int sy = 0; sy < storedHeight; sy += 7) {
+                for (int sx = 0; sx < storedWidth; sx += 5) {
+                    int dx = orientation.toDisplayX(sx, sy, storedWidth, storedHeight);
+                    int dy = orientation.toDisplayY(sx, sy, storedWidth, storedHeight);
+                    assertEquals(orientation + " x", sx, orientation.toStoredX(dx, dy, storedWidth, storedHeight));
+                    assertEquals(orientation + " y", sy, orientation.toStoredY(dx, dy, storedWidth, storedHeight));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyOrientationGivesTheUprightSignature() {
+        int[] upright = SyntheticImages.syntheticFrame(WIDTH, HEIGHT, 8);
+        ParallelConstellationExtractor engine = new ParallelConstellationExtractor(2, BAND_PIXELS);
+        try {
+            for (StrandLayout layout : new StrandLayout[]{StrandLayout.THREE_VERTICAL, StrandLayout.GRID_AND_DIAGONALS}) {
+                SignatureExtractor extractor = new SignatureExtractor(engine, BAND_PIXELS, 320, 320)
+                        .setStrandLayout(layout);
+                SignatureExtractor.Result expected = extractor.extract(new IntArrayPixelSource(upright, WIDTH, HEIGHT),
+                        0, 0, ImageOrientation.NORMAL);
+
+                for (int exif = 1; exif <= 8; exif++) {
+                    ImageOrientation orientation = ImageOrientation.fromExif(exif);
+                    int storedWidth = orientation.isTransposed() ? HEIGHT : WIDTH;
+                    int storedHeight = orientation.isTransposed() ? WIDTH : HEIGHT;
+                    int[] stored = store(upright, orientation, storedWidth, storedHeight);
+
+                    SignatureExtractor.Result actual = extractor.extract(
+                            new IntArrayPixelSource(stored, storedWidth, storedHeight), 0, 0, orientation);
+                    String what = layout.getName() + ", " + orientation;
+                    assertEquals(what, expected.constellation.toJson(), actual.constellation.toJson());
+                    assertEquals(what, expected.pyramid.toJson(), actual.pyramid.toJson());
+                    assertStrandsEqual(what, expected.strands, actual.strands);
+                    assertEquals(what, expected.previewWidth, actual.previewWidth);
+                    assertEquals(what, expected.previewHeight, actual.previewHeight);
+                    int previewPixels = expected.previewWidth * expected.previewHeight;
+                    assertArrayEquals(what, Arrays.copyOf(expected.previewPixels, previewPixels),
+                            Arrays.copyOf(actual.previewPixels, previewPixels));
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /** The upright frame as a camera with this orientation tag stores it. */
+    private static int[] store(int[] upright, ImageOrientation orientation, int storedWidth, int storedHeight) {
+        int[] stored = new int[upright.length];
+        for (int sy = 0; sy < storedHeight; sy++) {
+            for (int sx = 0; sx < storedWidth; sx++) {
+                int dx = orientation.toDisplayX(sx, sy, storedWidth, storedHeight);
+                int dy = orientation.toDisplayY(sx, sy, storedWidth, storedHeight);
+                stored[sy * storedWidth + sx] = upright[dy * WIDTH + dx];
+            }
+        }
+        return stored;
+    }
+
+    private static void assertStrandsEqual(String what, StrandSampler expected, StrandSampler actual) {
+        assertEquals(what, expected.getStrandCount(), actual.getStrandCount());
+        for (int s = 0; s < expected.getStrandCount(); s++) {
+            String strand = what + ", strand " + (s + 1);
+            assertEquals(strand, expected.getX(s), actual.getX(s));
+            assertEquals(strand, expected.getYStart(s), actual.getYStart(s));
+            assertEquals(strand, expected.getCount(s), actual.getCount(s));
+            for (int i = 0; i < expected.getCount(s); i++) {
+                assertEquals(strand + ", pixel " + i, expected.getPixel(s, i), actual.getPixel(s, i));
+            }
+        }
+    }
+}
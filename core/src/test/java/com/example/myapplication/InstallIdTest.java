@@ -0,0 +1,43 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InstallIdTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idIsKeptPerInstallAndDiffersBetweenInstalls() throws IOException {
+        File file = new File(folder.getRoot(), "install_id");
+        String id = InstallId.load(file);
+        assertEquals(id, UUID.fromString(id).toString());
+        assertEquals(id, InstallId.load(file));
+        assertNotEquals(id, InstallId.load(new File(folder.getRoot(), "other_install_id")));
+
+        assertNotEquals(SignaturePayload.idempotencyKey(id, 1234),
+                SignaturePayload.idempotencyKey(InstallId.load(new File(folder.getRoot(), "other_install_id")), 1234));
+    }
+
+    @Test
+    public void damagedFileGetsANewId() throws IOException {
+        File file = new File(folder.getRoot(), "install_id");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not-a-uuid".getBytes(StandardCharsets.UTF_8));
+        }
+        String id = InstallId.load(file);
+        assertEquals(id, UUID.fromString(id).toString());
+        assertEquals(id, InstallId.load(file));
+    }
+}
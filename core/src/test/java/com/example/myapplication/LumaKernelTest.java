@@ -0,0 +1,49 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LumaKernelTest {
+
+    @Test
+    public void vectorKernelLoadsReflectively() {
+        // The tests run with the jvm source set and --add-modules jdk.incubator.vector
+        LumaKernel vector = LumaKernel.vector();
+        assertNotNull(vector);
+        assertEquals("vector", vector.getName());
+        assertSame(vector.getClass(), LumaKernel.select("auto").getClass());
+        assertSame(LumaKernel.SCALAR, LumaKernel.select("scalar"));
+    }
+
+    @Test
+    public void vectorMatchesScalarOnRandomRuns() {
+        LumaKernel vector = LumaKernel.vector();
+        Random random = new Random(17);
+        int[] pixels = new int[4096];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        for (int trial = 0; trial < 2000; trial++) {
+            int from = random.nextInt(pixels.length);
+            int to = from + random.nextInt(pixels.length - from + 1);
+            assertEquals(from + ".." + to, LumaKernel.SCALAR.maxLuma(pixels, from, to), vector.maxLuma(pixels, from, to));
+        }
+    }
+
+    @Test
+    public void constellationIsTheSameWithEitherKernel() {
+        int width = 1999;
+        int height = 1501;
+        PixelSource source = new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, 7), width, height);
+        ConstellationExtractor scalar = new ConstellationExtractor(width, height).setLumaKernel(LumaKernel.SCALAR);
+        scalar.scan(source, 256 * 1024);
+        ConstellationExtractor vector = new ConstellationExtractor(width, height).setLumaKernel(LumaKernel.vector());
+        vector.scan(source, 256 * 1024);
+        assertEquals(scalar.toJson(), vector.toJson());
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** RollingLog commits, rotation and recovery from what a crash leaves on disk. */
+public class RollingLogTest {
+
+    private static final long TIMEOUT_MS = 15000;
+    private static final long NEVER_MS = 3_600_000; // the flusher never runs during a test
+    private static final int HEADER_SIZE = 16;
+
+    // Rotation rounds write fixed-length lines, so the last line of a round is the one
+    // that takes the segment past SEGMENT_BYTES and no earlier commit can trigger a seal
+    private static final int LINE_BYTES = 59;
+    private static final int SEGMENT_BYTES = 100_000;
+    private static final int ROUND_LINES = SEGMENT_BYTES / LINE_BYTES + 1;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private Metrics metrics;
+    private final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+    private final List<RollingLog> logs = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "log");
+        metrics = new Metrics();
+    }
+
+    @After
+    public void tearDown() {
+        for (RollingLog log : logs) {
+            log.close();
+        }
+        assertEquals(Collections.emptyList(), errors);
+    }
+
+    @Test
+    public void appendedLinesAreQueryableAfterCommitAndReopen() throws IOException {
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        for (int i = 1; i <= 5; i++) {
+            log.append(i * 100, "entry " + i);
+        }
+        log.append(600, "two\nlines");
+        assertEquals(6, log.getPendingEntries());
+
+        log.commit();
+        assertEquals(0, log.getPendingEntries());
+        assertEquals(1, metrics.counter("log.test.commits").get());
+        assertEntries(log.query(200, 400), 200, "entry 2", 300, "entry 3", 400, "entry 4");
+        assertEntries(log.tail(2), 500, "entry 5", 600, "two lines");
+
+        // query() and tail() commit what is still buffered
+        log.append(700, "entry 7");
+        assertEntries(log.query(650, Long.MAX_VALUE), 700, "entry 7");
+        assertEquals(2, metrics.counter("log.test.commits").get());
+
+        log.close();
+        log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        assertEquals(7, log.query(0, Long.MAX_VALUE).size());
+        assertEntries(log.tail(1), 700, "entry 7");
+    }
+
+    @Test
+    public void sealedSegmentsAreChunkedAndOnlyTheNewestAreKept() throws Exception {
+        RollingLog log = open(4096, 5, SEGMENT_BYTES, 2);
+        for (int round = 1; round <= 4; round++) {
+            writeRound(log, round);
+            final int rotations = round;
+            await(() -> metrics.counter("log.test.rotations").get() == rotations);
+        }
+
+        // Rounds 1 and 2 have aged out; 3 and 4 are sealed and 5 is the empty active segment
+        assertEquals(Arrays.asList("index", "segment-000003.log.gz", "segment-000004.log.gz", "segment-000005.log"),
+                listFiles());
+        assertEquals(0, new File(directory, "segment-000005.log").length());
+
+        List<RollingLog.Entry> all = log.query(0, Long.MAX_VALUE);
+        assertEquals(2 * ROUND_LINES, all.size());
+        assertRound(all.subList(0, ROUND_LINES), 3);
+        assertRound(all.subList(ROUND_LINES, all.size()), 4);
+
+        // Across the seam between the two sealed segments
+        List<RollingLog.Entry> seam = log.query(roundTime(3, ROUND_LINES - 2), roundTime(4, 1));
+        assertEquals(4, seam.size());
+        assertEquals(roundTime(3, ROUND_LINES - 2), seam.get(0).timeMs);
+        assertEquals(roundTime(4, 1), seam.get(3).timeMs);
+        List<RollingLog.Entry> tail = log.tail(3);
+        assertRoundLines(tail, 4, ROUND_LINES - 3);
+
+        // Each sealed segment is several gzip members, each indexed and readable on its own
+        log.close();
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(new File(directory, "index").toPath()));
+        for (int segment = 3; segment <= 4; segment++) {
+            byte[] gz = Files.readAllBytes(new File(directory, String.format("segment-%06d.log.gz", segment)).toPath());
+            StringBuilder members = new StringBuilder();
+            int count = 0;
+            long nextOffset = 0;
+            for (int base = HEADER_SIZE; base < index.capacity(); base += RollingLog.RECORD_SIZE) {
+                if (index.getInt(base + 24) != segment) continue;
+                long offset = index.getLong(base + 16);
+                int length = index.getInt(base + 28);
+                assertEquals(nextOffset, offset);
+                String plain = gunzip(Arrays.copyOfRange(gz, (int) offset, (int) offset + length));
+                assertTrue(plain.length() <= RollingLog.SEAL_CHUNK_BYTES);
+                assertEquals(index.getInt(base + 32), plain.split("\n").length);
+                members.append(plain);
+                nextOffset = offset + length;
+                count++;
+            }
+            assertTrue("segment " + segment + " has " + count + " members", count > 1);
+            assertEquals(gz.length, nextOffset);
+            assertEquals(gunzip(gz), members.toString()); // still one valid .gz file
+        }
+
+        // Lowering retention drops the older sealed segment on open
+        log = open(4096, 5, SEGMENT_BYTES, 1);
+        assertEquals(Arrays.asList("index", "segment-000004.log.gz", "segment-000005.log"), listFiles());
+        assertRound(log.query(0, Long.MAX_VALUE), 4);
+    }
+
+    @Test
+    public void tornIndexKeepsEveryLine() throws IOException {
+        writeThreeCommits();
+        File index = new File(directory, "index");
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            file.setLength(file.length() - RollingLog.RECORD_SIZE / 2);
+        }
+
+        // The torn record is dropped and its lines re-indexed from the segment
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        assertEquals(HEADER_SIZE + 3 * RollingLog.RECORD_SIZE, index.length());
+        assertThreeCommits(log);
+    }
+
+    @Test
+    public void corruptIndexRecordKeepsEveryLine() throws IOException {
+        writeThreeCommits();
+        File index = new File(directory, "index");
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            long position = HEADER_SIZE + RollingLog.RECORD_SIZE + 8; // max time of the second record
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0x01);
+        }
+
+        // Records from the corrupt one on are dropped; the lines behind them come back as one block
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        assertEquals(HEADER_SIZE + 2 * RollingLog.RECORD_SIZE, index.length());
+        assertThreeCommits(log);
+    }
+
+    @Test
+    public void unindexedLinesAreRecoveredAndATornLineDropped() throws IOException {
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        log.append(100, "committed");
+        log.close();
+
+        // Written to the segment, but the crash came before the index record or mid-line
+        File segment = new File(directory, "segment-000001.log");
+        long committedLength = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write("300\tunindexed\n-50\tbefore epoch\n400\ttor".getBytes(StandardCharsets.UTF_8));
+        }
+
+        log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        assertEntries(log.query(Long.MIN_VALUE, Long.MAX_VALUE),
+                100, "committed", 300, "unindexed", -50, "before epoch");
+        assertEquals(committedLength + "300\tunindexed\n-50\tbefore epoch\n".length(), segment.length());
+
+        // New lines start where the torn one was cut off
+        log.append(500, "after restart");
+        assertEntries(log.query(250, Long.MAX_VALUE), 300, "unindexed", 500, "after restart");
+        assertEntries(log.query(-100, 0), -50, "before epoch");
+    }
+
+    @Test
+    public void crashDuringSealIsCleanedUpOnOpen() throws Exception {
+        RollingLog log = open(4096, 5, SEGMENT_BYTES, 2);
+        writeRound(log, 1);
+        await(() -> metrics.counter("log.test.rotations").get() == 1);
+        log.append(roundTime(2, 0), "in segment 2");
+        log.close();
+
+        // Crash between the index swap and removing the sealed plain segment
+        write(new File(directory, "segment-000001.log"), "1000000\tleft behind\n");
+        // Crash between renaming the next seal's .gz and swapping in its index
+        write(new File(directory, "segment-000002.log.gz"), "not indexed yet");
+        write(new File(directory, "segment-000002.log.gz.tmp"), "half written");
+
+        log = open(4096, 5, SEGMENT_BYTES, 2);
+        assertEquals(Arrays.asList("index", "segment-000001.log.gz", "segment-000002.log"), listFiles());
+        List<RollingLog.Entry> all = log.query(0, Long.MAX_VALUE);
+        assertRound(all.subList(0, ROUND_LINES), 1);
+        assertEntries(all.subList(ROUND_LINES, all.size()), roundTime(2, 0), "in segment 2");
+    }
+
+    @Test
+    public void lostIndexStartsAfterExistingSegments() throws IOException {
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        log.append(100, "old");
+        log.close();
+        assertTrue(new File(directory, "index").delete());
+
+        log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        log.append(200, "new");
+        assertEntries(log.query(0, Long.MAX_VALUE), 200, "new");
+        assertTrue(new File(directory, "segment-000002.log").exists());
+    }
+
+    private RollingLog open(int commitBytes, long commitIntervalMs, long segmentBytes, int maxSegments)
+            throws IOException {
+        RollingLog log = new RollingLog(directory, "test", commitBytes, commitIntervalMs, segmentBytes, maxSegments,
+                errors::add).recordTo(metrics);
+        log.open();
+        logs.add(log);
+        return log;
+    }
+
+    private void writeThreeCommits() throws IOException {
+        RollingLog log = open(64 * 1024, NEVER_MS, SEGMENT_BYTES, 3);
+        for (int commit = 0; commit < 3; commit++) {
+            for (int i = 0; i < 4; i++) {
+                log.append(commit * 1000 + i, "commit " + commit + " line " + i);
+            }
+            log.commit();
+        }
+        log.close();
+    }
+
+    private static void assertThreeCommits(RollingLog log) throws IOException {
+        List<RollingLog.Entry> all = log.query(0, Long.MAX_VALUE);
+        assertEquals(12, all.size());
+        for (int j = 0; j < 12; j++) {
+            int commit = j / 4;
+            int i = j % 4;
+            assertEquals(commit * 1000 + i, all.get(j).timeMs);
+            assertEquals("commit " + commit + " line " + i, all.get(j).text);
+        }
+        assertEquals(2, log.query(2001, 2002).size());
+    }
+
+    /** Fills the active segment so the flusher seals it; nothing before the last line can. */
+    private static void writeRound(RollingLog log, int round) throws IOException {
+        for (int i = 0; i < ROUND_LINES; i++) {
+            String text = roundText(round, i);
+            assertEquals(LINE_BYTES, (roundTime(round, i) + "\t" + text + "\n").length());
+            log.append(roundTime(round, i), text);
+        }
+        log.commit();
+    }
+
+    private static long roundTime(int round, int line) {
+        return round * 1_000_000L + line;
+    }
+
+    private static String roundText(int round, int line) {
+        return String.format("round %d line %04d ................................", round, line);
+    }
+
+    private static void assertRound(List<RollingLog.Entry> entries, int round) {
+        assertEquals(ROUND_LINES, entries.size());
+        assertRoundLines(entries, round, 0);
+    }
+
+    private static void assertRoundLines(List<RollingLog.Entry> entries, int round, int firstLine) {
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(roundTime(round, firstLine + i), entries.get(i).timeMs);
+            assertEquals(roundText(round, firstLine + i), entries.get(i).text);
+        }
+    }
+
+    /** Alternating expected time and text. */
+    private static void assertEntries(List<RollingLog.Entry> actual, Object... expected) {
+        List<String> actualText = new ArrayList<>();
+        for (RollingLog.Entry entry : actual) {
+            actualText.add(entry.timeMs + " " + entry.text);
+        }
+        List<String> expectedText = new ArrayList<>();
+        for (int i = 0; i < expected.length; i += 2) {
+            expectedText.add(((Number) expected[i]).longValue() + " " + expected[i + 1]);
+        }
+        assertEquals(expectedText, actualText);
+    }
+
+    private List<String> listFiles() {
+        String[] names = directory.list();
+        assertFalse(names == null);
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) > 0) plain.write(chunk, 0, read);
+        }
+        return new String(plain.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SignatureMatcherTest {
+
+    private static final int ROWS = 3000;
+
+    @Test
+    public void scoresAndBestRowMatchServerPort() {
+        int[] rows = new int[DuplicateIndex.CELLS];
+        int[] cols = new int[DuplicateIndex.CELLS];
+        for (int cell = 0; cell < rows.length; cell++) {
+            rows[cell] = cell / SignatureStore.GRID_SIZE;
+            cols[cell] = cell % SignatureStore.GRID_SIZE;
+        }
+
+        Random random = new Random(5);
+        int genuine = ROWS / 3;
+        SignatureMatcher.Signatures table = new SignatureMatcher.Signatures(16);
+        double[][] portX = new double[ROWS][];
+        double[][] portY = new double[ROWS][];
+        double[] queryX = new double[rows.length];
+        double[] queryY = new double[rows.length];
+        float[] x = new float[rows.length];
+        float[] y = new float[rows.length];
+        for (int i = 0; i < ROWS; i++) {
+            ServerPort.cellStars(random, x, y);
+            table.add(i, rows, cols, x, y);
+            portX[i] = ServerPort.asParsedJson(x);
+            portY[i] = ServerPort.asParsedJson(y);
+            if (i == genuine) {
+                for (int cell = 0; cell < rows.length; cell++) {
+                    queryX[cell] = x[cell] + random.nextGaussian() * 0.005;
+                    queryY[cell] = y[cell] + random.nextGaussian() * 0.005;
+                }
+            }
+        }
+        SignatureMatcher.Query query = new SignatureMatcher.Query(rows, cols, queryX, queryY);
+
+        int portBest = -1;
+        double portScore = 0;
+        for (int i = 0; i < ROWS; i++) {
+            double score = ServerPort.serverScore(queryX, queryY, portX[i], portY[i]);
+            assertEquals("row " + i, Double.doubleToLongBits(score),
+                    Double.doubleToLongBits(SignatureMatcher.score(query, table, i)));
+            if (score > portScore) {
+                portScore = score;
+                portBest = i;
+            }
+        }
+        assertEquals(genuine, portBest);
+
+        for (int parallelism : new int[]{1, 3}) {
+            SignatureMatcher matcher = new SignatureMatcher(parallelism);
+            try {
+                SignatureMatcher.Match match = matcher.best(query, table);
+                assertNotNull(match);
+                assertEquals(portBest, match.index);
+                assertEquals(portScore, match.score, 0);
+                assertEquals(portBest, matcher.best(query, table, DuplicateIndex.MATCH_SCORE).index);
+                assertNull(matcher.best(query, table, 100));
+            } finally {
+                matcher.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void recordScoresMatchServerPort() {
+        Random random = new Random(9);
+        for (int trial = 0; trial < 50; trial++) {
+            SignatureRecord uploaded = record(random);
+            SignatureRecord stored = record(random);
+            double expected = ServerPort.serverScore(ServerPort.asParsedJson(uploaded.x),
+                    ServerPort.asParsedJson(uploaded.y), ServerPort.asParsedJson(stored.x), ServerPort.asParsedJson(stored.y));
+            assertEquals(expected, SignatureMatcher.score(uploaded, stored), 0);
+            assertEquals(100, SignatureMatcher.score(uploaded, uploaded), 0);
+        }
+    }
+
+    private static SignatureRecord record(Random random) {
+        float[] x = new float[DuplicateIndex.CELLS];
+        float[] y = new float[DuplicateIndex.CELLS];
+        ServerPort.cellStars(random, x, y);
+        return new SignatureRecord(random.nextInt(1000), 0, 4000, 3000, 0, 0, "IMG.jpg", SignatureStore.GRID_SIZE,
+                x, y, new float[x.length]);
+    }
+}
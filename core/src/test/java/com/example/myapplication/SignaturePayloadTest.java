@@ -0,0 +1,51 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class SignaturePayloadTest {
+
+    @Test
+    public void writerMatchesStringFormat() {
+        int width = 1600;
+        int height = 1200;
+        ParallelConstellationExtractor engine = new ParallelConstellationExtractor(1, 256 * 1024);
+        try {
+            for (long seed = 0; seed < 4; seed++) {
+                SignatureExtractor.Result result = new SignatureExtractor(engine, 256 * 1024, 1080, 1920)
+                        .extract(new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, seed), width, height),
+                                0, 0, ImageOrientation.NORMAL);
+                ImageInfo info = new ImageInfo(42 + seed, "IMG_0042.jpg", width, height, 2500000, "content://media/42");
+                SignatureRecord record = SignatureRecord.of(info, 1700000000000L, result.strands.getTotalCount(),
+                        result.constellation);
+                String key = SignaturePayload.idempotencyKey("4b1d6c52-8f0e-4c7a-9d3b-2e5f7a1c0b98", info.id);
+
+                assertEquals(LegacyFormats.constellationJson(record), record.toJson());
+                assertEquals(LegacyFormats.pyramidJson(result.pyramid), result.pyramid.toJson());
+                assertEquals(LegacyFormats.payload(info.id, "bench", "desktop", "2024-01-01 00:00:00", key, record,
+                                result.pyramid),
+                        SignaturePayload.toJson(info.id, "bench", "desktop", "2024-01-01 00:00:00", key, record,
+                                result.pyramid));
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void fixedMatchesStringFormatOnEdgeValues() {
+        float[] values = {0f, 1f, 0.5f, 0.00005f, 0.99995f, 0.12345f, 0.005f, 0.995f, Float.MIN_VALUE, 1e-7f,
+                0.33333334f, 0.6666667f, -0.25f};
+        SignatureJsonWriter writer = new SignatureJsonWriter(64);
+        for (float value : values) {
+            for (int decimals = 0; decimals <= 8; decimals++) {
+                assertEquals(value + " %." + decimals + "f",
+                        String.format(Locale.US, "%." + decimals + "f", value),
+                        writer.reset().fixed(value, decimals).toString());
+            }
+        }
+    }
+}
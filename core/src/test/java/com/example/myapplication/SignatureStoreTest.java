@@ -0,0 +1,60 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SignatureStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsSurviveReopenWithTheirUploadFlag() throws IOException {
+        File file = new File(folder.getRoot(), "signatures.db");
+        Random random = new Random(11);
+        SignatureRecord uploaded = record(random, 1);
+        SignatureRecord suppressed = record(random, 2).withUploadSuppressed();
+
+        SignatureStore store = new SignatureStore(file);
+        store.open();
+        assertTrue(store.append(uploaded));
+        assertTrue(store.append(suppressed));
+        assertFalse(store.append(uploaded));
+        store.close();
+
+        store.open();
+        try {
+            assertEquals(2, store.size());
+            SignatureRecord first = store.get(1);
+            assertFalse(first.uploadSuppressed);
+            assertArrayEquals(uploaded.x, first.x, 0f);
+            assertEquals(QualityTier.REDUCED, first.qualityTier);
+            assertEquals(4, first.sampleSize);
+
+            SignatureRecord second = store.get(2);
+            assertTrue(second.uploadSuppressed);
+            assertArrayEquals(suppressed.y, second.y, 0f);
+            assertEquals(QualityTier.REDUCED, second.qualityTier);
+        } finally {
+            store.close();
+        }
+    }
+
+    private static SignatureRecord record(Random random, long imageId) {
+        float[] x = new float[DuplicateIndex.CELLS];
+        float[] y = new float[DuplicateIndex.CELLS];
+        ServerPort.cellStars(random, x, y);
+        return new SignatureRecord(imageId, 0, 4000, 3000, 0, 0, "IMG_" + imageId + ".jpg", SignatureStore.GRID_SIZE,
+                x, y, new float[x.length], QualityTier.REDUCED, 4);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The binary format must carry exactly the numbers the JSON carries. The batch below
+ * is also kept as server/test/fixtures, where the server's decoder is checked against
+ * JSON.parse of the same batch (cd server && npm test). After a deliberate format
+ * change, rewrite the fixtures with ./gradlew :core:test -PupdateFixtures.
+ */
+public class SignatureWireFormatTest {
+
+    private static final File FIXTURES = new File("../server/test/fixtures");
+    private static final String INSTALL_ID = "4b1d6c52-8f0e-4c7a-9d3b-2e5f7a1c0b98";
+
+    /** Floats whose 4 and 2 decimal roundings are easy to get wrong. */
+    private static final float[] EDGES = {0f, 1f, 0.5f, 0.00005f, 0.00004999f, 0.99995f, 0.99994f, 0.12345f,
+            0.005f, 0.015f, 0.995f, 0.994999f, Float.MIN_VALUE, 1e-7f, 0.33333334f, 0.6666667f, 0.0001f, 0.9999f};
+
+    @Test
+    public void starsCarryTheJsonDecimals() {
+        Random random = new Random(11);
+        SignatureJsonWriter writer = new SignatureJsonWriter(64);
+        for (int i = 0; i < 200000; i++) {
+            float value = i < EDGES.length ? EDGES[i] : random.nextFloat();
+            int x = SignatureWireFormat.quantize(value, SignatureWireFormat.XY_DECIMALS, 0xFFFF);
+            int b = SignatureWireFormat.quantize(value, SignatureWireFormat.B_DECIMALS, 0xFF);
+            assertEquals(value + " as x", writer.reset().fixed(value, 4).toString(), decimal(x, 4));
+            assertEquals(value + " as b", writer.reset().fixed(value, 2).toString(), decimal(b, 2));
+        }
+    }
+
+    @Test
+    public void outOfRangeValuesClamp() {
+        assertEquals(0, SignatureWireFormat.quantize(-0.5f, 4, 0xFFFF));
+        assertEquals(0, SignatureWireFormat.quantize(Float.NaN, 4, 0xFFFF));
+        assertEquals(15000, SignatureWireFormat.quantize(1.5f, 4, 0xFFFF));
+        assertEquals(0xFFFF, SignatureWireFormat.quantize(7f, 4, 0xFFFF));
+        assertEquals(0xFF, SignatureWireFormat.quantize(3f, 2, 0xFF));
+        assertEquals(0xFFFF, SignatureWireFormat.quantize(Float.POSITIVE_INFINITY, 4, 0xFFFF));
+    }
+
+    @Test
+    public void binaryDecodesToTheJsonValues() {
+        Batch batch = batch();
+        ByteBuffer in = ByteBuffer.wrap(batch.binary);
+        assertEquals(SignatureWireFormat.MAGIC, in.getInt());
+        assertEquals(SignatureWireFormat.VERSION, in.get());
+        assertEquals(batch.records.size(), in.getShort());
+
+        SignatureJsonWriter writer = new SignatureJsonWriter(64);
+        for (SignatureRecord record : batch.records) {
+            int end = (in.getShort() & 0xFFFF) + in.position();
+            assertEquals(record.imageId, in.getLong());
+            for (int s = 0; s < 4; s++) {
+                int length = in.getShort() & 0xFFFF;
+                in.position(in.position() + length);
+            }
+            assertEquals(record.gridSize, in.get());
+            for (int cell = 0; cell < record.gridSize * record.gridSize; cell++) {
+                assertEquals(writer.reset().fixed(record.x[cell], 4).toString(), decimal(in.getShort() & 0xFFFF, 4));
+                assertEquals(writer.reset().fixed(record.y[cell], 4).toString(), decimal(in.getShort() & 0xFFFF, 4));
+                assertEquals(writer.reset().fixed(record.b[cell], 2).toString(), decimal(in.get() & 0xFF, 2));
+            }
+            in.position(end);
+        }
+        assertEquals(batch.binary.length, in.position());
+    }
+
+    @Test
+    public void serverFixturesAreCurrent() throws IOException {
+        Batch batch = batch();
+        File binary = new File(FIXTURES, "signatures.bin");
+        File json = new File(FIXTURES, "signatures.json");
+        if (Boolean.getBoolean("netra.updateFixtures")) {
+            Files.write(binary.toPath(), batch.binary);
+            Files.write(json.toPath(), batch.json.getBytes(StandardCharsets.UTF_8));
+        }
+        assertArrayEquals("signatures.bin is stale", batch.binary, Files.readAllBytes(binary.toPath()));
+        assertEquals("signatures.json is stale", batch.json,
+                new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8));
+    }
+
+    private static String decimal(int k, int decimals) {
+        return BigDecimal.valueOf(k, decimals).toPlainString();
+    }
+
+    private static final class Batch {
+        final List<SignatureRecord> records = new ArrayList<>();
+        byte[] binary;
+        String json;
+    }
+
+    /**
+     * Three signatures as UploadOutbox sends them: one from a generated photo with its
+     * pyramid, one full of edge values without a pyramid, one with non-ASCII strings.
+     */
+    private static Batch batch() {
+        Batch batch = new Batch();
+        List<byte[]> binaries = new ArrayList<>();
+        StringBuilder json = new StringBuilder("{\"signatures\": [");
+
+        int width = 800;
+        int height = 600;
+        ParallelConstellationExtractor engine = new ParallelConstellationExtractor(1, 256 * 1024);
+        SignatureExtractor.Result result;
+        try {
+            result = new SignatureExtractor(engine, 256 * 1024, 400, 400)
+                    .extract(new IntArrayPixelSource(SyntheticImages.sceneFrame(width, height, 3), width, height),
+                            0, 0, ImageOrientation.NORMAL);
+        } finally {
+            engine.shutdown();
+        }
+        ImageInfo info = new ImageInfo(1001, "IMG_1001.jpg", width, height, 250000, "content://media/1001");
+        add(batch, binaries, json, "tester", "Pixel 8", SignatureRecord.of(info, 1700000000000L, 0, result.constellation),
+                result.pyramid);
+
+        int cells = SignatureStore.GRID_SIZE * SignatureStore.GRID_SIZE;
+        float[] x = new float[cells];
+        float[] y = new float[cells];
+        float[] b = new float[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            x[cell] = EDGES[cell % EDGES.length];
+            y[cell] = EDGES[(cell + 5) % EDGES.length];
+            b[cell] = EDGES[(cell + 11) % EDGES.length];
+        }
+        add(batch, binaries, json, "tester", "Pixel 8",
+                new SignatureRecord(1002, 0, 4000, 3000, 0, 0, "edges.jpg", SignatureStore.GRID_SIZE, x, y, b), null);
+
+        Random random = new Random(2);
+        x = new float[cells];
+        y = new float[cells];
+        b = new float[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            x[cell] = random.nextFloat();
+            y[cell] = random.nextFloat();
+            b[cell] = random.nextFloat();
+        }
+        add(batch, binaries, json, "Zoë \"Z\" Østergård", "Galaxy S24 – 日本",
+                new SignatureRecord(-3, 0, 4000, 3000, 0, 0, "random.jpg", SignatureStore.GRID_SIZE, x, y, b), null);
+
+        batch.binary = SignatureWireFormat.encodeBatch(binaries);
+        batch.json = json.append("]}").toString();
+        return batch;
+    }
+
+    private static void add(Batch batch, List<byte[]> binaries, StringBuilder json, String author, String device,
+                            SignatureRecord record, ConstellationPyramid pyramid) {
+        String key = SignaturePayload.idempotencyKey(INSTALL_ID, record.imageId);
+        String timestamp = "2024-01-01 00:00:00";
+        if (!batch.records.isEmpty()) json.append(", ");
+        json.append(SignaturePayload.toJson(record.imageId, author, device, timestamp, key, record, pyramid));
+        binaries.add(SignatureWireFormat.encode(record.imageId, author, device, timestamp, key, record, pyramid));
+        batch.records.add(record);
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** StrandFileWriter output read back by StrandFileReader, and the ops at their limits. */
+public class StrandFileTest {
+
+    /** One column over the whole height, so a 1-pixel-wide image is the strand. */
+    private static final StrandLayout ONE_COLUMN = new StrandLayout(9, "1V",
+            StrandLayout.column(0.5, 1, 1, 0, "all"));
+
+    // Each pixel against the one before it (black before the first), and the bytes it must encode to
+    private static final int[] OPS_PIXELS = concat(
+            new int[]{
+                    0x000000, // same as the starting black: run of 1
+                    0xFFFFFF, // -1 per channel wrapping 0 -> 255: diff
+                    0x000000, // +1 wrapping 255 -> 0: diff
+                    0xFEFEFE, // -2: diff
+                    0x000000, // +2: luma
+                    0xD8E0E7, // dg -32, dr - dg -8, db - dg 7: luma
+                    0xFEFFFE, // dg 31, dr - dg 7, db - dg -8: luma
+                    0x1E1F1E, // dg 32 after wrapping: raw
+                    0x261F1E, // dr - dg 8: raw
+            },
+            repeat(0x261F1E, 150), // runs of 64, 64 and 22
+            new int[]{0x271F1E}, // dr +1: diff
+            repeat(0x271F1E, 64)); // exactly one full run, nothing left to flush
+    private static final int[] OPS_BYTES = {
+            0x00, 0x55, 0x7F, 0x40, 0xA2, 0x88, 0x80, 0x0F, 0xBF, 0xF0,
+            0xFF, 0x1E, 0x1F, 0x1E, 0xFF, 0x26, 0x1F, 0x1E,
+            0x3F, 0x3F, 0x15, 0x7A, 0x3F,
+    };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void opsAtTheirLimitsEncodeAsSpecifiedAndRoundTrip() throws IOException {
+        StrandSampler strands = sample(ONE_COLUMN, opaque(OPS_PIXELS), 1, OPS_PIXELS.length);
+        File file = write(strands);
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] encoded = Arrays.copyOfRange(bytes, bytes.length - 4 - OPS_BYTES.length, bytes.length - 4);
+        for (int i = 0; i < OPS_BYTES.length; i++) {
+            assertEquals("byte " + i, OPS_BYTES[i], encoded[i] & 0xFF);
+        }
+        assertEquals(OPS_PIXELS.length,
+                ByteBuffer.wrap(bytes).getInt(bytes.length - 4 - OPS_BYTES.length - 4));
+
+        StrandData data = StrandFileReader.read(file);
+        assertArrayEquals(opaque(OPS_PIXELS), data.pixels[0]);
+    }
+
+    @Test
+    public void samplerRoundTripsWithHeader() throws IOException {
+        // Rows coloured so each of the three strands sees runs, wraps, small and large steps
+        int width = 24;
+        int height = 900;
+        Random random = new Random(4);
+        int[] rows = new int[height];
+        for (int y = 0; y < height; y++) {
+            int prev = y == 0 ? 0 : rows[y - 1];
+            switch (y / 20 % 5) {
+                case 0: rows[y] = prev; break;
+                case 1: rows[y] = step(prev, random.nextInt(4) - 2, random.nextInt(4) - 2, random.nextInt(4) - 2); break;
+                case 2: rows[y] = step(prev, random.nextInt(80) - 40, random.nextInt(64) - 32, random.nextInt(80) - 40); break;
+                case 3: rows[y] = random.nextInt(0x1000000); break;
+                default: rows[y] = OPS_PIXELS[y % OPS_PIXELS.length]; break;
+            }
+        }
+        int[] frame = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(frame, y * width, (y + 1) * width, 0xFF000000 | rows[y]);
+        }
+
+        StrandSampler strands = sample(StrandLayout.THREE_VERTICAL, frame, width, height);
+        StrandData data = StrandFileReader.read(write(strands));
+
+        assertEquals(StrandFileWriter.VERSION, data.version);
+        assertEquals(StrandLayout.THREE_VERTICAL.getId(), data.layout);
+        assertEquals(123456789012L, data.imageId);
+        assertEquals(width, data.width);
+        assertEquals(height, data.height);
+        assertEquals(strands.getStrandLength(), data.strandHeight);
+        assertEquals(4_200_000L, data.fileSize);
+        assertEquals("IMG_0001 été.jpg", data.displayName);
+        assertEquals("content://media/external/images/media/42", data.uri);
+        assertEquals("2024-06-01 12:00:00", data.timestamp);
+        assertEquals("", data.capturedBy); // written as null
+        assertStrandsEqual(strands, data);
+    }
+
+    @Test
+    public void everyDirectionRoundTrips() throws IOException {
+        int width = 641;
+        int height = 479;
+        int[] frame = SyntheticImages.syntheticFrame(width, height, 8);
+        StrandSampler strands = sample(StrandLayout.GRID_AND_DIAGONALS, frame, width, height);
+        StrandData data = StrandFileReader.read(write(strands));
+
+        assertEquals(StrandLayout.GRID_AND_DIAGONALS.getId(), data.layout);
+        assertStrandsEqual(strands, data);
+    }
+
+    @Test
+    public void readsVersion1Files() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putInt(StrandFileWriter.MAGIC);
+        buffer.put((byte) 1);
+        buffer.put((byte) StrandFileWriter.LAYOUT_3_VERTICAL);
+        buffer.putShort((short) 2);
+        buffer.putLong(77);
+        buffer.putInt(100);
+        buffer.putInt(90);
+        buffer.putInt(30);
+        buffer.putLong(5000);
+        for (String value : new String[]{"a.jpg", "content://a", "2020-01-01 00:00:00", "me"}) {
+            byte[] text = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) text.length);
+            buffer.put(text);
+        }
+        // No direction byte: x, y, count, then the pixels
+        buffer.putInt(15).putInt(60).putInt(4);
+        buffer.put(new byte[]{(byte) 0xFF, 10, 20, 30, 0x02});
+        buffer.putInt(50).putInt(30).putInt(1);
+        buffer.put((byte) 0x55);
+        File file = writeWithCrc(buffer);
+
+        StrandData data = StrandFileReader.read(file);
+        assertEquals(1, data.version);
+        assertEquals(77, data.imageId);
+        assertEquals(30, data.strandHeight);
+        assertEquals("me", data.capturedBy);
+        assertArrayEquals(new StrandLayout.Direction[]{StrandLayout.Direction.COLUMN, StrandLayout.Direction.COLUMN},
+                data.direction);
+        assertArrayEquals(new int[]{15, 50}, data.x);
+        assertArrayEquals(new int[]{60, 30}, data.yStart);
+        assertArrayEquals(opaque(new int[]{0x0A141E, 0x0A141E, 0x0A141E, 0x0A141E}), data.pixels[0]);
+        assertArrayEquals(opaque(new int[]{0xFFFFFF}), data.pixels[1]);
+    }
+
+    @Test
+    public void damagedFilesAreRejected() throws IOException {
+        StrandSampler strands = sample(ONE_COLUMN, opaque(OPS_PIXELS), 1, OPS_PIXELS.length);
+        byte[] good = Files.readAllBytes(write(strands).toPath());
+
+        byte[] flipped = good.clone();
+        flipped[good.length / 2] ^= 0x10;
+        assertRejected(flipped, "CRC mismatch");
+        assertRejected(Arrays.copyOf(good, good.length - 1), "CRC mismatch");
+        assertRejected(Arrays.copyOf(good, 6), "Not a strand file");
+
+        // Damage the CRC still vouches for
+        ByteBuffer magic = ByteBuffer.wrap(good.clone(), 0, good.length - 4);
+        magic.put(0, (byte) 'X');
+        assertRejected(Files.readAllBytes(writeWithCrc(magic).toPath()), "Bad strand file magic");
+
+        ByteBuffer version = ByteBuffer.wrap(good.clone(), 0, good.length - 4);
+        version.put(4, (byte) (StrandFileWriter.VERSION + 1));
+        assertRejected(Files.readAllBytes(writeWithCrc(version).toPath()), "Unsupported strand file version");
+
+        ByteBuffer overrun = ByteBuffer.wrap(good.clone(), 0, good.length - 4);
+        overrun.put(good.length - 6, (byte) 0x3F); // the last diff becomes a run the final run overflows
+        assertRejected(Files.readAllBytes(writeWithCrc(overrun).toPath()), "overflows");
+
+        ByteBuffer truncated = ByteBuffer.wrap(good.clone(), 0, good.length - 10);
+        assertRejected(Files.readAllBytes(writeWithCrc(truncated).toPath()), "Truncated");
+    }
+
+    private static StrandSampler sample(StrandLayout layout, int[] frame, int width, int height) {
+        StrandSampler strands = new StrandSampler(width, height, width, height, ImageOrientation.NORMAL, layout);
+        strands.acceptRows(0, height, frame, 0, width);
+        return strands;
+    }
+
+    private File write(StrandSampler strands) throws IOException {
+        File file = folder.newFile();
+        new StrandFileWriter().write(file, 123456789012L, "IMG_0001 été.jpg",
+                "content://media/external/images/media/42", "2024-06-01 12:00:00", null, 4_200_000L, strands);
+        return file;
+    }
+
+    /** The buffer's bytes up to its position (or limit, if nothing was put) followed by their CRC32. */
+    private File writeWithCrc(ByteBuffer buffer) throws IOException {
+        int length = buffer.position() > 0 ? buffer.position() : buffer.limit();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length);
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array(), 0, length);
+            out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        }
+        return file;
+    }
+
+    private void assertRejected(byte[] bytes, String message) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        try {
+            StrandFileReader.read(file);
+            fail("read must reject a file expecting \"" + message + "\"");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(message));
+        }
+    }
+
+    private static void assertStrandsEqual(StrandSampler expected, StrandData actual) {
+        assertEquals(expected.getStrandCount(), actual.pixels.length);
+        for (int s = 0; s < expected.getStrandCount(); s++) {
+            String strand = "strand " + (s + 1);
+            assertEquals(strand, expected.getDirection(s), actual.direction[s]);
+            assertEquals(strand, expected.getX(s), actual.x[s]);
+            assertEquals(strand, expected.getYStart(s), actual.yStart[s]);
+            int[] pixels = new int[expected.getCount(s)];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = 0xFF000000 | expected.getPixel(s, i);
+            }
+            assertArrayEquals(strand, pixels, actual.pixels[s]);
+        }
+    }
+
+    private static int step(int pixel, int dr, int dg, int db) {
+        int r = ((pixel >> 16) + dr) & 0xFF;
+        int g = ((pixel >> 8) + dg) & 0xFF;
+        int b = (pixel + db) & 0xFF;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int[] opaque(int[] rgb) {
+        int[] argb = new int[rgb.length];
+        for (int i = 0; i < rgb.length; i++) {
+            argb[i] = 0xFF000000 | rgb[i];
+        }
+        return argb;
+    }
+
+    private static int[] repeat(int pixel, int count) {
+        int[] pixels = new int[count];
+        Arrays.fill(pixels, pixel);
+        return pixels;
+    }
+
+    private static int[] concat(int[]... parts) {
+        int length = 0;
+        for (int[] part : parts) length += part.length;
+        int[] all = new int[length];
+        int at = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, all, at, part.length);
+            at += part.length;
+        }
+        return all;
+    }
+}
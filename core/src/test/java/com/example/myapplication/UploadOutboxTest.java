@@ -0,0 +1,327 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+/** UploadOutbox against a local stub of the batch-register endpoint. */
+public class UploadOutboxTest {
+
+    private static final long TIMEOUT_MS = 15000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+    private File journal;
+    private Metrics metrics;
+    private RecordingListener listener;
+    private final List<UploadOutbox> outboxes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        journal = new File(folder.getRoot(), "outbox.journal");
+        metrics = new Metrics();
+        listener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() {
+        for (UploadOutbox outbox : outboxes) {
+            outbox.stop();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void uploadsEachEntryOnceAndForgetsIt() throws Exception {
+        UploadOutbox outbox = start(20);
+        for (int i = 1; i <= 3; i++) {
+            outbox.enqueue(i, "key-" + i, payload(i));
+        }
+        await(() -> outbox.getPendingCount() == 0 && listener.uploaded() == 3);
+
+        StringBuilder body = new StringBuilder();
+        for (Request request : server.requests()) {
+            body.append(request.body);
+        }
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(body.toString(), 1, count(body.toString(), "\"image_id\": \"" + i + "\""));
+        }
+        assertEquals(3, metrics.counter("upload.signatures").get());
+
+        outbox.stop();
+        assertEquals(0, start(20).getPendingCount());
+    }
+
+    @Test
+    public void endpointErrorsKeepTheBatchAndBackOff() throws Exception {
+        server.script(404, "{\"error\": \"not found\"}");
+        server.script(401, "");
+        UploadOutbox outbox = start(20);
+        outbox.enqueue(1, "key-1", payload(1));
+        await(() -> server.requests().size() == 1);
+
+        // A capture during the backoff must not cut it short
+        outbox.enqueue(2, "key-2", payload(2));
+        await(() -> outbox.getPendingCount() == 0 && listener.uploaded() == 2);
+
+        List<Request> requests = server.requests();
+        assertEquals(3, requests.size());
+        long firstGap = requests.get(1).atMs - requests.get(0).atMs;
+        long secondGap = requests.get(2).atMs - requests.get(1).atMs;
+        assertTrue("first retry after " + firstGap + " ms", firstGap >= 1000);
+        assertTrue("second retry after " + secondGap + " ms", secondGap >= 2000);
+        assertEquals(2, count(requests.get(2).body, "\"image_id\""));
+        assertEquals(2, metrics.counter("upload.batches.failed").get());
+        assertEquals(2, metrics.counter("upload.signatures").get());
+        assertEquals(0, metrics.counter("upload.signatures.rejected").get());
+    }
+
+    @Test
+    public void entriesRejectedOneByOneAreDropped() throws Exception {
+        prefill(3);
+        server.script(200, "{\"success\": true, \"results\": [], \"rejected\": [1]}");
+        UploadOutbox outbox = start(20);
+        await(() -> outbox.getPendingCount() == 0 && listener.uploaded() == 2);
+
+        assertEquals(1, server.requests().size());
+        assertEquals(1, metrics.counter("upload.signatures.rejected").get());
+        assertEquals(2, metrics.counter("upload.signatures").get());
+        assertEquals(2, listener.uploaded());
+        assertEquals(Collections.singletonList(0L), listener.failures());
+    }
+
+    @Test
+    public void countRejectedReadsIndexesIntoTheBatch() {
+        assertEquals(0, UploadOutbox.countRejected("{\"success\": true}", 3));
+        assertEquals(0, UploadOutbox.countRejected("{\"rejected\": []}", 3));
+        assertEquals(2, UploadOutbox.countRejected("{\"results\": [{\"id\": 1}], \"rejected\": [0, 2]}", 3));
+        assertEquals(1, UploadOutbox.countRejected("{\"rejected\": [1, 1, 7, -1, \"x\"]}", 3));
+    }
+
+    @Test
+    public void binaryFallsBackToJsonOnlyOn415() throws Exception {
+        server.script(400, "");
+        server.script(415, "");
+        UploadOutbox outbox = start(20);
+        outbox.preferBinary(true);
+        outbox.enqueue(1, "key-1", payload(1), new byte[]{1, 2, 3});
+        await(() -> outbox.getPendingCount() == 0 && listener.uploaded() == 1);
+
+        List<Request> requests = server.requests();
+        assertEquals(3, requests.size());
+        assertEquals(SignatureWireFormat.CONTENT_TYPE, requests.get(0).contentType);
+        assertEquals(SignatureWireFormat.CONTENT_TYPE, requests.get(1).contentType);
+        assertTrue(requests.get(2).contentType.startsWith("application/json"));
+        // The 415 is answered by resending at once, the 400 with a backoff
+        long retryGap = requests.get(1).atMs - requests.get(0).atMs;
+        long resendGap = requests.get(2).atMs - requests.get(1).atMs;
+        assertTrue("retry after " + retryGap + " ms", retryGap >= 1000);
+        assertTrue("resend after " + resendGap + " ms", resendGap < 1000);
+    }
+
+    @Test
+    public void payloadTooLargeHalvesTheBatch() throws Exception {
+        prefill(5);
+        server.script(413, "");
+        UploadOutbox outbox = start(4);
+        await(() -> outbox.getPendingCount() == 0 && listener.uploaded() == 5);
+
+        List<Request> requests = server.requests();
+        assertEquals(4, count(requests.get(0).body, "\"image_id\""));
+        assertEquals(2, count(requests.get(1).body, "\"image_id\""));
+        assertEquals(5, metrics.counter("upload.signatures").get());
+    }
+
+    @Test
+    public void pendingEntriesSurviveARestart() throws Exception {
+        server.script(503, "");
+        UploadOutbox offline = start(20);
+        offline.enqueue(1, "key-1", payload(1));
+        offline.enqueue(2, "key-2", payload(2), new byte[]{4, 5});
+        await(() -> server.requests().size() == 1);
+        offline.stop();
+        assertEquals(2, offline.getPendingCount());
+
+        UploadOutbox online = start(20);
+        assertEquals(2, online.getPendingCount());
+        await(() -> online.getPendingCount() == 0 && listener.uploaded() == 2);
+        assertEquals(2, metrics.counter("upload.signatures").get());
+    }
+
+    @Test
+    public void enqueueAfterStopThrows() throws Exception {
+        UploadOutbox outbox = start(20);
+        outbox.stop();
+        try {
+            outbox.enqueue(1, "key-1", payload(1));
+            fail("enqueue after stop() must throw");
+        } catch (IOException expected) {
+            assertFalse(journal.length() > 0);
+        }
+    }
+
+    // ==========================================
+    // HELPERS
+    // ==========================================
+
+    private UploadOutbox start(int batchSize) throws IOException {
+        UploadOutbox outbox = new UploadOutbox(journal, server.url(), batchSize, metrics, listener);
+        outboxes.add(outbox);
+        outbox.start();
+        return outbox;
+    }
+
+    /** Journals entries 1..count through an outbox that cannot reach any server. */
+    private void prefill(int count) throws IOException {
+        UploadOutbox offline = new UploadOutbox(journal, new URL("http://127.0.0.1:1/register/batch"), 20,
+                new Metrics(), new RecordingListener());
+        offline.start();
+        try {
+            for (int i = 1; i <= count; i++) {
+                offline.enqueue(i, "key-" + i, payload(i));
+            }
+        } finally {
+            offline.stop();
+        }
+    }
+
+    private static String payload(long imageId) {
+        return "{\"image_id\": \"" + imageId + "\", \"constellation\": []}";
+    }
+
+    private static int count(String text, String needle) {
+        int count = 0;
+        for (int i = text.indexOf(needle); i >= 0; i = text.indexOf(needle, i + 1)) count++;
+        return count;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class Request {
+        final long atMs;
+        final String contentType;
+        final String body;
+
+        Request(long atMs, String contentType, String body) {
+            this.atMs = atMs;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /** Answers with the scripted replies in order, then 200 with an empty result. */
+    private static final class StubServer {
+        private final HttpServer http;
+        private final ArrayDeque<Object[]> replies = new ArrayDeque<>();
+        private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+
+        StubServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.createContext("/register/batch", exchange -> {
+                String body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[4096];
+                    int n;
+                    while ((n = in.read(chunk)) != -1) bytes.write(chunk, 0, n);
+                    body = new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+                }
+                requests.add(new Request(System.currentTimeMillis(),
+                        exchange.getRequestHeaders().getFirst("Content-Type"), body));
+
+                Object[] reply;
+                synchronized (replies) {
+                    reply = replies.poll();
+                }
+                int code = reply != null ? (Integer) reply[0] : 200;
+                byte[] response = (reply != null ? (String) reply[1] : "{\"success\": true, \"results\": []}")
+                        .getBytes(StandardCharsets.UTF_8);
+                // No keep-alive: the JDK server can take a second to pick up a reused connection,
+                // which would blur the timing the tests check
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(code, response.length == 0 ? -1 : response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            http.start();
+        }
+
+        URL url() throws IOException {
+            return new URL("http://127.0.0.1:" + http.getAddress().getPort() + "/register/batch");
+        }
+
+        void script(int code, String body) {
+            synchronized (replies) {
+                replies.add(new Object[]{code, body});
+            }
+        }
+
+        List<Request> requests() {
+            synchronized (requests) {
+                return new ArrayList<>(requests);
+            }
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+    }
+
+    private static final class RecordingListener implements UploadOutbox.Listener {
+        private final List<Long> failures = Collections.synchronizedList(new ArrayList<>());
+        private volatile int uploaded;
+
+        @Override
+        public synchronized void onBatchUploaded(int count, int pending) {
+            uploaded += count;
+        }
+
+        @Override
+        public void onUploadFailed(Exception e, long retryInMs) {
+            failures.add(retryInMs);
+        }
+
+        int uploaded() {
+            return uploaded;
+        }
+
+        List<Long> failures() {
+            synchronized (failures) {
+                return new ArrayList<>(failures);
+            }
+        }
+    }
+}
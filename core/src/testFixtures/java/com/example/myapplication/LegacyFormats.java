@@ -0,0 +1,99 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+
+/**
+ * The code paths this tree replaced, kept as references: the tests check the new
+ * paths still give the same output, and the benchmarks time both.
+ */
+public final class LegacyFormats {
+
+    private LegacyFormats() {
+    }
+
+    /** Straight port of MainActivity's original getPixel loop, with pixels[] standing in for the Bitmap. */
+    public static String constellation(int[] pixels, int width, int height) {
+        int gridSize = 8;
+        float cellW = width / (float) gridSize;
+        float cellH = height / (float) gridSize;
+
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("[\n");
+
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                int startX = (int) (col * cellW);
+                int startY = (int) (row * cellH);
+                int w = (int) cellW;
+                int h = (int) cellH;
+
+                if (startX + w > width) w = width - startX;
+                if (startY + h > height) h = height - startY;
+
+                float maxVal = -1;
+                int maxX = 0;
+                int maxY = 0;
+
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        int pixel = pixels[(startY + y) * width + startX + x];
+                        float brightness = (0.299f * ((pixel >> 16) & 0xFF)) + (0.587f * ((pixel >> 8) & 0xFF)) + (0.114f * (pixel & 0xFF));
+
+                        if (brightness > maxVal) {
+                            maxVal = brightness;
+                            maxX = x;
+                            maxY = y;
+                        }
+                    }
+                }
+
+                float normX = (startX + maxX) / (float) width;
+                float normY = (startY + maxY) / (float) height;
+                float normB = maxVal / 255.0f;
+
+                jsonBuilder.append(String.format(Locale.US, "  { \"row\": %d, \"col\": %d, \"x\": %.4f, \"y\": %.4f, \"b\": %.2f }", row, col, normX, normY, normB));
+
+                if (row < gridSize - 1 || col < gridSize - 1) jsonBuilder.append(",\n");
+                else jsonBuilder.append("\n");
+            }
+        }
+        jsonBuilder.append("]");
+        return jsonBuilder.toString();
+    }
+
+    /** The per-cell String.format serialization this tree used before SignatureJsonWriter. */
+    public static String constellationJson(SignatureRecord record) {
+        int grid = record.gridSize;
+        StringBuilder jsonBuilder = new StringBuilder("[\n");
+        for (int cell = 0; cell < grid * grid; cell++) {
+            jsonBuilder.append(String.format(Locale.US, "  { \"row\": %d, \"col\": %d, \"x\": %.4f, \"y\": %.4f, \"b\": %.2f }",
+                    cell / grid, cell % grid, record.x[cell], record.y[cell], record.b[cell]));
+            jsonBuilder.append(cell < grid * grid - 1 ? ",\n" : "\n");
+        }
+        return jsonBuilder.append("]").toString();
+    }
+
+    public static String pyramidJson(ConstellationPyramid pyramid) {
+        StringBuilder jsonBuilder = new StringBuilder("[");
+        for (int k = pyramid.getLevels() - 1; k >= 0; k--) {
+            int grid = pyramid.getGridSize(k);
+            jsonBuilder.append(String.format(Locale.US, "{\"grid\": %d, \"stars\": [\n", grid));
+            for (int cell = 0; cell < grid * grid; cell++) {
+                int row = cell / grid;
+                int col = cell % grid;
+                jsonBuilder.append(String.format(Locale.US, "  { \"row\": %d, \"col\": %d, \"x\": %.4f, \"y\": %.4f, \"b\": %.2f }",
+                        row, col, pyramid.getStarX(k, row, col), pyramid.getStarY(k, row, col), pyramid.getBrightness(k, row, col)));
+                jsonBuilder.append(cell < grid * grid - 1 ? ",\n" : "\n");
+            }
+            jsonBuilder.append(k > 0 ? "]}, " : "]}");
+        }
+        return jsonBuilder.append("]").toString();
+    }
+
+    public static String payload(long imageId, String author, String deviceModel, String timestamp, String key,
+                                        SignatureRecord record, ConstellationPyramid pyramid) {
+        return String.format(
+                "{\"image_id\": \"%d\", \"author\": \"%s\", \"device_model\": \"%s\", \"timestamp\": \"%s\", \"idempotency_key\": \"%s\", \"constellation\": %s, \"pyramid\": %s}",
+                imageId, author, deviceModel, timestamp, key, constellationJson(record), pyramidJson(pyramid));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.myapplication;
+
+import java.util.Random;
+
+/**
+ * server.js's calculateMatchScore ported line for line, with the signatures as the
+ * server sees them, as the reference SignatureMatcher is checked and timed against.
+ */
+public final class ServerPort {
+
+    private ServerPort() {
+    }
+
+    /** A random star inside each cell, as real constellations have. */
+    public static void cellStars(Random random, float[] x, float[] y) {
+        int grid = SignatureStore.GRID_SIZE;
+        for (int cell = 0; cell < x.length; cell++) {
+            x[cell] = (cell % grid + random.nextFloat()) / grid;
+            y[cell] = (cell / grid + random.nextFloat()) / grid;
+        }
+    }
+
+    /** The doubles the server parses from the 4-decimal JSON. */
+    public static double[] asParsedJson(float[] values) {
+        double[] parsed = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Math.round(values[i] * (double) SignatureMatcher.SCALE) / (double) SignatureMatcher.SCALE;
+        }
+        return parsed;
+    }
+
+    public static float[] randomStars(Random random) {
+        float[] values = new float[DuplicateIndex.CELLS];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+
+    /** calculateMatchScore from server.js, line for line: linear search by (row, col). */
+    public static double serverScore(double[] ux, double[] uy, double[] ox, double[] oy) {
+        int grid = SignatureStore.GRID_SIZE;
+        int gridPoints = ux.length;
+        double totalDist = 0;
+
+        for (int i = 0; i < gridPoints; i++) {
+            int row = i / grid;
+            int col = i % grid;
+            int found = -1;
+            for (int j = 0; j < ox.length; j++) {
+                if (j / grid == row && j % grid == col) {
+                    found = j;
+                    break;
+                }
+            }
+
+            if (found >= 0) {
+                totalDist += Math.sqrt(Math.pow(ux[i] - ox[found], 2) + Math.pow(uy[i] - oy[found], 2));
+            } else {
+                totalDist += 0.5;
+            }
+        }
+
+        double avgDist = totalDist / gridPoints;
+        return Math.max(0, 100 - avgDist * 500);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.myapplication;
+
+import java.util.Random;
+
+/**
+ * Generated test images and the edits a photo goes through after capture, for the
+ * tests and the JMH benchmarks; no image codec involved, so results are the same on
+ * every JVM.
+ */
+public final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    /** Photo-like frame: soft light blobs over a gradient, with mild sensor noise. */
+    public static int[] sceneFrame(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int blobs = 40;
+        float[] bx = new float[blobs];
+        float[] by = new float[blobs];
+        float[] radius = new float[blobs];
+        float[] strength = new float[blobs];
+        for (int i = 0; i < blobs; i++) {
+            bx[i] = random.nextFloat() * width;
+            by[i] = random.nextFloat() * height;
+            radius[i] = (0.01f + random.nextFloat() * 0.08f) * width;
+            strength[i] = 60 + random.nextFloat() * 150;
+        }
+
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float v = 30 + 40f * x / width;
+                for (int i = 0; i < blobs; i++) {
+                    float dx = (x - bx[i]) / radius[i];
+                    float dy = (y - by[i]) / radius[i];
+                    float d2 = dx * dx + dy * dy;
+                    if (d2 < 9) v += strength[i] * (float) Math.exp(-d2);
+                }
+                int base = (int) v + random.nextInt(9) - 4;
+                int r = clamp(base + 10);
+                int g = clamp(base);
+                int b = clamp(base - 15);
+                pixels[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    /** Noise plus a few smooth gradients and saturated highlights, so ties actually happen. */
+    public static int[] syntheticFrame(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int base = y * width;
+            for (int x = 0; x < width; x++) {
+                int r = ((x * 255) / width + random.nextInt(32)) & 0xFF;
+                int g = ((y * 255) / height + random.nextInt(32)) & 0xFF;
+                int b = random.nextInt(256);
+                if (random.nextInt(1000) == 0) {
+                    r = g = b = 255;
+                }
+                pixels[base + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    /** Area-average resize by factor; outSize receives the new dimensions. */
+    public static int[] resize(int[] pixels, int width, int height, double factor, int[] outSize) {
+        int outW = Math.max(1, (int) Math.round(width * factor));
+        int outH = Math.max(1, (int) Math.round(height * factor));
+        int[] out = new int[outW * outH];
+
+        for (int oy = 0; oy < outH; oy++) {
+            int y0 = oy * height / outH;
+            int y1 = Math.max(y0 + 1, (oy + 1) * height / outH);
+            for (int ox = 0; ox < outW; ox++) {
+                int x0 = ox * width / outW;
+                int x1 = Math.max(x0 + 1, (ox + 1) * width / outW);
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        int p = pixels[y * width + x];
+                        r += (p >> 16) & 0xFF;
+                        g += (p >> 8) & 0xFF;
+                        b += p & 0xFF;
+                    }
+                }
+                int n = (y1 - y0) * (x1 - x0);
+                out[oy * outW + ox] = 0xFF000000 | ((r / n) << 16) | ((g / n) << 8) | (b / n);
+            }
+        }
+        outSize[0] = outW;
+        outSize[1] = outH;
+        return out;
+    }
+
+    private static final int[] LUMA_QUANT = {
+            16, 11, 10, 16, 24, 40, 51, 61, 12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56, 14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77, 24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101, 72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    private static final int[] CHROMA_QUANT = {
+            17, 18, 24, 47, 99, 99, 99, 99, 18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99, 47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    /**
+     * Baseline-JPEG-style round trip (YCbCr, 8x8 DCT, standard tables scaled to the
+     * given quality, no chroma subsampling) without depending on an image codec.
+     */
+    public static int[] jpegRoundTrip(int[] pixels, int width, int height, int quality, int[] outSize) {
+        int scale = quality < 50 ? 5000 / quality : 200 - 2 * quality;
+        int[][] quant = new int[2][64];
+        for (int i = 0; i < 64; i++) {
+            quant[0][i] = Math.max(1, Math.min(255, (LUMA_QUANT[i] * scale + 50) / 100));
+            quant[1][i] = Math.max(1, Math.min(255, (CHROMA_QUANT[i] * scale + 50) / 100));
+        }
+
+        double[][] cos = new double[8][8];
+        for (int x = 0; x < 8; x++) {
+            for (int u = 0; u < 8; u++) {
+                cos[x][u] = Math.cos((2 * x + 1) * u * Math.PI / 16) * (u == 0 ? Math.sqrt(0.125) : 0.5);
+            }
+        }
+
+        double[][] planes = new double[3][width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = (pixels[i] >> 16) & 0xFF;
+            int g = (pixels[i] >> 8) & 0xFF;
+            int b = pixels[i] & 0xFF;
+            planes[0][i] = 0.299 * r + 0.587 * g + 0.114 * b - 128;
+            planes[1][i] = -0.168736 * r - 0.331264 * g + 0.5 * b;
+            planes[2][i] = 0.5 * r - 0.418688 * g - 0.081312 * b;
+        }
+
+        double[] blockIn = new double[64];
+        double[] tmp = new double[64];
+        double[] coef = new double[64];
+        for (int c = 0; c < 3; c++) {
+            int[] q = quant[c == 0 ? 0 : 1];
+            double[] plane = planes[c];
+            for (int by = 0; by < height; by += 8) {
+                for (int bx = 0; bx < width; bx += 8) {
+                    for (int y = 0; y < 8; y++) {
+                        for (int x = 0; x < 8; x++) {
+                            int px = Math.min(width - 1, bx + x);
+                            int py = Math.min(height - 1, by + y);
+                            blockIn[y * 8 + x] = plane[py * width + px];
+                        }
+                    }
+                    // Separable forward DCT, quantize, inverse DCT
+                    for (int y = 0; y < 8; y++) {
+                        for (int u = 0; u < 8; u++) {
+                            double s = 0;
+                            for (int x = 0; x < 8; x++) s += blockIn[y * 8 + x] * cos[x][u];
+                            tmp[y * 8 + u] = s;
+                        }
+                    }
+                    for (int u = 0; u < 8; u++) {
+                        for (int v = 0; v < 8; v++) {
+                            double s = 0;
+                            for (int y = 0; y < 8; y++) s += tmp[y * 8 + u] * cos[y][v];
+                            coef[v * 8 + u] = Math.round(s / q[v * 8 + u]) * q[v * 8 + u];
+                        }
+                    }
+                    for (int u = 0; u < 8; u++) {
+                        for (int y = 0; y < 8; y++) {
+                            double s = 0;
+                            for (int v = 0; v < 8; v++) s += coef[v * 8 + u] * cos[y][v];
+                            tmp[y * 8 + u] = s;
+                        }
+                    }
+                    for (int y = 0; y < 8 && by + y < height; y++) {
+                        for (int x = 0; x < 8 && bx + x < width; x++) {
+                            double s = 0;
+                            for (int u = 0; u < 8; u++) s += tmp[y * 8 + u] * cos[x][u];
+                            plane[(by + y) * width + bx + x] = s;
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] out = new int[pixels.length];
+        for (int i = 0; i < out.length; i++) {
+            double yy = planes[0][i] + 128;
+            double cb = planes[1][i];
+            double cr = planes[2][i];
+            int r = clamp((int) Math.round(yy + 1.402 * cr));
+            int g = clamp((int) Math.round(yy - 0.344136 * cb - 0.714136 * cr));
+            int b = clamp((int) Math.round(yy + 1.772 * cb));
+            out[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        outSize[0] = width;
+        outSize[1] = height;
+        return out;
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : Math.min(255, v);
+    }
+}
@@ -3,6 +3,9 @@ const path = require('path');
 let dbType = 'sqlite';
 let sqliteDb;
 let pgClient;
+let schemaReady;
+// Resolves once the tables and indexes exist
+exports.ready = new Promise(resolve => { schemaReady = resolve; });
 
 // 1. Determine DB Type based on Env Var
 if (process.env.DATABASE_URL) {
@@ -32,7 +35,8 @@ if (process.env.DATABASE_URL) {
     // Lazy load sqlite3
     const sqlite3 = require('sqlite3').verbose();
     
-    const dbPath = path.resolve(__dirname, 'proofkrypt.db');
+    // SQLITE_PATH=:memory: gives the tests a throwaway database
+    const dbPath = process.env.SQLITE_PATH || path.resolve(__dirname, 'proofkrypt.db');
     sqliteDb = new sqlite3.Database(dbPath, (err) => {
         if (err) console.error('Could not connect to SQLite', err);
         else {
@@ -56,11 +60,18 @@ function initSchema() {
                 device_model TEXT,
                 timestamp TEXT,
                 constellation_data TEXT,
+                pyramid_data TEXT,
+                idempotency_key TEXT,
                 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
             );
         `;
         pgClient.query(pgSchema)
-            .catch(e => console.error("Schema Init Error (PG):", e));
+            // Tables created before batch uploads lack the column
+            .then(() => pgClient.query("ALTER TABLE signatures ADD COLUMN IF NOT EXISTS idempotency_key TEXT"))
+            .then(() => pgClient.query("ALTER TABLE signatures ADD COLUMN IF NOT EXISTS pyramid_data TEXT"))
+            .then(() => pgClient.query("CREATE UNIQUE INDEX IF NOT EXISTS idx_signatures_idempotency ON signatures (idempotency_key)"))
+            .catch(e => console.error("Schema Init Error (PG):", e))
+            .then(() => schemaReady());
     } else {
         const sqliteSchema = `
             CREATE TABLE IF NOT EXISTS signatures (
@@ -70,11 +81,18 @@ function initSchema() {
                 device_model TEXT,
                 timestamp TEXT,
                 constellation_data TEXT, -- JSON string
+                pyramid_data TEXT, -- JSON string: [{grid, stars}] coarsest first, optional
+                idempotency_key TEXT,
                 created_at DATETIME DEFAULT CURRENT_TIMESTAMP
             )
         `;
         sqliteDb.serialize(() => {
             sqliteDb.run(sqliteSchema);
+            // Tables created before batch uploads lack the column; "duplicate column" is expected otherwise
+            sqliteDb.run("ALTER TABLE signatures ADD COLUMN idempotency_key TEXT", () => {});
+            sqliteDb.run("ALTER TABLE signatures ADD COLUMN pyramid_data TEXT", () => {});
+            sqliteDb.run("CREATE UNIQUE INDEX IF NOT EXISTS idx_signatures_idempotency ON signatures (idempotency_key)",
+                () => schemaReady());
         });
     }
 }
@@ -82,29 +100,40 @@ function initSchema() {
 // 3. Exported Methods
 
 // REGISTER
+// Idempotent when an idempotency_key is given: a repeat returns the existing row with duplicate: true.
+// The app's key is its random install ID plus the MediaStore ID (see SignaturePayload.idempotencyKey),
+// so the same image_id from two phones of the same model registers twice.
 exports.registerSignature = (data) => {
     return new Promise((resolve, reject) => {
         const { image_id, author, device_model, timestamp, constellation } = data;
+        const idempotencyKey = data.idempotency_key || null;
         const constellationStr = JSON.stringify(constellation);
+        const pyramidStr = Array.isArray(data.pyramid) ? JSON.stringify(data.pyramid) : null;
+
+        const findExisting = () => findByIdempotencyKey(idempotencyKey)
+            .then(id => resolve({ id, duplicate: true }))
+            .catch(err => reject(err));
 
         if (dbType === 'postgres') {
             const query = `
-                INSERT INTO signatures (image_id, author, device_model, timestamp, constellation_data) 
-                VALUES ($1, $2, $3, $4, $5) 
+                INSERT INTO signatures (image_id, author, device_model, timestamp, constellation_data, pyramid_data, idempotency_key) 
+                VALUES ($1, $2, $3, $4, $5, $6, $7) 
+                ON CONFLICT (idempotency_key) DO NOTHING
                 RETURNING id;
             `;
-            const values = [image_id, author, device_model, timestamp, constellationStr];
+            const values = [image_id, author, device_model, timestamp, constellationStr, pyramidStr, idempotencyKey];
             
             pgClient.query(query, values)
-                .then(res => resolve({ id: res.rows[0].id }))
+                .then(res => res.rows.length > 0 ? resolve({ id: res.rows[0].id }) : findExisting())
                 .catch(err => reject(err));
         } else {
             const stmt = sqliteDb.prepare(`
-                INSERT INTO signatures (image_id, author, device_model, timestamp, constellation_data) 
-                VALUES (?, ?, ?, ?, ?)
+                INSERT OR IGNORE INTO signatures (image_id, author, device_model, timestamp, constellation_data, pyramid_data, idempotency_key) 
+                VALUES (?, ?, ?, ?, ?, ?, ?)
             `);
-            stmt.run(image_id, author, device_model, timestamp, constellationStr, function(err) {
+            stmt.run(image_id, author, device_model, timestamp, constellationStr, pyramidStr, idempotencyKey, function(err) {
                 if (err) reject(err);
+                else if (this.changes === 0) findExisting();
                 else resolve({ id: this.lastID });
             });
             stmt.finalize();
@@ -112,6 +141,21 @@ exports.registerSignature = (data) => {
     });
 };
 
+function findByIdempotencyKey(key) {
+    return new Promise((resolve, reject) => {
+        if (dbType === 'postgres') {
+            pgClient.query("SELECT id FROM signatures WHERE idempotency_key = $1", [key])
+                .then(res => resolve(res.rows[0].id))
+                .catch(err => reject(err));
+        } else {
+            sqliteDb.get("SELECT id FROM signatures WHERE idempotency_key = ?", [key], (err, row) => {
+                if (err) reject(err);
+                else resolve(row.id);
+            });
+        }
+    });
+}
+
 // GET ALL (For verification comparison)
 exports.getAllSignatures = () => {
     return new Promise((resolve, reject) => {
@@ -2,6 +2,7 @@ const express = require('express');
 const bodyParser = require('body-parser');
 const cors = require('cors');
 const db = require('./database');
+const { SIGNATURE_WIRE_TYPE, decodeSignatureBatch } = require('./wire-format');
 
 const app = express();
 const PORT = process.env.PORT || 3000;
@@ -9,6 +10,8 @@ const PORT = process.env.PORT || 3000;
 // Middleware
 app.use(cors());
 app.use(bodyParser.json({ limit: '10mb' })); // Allow large JSON for signatures
+// Compact binary batches from the app (see wire-format.js); JSON stays supported
+app.use(bodyParser.raw({ type: SIGNATURE_WIRE_TYPE, limit: '10mb' }));
 
 // ==========================================
 // ROUTES
@@ -37,6 +40,48 @@ app.post('/register', async (req, res) => {
     }
 });
 
+// 2b. BATCH REGISTER (From Android App upload outbox)
+// The app retries whole batches until it gets a 2xx, so every entry is idempotent
+// on its idempotency_key; already-registered entries come back with duplicate: true.
+// An entry that can never be registered is skipped and listed by its index in
+// `rejected`; the app drops those and keeps retrying on any non-2xx reply.
+// Accepts JSON or the binary wire format (Content-Type: application/x-netra-signatures)
+app.post('/register/batch', async (req, res) => {
+    let signatures;
+    if (req.is(SIGNATURE_WIRE_TYPE)) {
+        try {
+            signatures = decodeSignatureBatch(req.body);
+        } catch (err) {
+            return res.status(400).json({ error: `Invalid signature batch: ${err.message}` });
+        }
+    } else {
+        signatures = req.body && req.body.signatures;
+    }
+
+    if (!signatures || !Array.isArray(signatures) || signatures.length === 0) {
+        return res.status(400).json({ error: 'Invalid signatures batch' });
+    }
+
+    try {
+        const results = [];
+        const rejected = [];
+        for (let i = 0; i < signatures.length; i++) {
+            const signature = signatures[i];
+            if (!signature || !Array.isArray(signature.constellation)) {
+                rejected.push(i);
+                results.push({ image_id: signature && signature.image_id, error: 'Invalid constellation data' });
+                continue;
+            }
+            const result = await db.registerSignature(signature);
+            results.push({ image_id: signature.image_id, id: result.id, duplicate: !!result.duplicate });
+        }
+        res.json({ success: true, results, rejected });
+    } catch (err) {
+        console.error(err);
+        res.status(500).json({ error: 'Database error' });
+    }
+});
+
 // 3. VERIFY (From Web Viewer)
 // Compares uploaded image signature against ALL database records
 app.post('/verify', async (req, res) => {
@@ -55,7 +100,7 @@ app.post('/verify', async (req, res) => {
 
         // --- THE COMPARISON LOGIC (Server Side) ---
         rows.forEach(row => {
-            const dbStars = JSON.parse(row.constellation_data);
+            const dbStars = parsedConstellation(row);
             const score = calculateMatchScore(signature, dbStars);
 
             if (score > highestScore) {
@@ -95,6 +140,26 @@ app.post('/verify', async (req, res) => {
 // HELPER FUNCTIONS
 // ==========================================
 
+// Registered signatures never change, so each row's JSON is parsed once, not per /verify.
+// Least recently used first (a Map iterates in insertion order and a hit re-inserts);
+// capped so memory stays bounded however many rows are registered.
+const PARSED_CACHE_MAX = parseInt(process.env.PARSED_CACHE_MAX, 10) || 50000;
+const parsedConstellations = new Map(); // row id -> stars
+
+function parsedConstellation(row) {
+    let stars = parsedConstellations.get(row.id);
+    if (stars) {
+        parsedConstellations.delete(row.id);
+    } else {
+        stars = JSON.parse(row.constellation_data);
+        if (parsedConstellations.size >= PARSED_CACHE_MAX) {
+            parsedConstellations.delete(parsedConstellations.keys().next().value);
+        }
+    }
+    parsedConstellations.set(row.id, stars);
+    return stars;
+}
+
 function calculateMatchScore(uploadedStars, dbStars) {
     // Logic must match script.js verifyConstellation
     let totalDist = 0;
@@ -0,0 +1,40 @@
+// Registration is idempotent per idempotency_key only, so two devices never shadow each other.
+const test = require('node:test');
+const assert = require('node:assert');
+
+process.env.SQLITE_PATH = ':memory:';
+delete process.env.DATABASE_URL;
+
+let sqliteAvailable = true;
+try {
+    require.resolve('sqlite3');
+} catch (e) {
+    sqliteAvailable = false;
+}
+const skip = !sqliteAvailable && 'sqlite3 is not installed (run npm ci)';
+
+const signature = (installId, imageId) => ({
+    image_id: String(imageId),
+    author: 'agbuddy7',
+    device_model: 'Pixel 8',
+    timestamp: '2024-01-01 00:00:00',
+    idempotency_key: `${installId}/${imageId}`,
+    constellation: [{ x: 0.5, y: 0.5, b: 0.9 }],
+});
+
+test('same model and image ID on two devices register twice', { skip }, async () => {
+    const db = require('../database');
+    await db.ready;
+
+    const first = await db.registerSignature(signature('4b1d6c52-8f0e-4c7a-9d3b-2e5f7a1c0b98', 1234));
+    const second = await db.registerSignature(signature('9e27a0f4-31c5-4d6b-b8a2-6c0f5d3e7a11', 1234));
+    assert.ok(!first.duplicate && !second.duplicate);
+    assert.notStrictEqual(first.id, second.id);
+
+    // A retried batch from the first phone is still recognised
+    const retry = await db.registerSignature(signature('4b1d6c52-8f0e-4c7a-9d3b-2e5f7a1c0b98', 1234));
+    assert.deepStrictEqual(retry, { id: first.id, duplicate: true });
+
+    const rows = await db.getAllSignatures();
+    assert.strictEqual(rows.filter(row => row.image_id === '1234').length, 2);
+});
@@ -0,0 +1,32 @@
+// The binary batch must decode to exactly what JSON.parse gives for the same batch.
+// The fixtures are written by the app's SignatureWireFormatTest (core module).
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const path = require('path');
+const { decodeSignatureBatch } = require('../wire-format');
+
+const fixture = name => fs.readFileSync(path.join(__dirname, 'fixtures', name));
+
+test('binary batch decodes to the JSON batch', () => {
+    const binary = decodeSignatureBatch(fixture('signatures.bin'));
+    const json = JSON.parse(fixture('signatures.json').toString('utf8')).signatures;
+    assert.deepStrictEqual(binary, json);
+});
+
+test('version 1 batches still decode', () => {
+    const buf = Buffer.from(fixture('signatures.bin'));
+    buf.writeUInt8(1, 4);
+    const [first] = decodeSignatureBatch(buf);
+    const star = first.constellation[0];
+    assert.ok(star.x >= 0 && star.x <= 1 && star.y >= 0 && star.y <= 1 && star.b >= 0 && star.b <= 1);
+});
+
+test('malformed batches are rejected', () => {
+    const buf = fixture('signatures.bin');
+    assert.throws(() => decodeSignatureBatch(buf.subarray(0, buf.length - 1)), /truncated|length mismatch/);
+    assert.throws(() => decodeSignatureBatch(Buffer.concat([buf, Buffer.alloc(1)])), /trailing bytes/);
+    const wrongVersion = Buffer.from(buf);
+    wrongVersion.writeUInt8(3, 4);
+    assert.throws(() => decodeSignatureBatch(wrongVersion), /unsupported version 3/);
+});
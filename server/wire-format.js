@@ -0,0 +1,94 @@
+// Binary signature batches from the app (SignatureWireFormat.java), decoded into the
+// same objects the JSON batch endpoint receives.
+//
+// Big-endian. Batch: uint32 magic "NSWB", ubyte version, ushort count, then count
+// signatures, each prefixed with its ushort length: int64 image id; author, device
+// model, timestamp, idempotency key as ushort length + UTF-8; the constellation as
+// ubyte grid + grid*grid stars, row-major; ubyte levels, then per pyramid level
+// (coarsest first) ubyte grid + grid*grid stars.
+//
+// A star is ushort x, ushort y, ubyte b. Version 2 carries the JSON's decimals
+// exactly (x, y = k / 10000, b = k / 100); version 1 scaled by 65535 and 255.
+
+const SIGNATURE_WIRE_TYPE = 'application/x-netra-signatures';
+
+function decodeSignatureBatch(buf) {
+    if (!Buffer.isBuffer(buf)) throw new Error('empty body');
+    let offset = 0;
+    const need = n => {
+        if (offset + n > buf.length) throw new Error('truncated');
+    };
+
+    need(7);
+    if (buf.readUInt32BE(0) !== 0x4E535742) throw new Error('bad magic');
+    const version = buf.readUInt8(4);
+    if (version !== 1 && version !== 2) throw new Error(`unsupported version ${version}`);
+    const count = buf.readUInt16BE(5);
+    offset = 7;
+
+    const readString = () => {
+        need(2);
+        const length = buf.readUInt16BE(offset);
+        offset += 2;
+        need(length);
+        const value = buf.toString('utf8', offset, offset + length);
+        offset += length;
+        return value;
+    };
+    // k / 10000 and k / 100 give the same doubles as JSON.parse of the 4 / 2 decimals
+    const readCoord = version === 1
+        ? at => Math.round(buf.readUInt16BE(at) / 65535 * 1e4) / 1e4
+        : at => buf.readUInt16BE(at) / 10000;
+    const readB = version === 1
+        ? at => Math.round(buf.readUInt8(at) / 255 * 100) / 100
+        : at => buf.readUInt8(at) / 100;
+    const readStars = () => {
+        need(1);
+        const grid = buf.readUInt8(offset++);
+        need(grid * grid * 5);
+        const stars = [];
+        for (let cell = 0; cell < grid * grid; cell++) {
+            stars.push({
+                row: Math.floor(cell / grid),
+                col: cell % grid,
+                x: readCoord(offset),
+                y: readCoord(offset + 2),
+                b: readB(offset + 4)
+            });
+            offset += 5;
+        }
+        return { grid, stars };
+    };
+
+    const signatures = [];
+    for (let i = 0; i < count; i++) {
+        need(2);
+        const end = offset + 2 + buf.readUInt16BE(offset);
+        offset += 2;
+        need(8);
+        const image_id = buf.readBigInt64BE(offset).toString();
+        offset += 8;
+        const author = readString();
+        const device_model = readString();
+        const timestamp = readString();
+        const idempotency_key = readString();
+        const constellation = readStars().stars;
+
+        need(1);
+        const levels = buf.readUInt8(offset++);
+        const pyramid = [];
+        for (let level = 0; level < levels; level++) {
+            pyramid.push(readStars());
+        }
+        if (offset !== end) throw new Error(`signature ${i} length mismatch`);
+
+        signatures.push({
+            image_id, author, device_model, timestamp, idempotency_key, constellation,
+            pyramid: levels > 0 ? pyramid : null
+        });
+    }
+    if (offset !== buf.length) throw new Error('trailing bytes');
+    return signatures;
+}
+
+module.exports = { SIGNATURE_WIRE_TYPE, decodeSignatureBatch };